@@ -23,6 +23,7 @@
  */
 package me.julb;
 
+import me.julb.applications.github.actions.FlightRecorderProfiler;
 import me.julb.sdk.github.actions.spi.GitHubActionServiceLoader;
 
 import lombok.AccessLevel;
@@ -40,6 +41,8 @@ public class Application {
      * @param args the arguments.
      */
     public static void main(String[] args) {
+        // Profile the loading of the action too, if requested.
+        FlightRecorderProfiler.startAtLaunch(System.getenv("INPUT_PROFILE"));
         GitHubActionServiceLoader.getImplementation().orElseThrow().execute();
     }
 }
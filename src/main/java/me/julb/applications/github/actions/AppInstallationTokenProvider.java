@@ -0,0 +1,165 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+import org.kohsuke.github.GHAppInstallationToken;
+import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.authorization.AuthorizationProvider;
+import org.kohsuke.github.extras.authorization.JWTTokenProvider;
+
+import lombok.NonNull;
+
+/**
+ * An authorization provider minting GitHub App installation tokens. <br>
+ * The App JWT is signed by the {@link JWTTokenProvider} of the GitHub API library, exchanged for an installation
+ * token, and the installation token is refreshed shortly before it expires.
+ * @author Julb.
+ */
+class AppInstallationTokenProvider implements AuthorizationProvider {
+
+    /**
+     * The delay before expiry after which the installation token is refreshed.
+     */
+    static final Duration REFRESH_MARGIN = Duration.ofMinutes(5);
+
+    /**
+     * The GitHub API URL.
+     */
+    private final String apiUrl;
+
+    /**
+     * The authorization provider of the App, signing App JWTs.
+     */
+    private final AuthorizationProvider jwtProvider;
+
+    /**
+     * The owner of the repository on which the App is installed.
+     */
+    private final String owner;
+
+    /**
+     * The name of the repository on which the App is installed.
+     */
+    private final String repository;
+
+    /**
+     * The clock.
+     */
+    private final Clock clock;
+
+    /**
+     * The current installation token.
+     */
+    private String token;
+
+    /**
+     * The expiry of the current installation token.
+     */
+    private Instant expiresAt = Instant.EPOCH;
+
+    /**
+     * Default constructor.
+     * @param apiUrl the GitHub API URL.
+     * @param appId the App ID.
+     * @param privateKeyPem the App private key, as a PKCS#8 PEM.
+     * @param fullName the full name of a repository on which the App is installed.
+     * @throws GeneralSecurityException if the private key is invalid.
+     */
+    AppInstallationTokenProvider(
+            @NonNull String apiUrl, @NonNull String appId, @NonNull String privateKeyPem, @NonNull String fullName)
+            throws GeneralSecurityException {
+        this(apiUrl, new JWTTokenProvider(appId, privateKeyPem), fullName);
+    }
+
+    /**
+     * Constructor with the authorization provider of the App.
+     * @param apiUrl the GitHub API URL.
+     * @param jwtProvider the authorization provider of the App, signing App JWTs.
+     * @param fullName the full name of a repository on which the App is installed.
+     */
+    AppInstallationTokenProvider(
+            @NonNull String apiUrl, @NonNull AuthorizationProvider jwtProvider, @NonNull String fullName) {
+        this(apiUrl, jwtProvider, fullName, Clock.systemUTC());
+    }
+
+    /**
+     * Constructor with the authorization provider of the App and the clock.
+     * @param apiUrl the GitHub API URL.
+     * @param jwtProvider the authorization provider of the App, signing App JWTs.
+     * @param fullName the full name of a repository on which the App is installed.
+     * @param clock the clock.
+     */
+    AppInstallationTokenProvider(
+            @NonNull String apiUrl,
+            @NonNull AuthorizationProvider jwtProvider,
+            @NonNull String fullName,
+            @NonNull Clock clock) {
+        var ownerAndName = fullName.split("/", 2);
+        if (ownerAndName.length != 2) {
+            throw new IllegalArgumentException(String.format("invalid repository: %s", fullName));
+        }
+        this.apiUrl = apiUrl;
+        this.jwtProvider = jwtProvider;
+        this.owner = ownerAndName[0];
+        this.repository = ownerAndName[1];
+        this.clock = clock;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String getEncodedAuthorization() throws IOException {
+        if (token == null || clock.instant().isAfter(expiresAt.minus(REFRESH_MARGIN))) {
+            var installationToken = createToken();
+            token = installationToken.getToken();
+            expiresAt = installationToken.getExpiresAt().toInstant();
+        }
+        return String.format("token %s", token);
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Exchanges an App JWT for an installation token.
+     * @return the installation token.
+     * @throws IOException if an error occurs.
+     */
+    GHAppInstallationToken createToken() throws IOException {
+        return new GitHubBuilder()
+                .withEndpoint(apiUrl)
+                .withAuthorizationProvider(jwtProvider)
+                .build()
+                .getApp()
+                .getInstallationByRepository(owner, repository)
+                .createToken()
+                .create();
+    }
+}
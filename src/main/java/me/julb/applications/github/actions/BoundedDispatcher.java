@@ -0,0 +1,124 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import lombok.NonNull;
+
+/**
+ * A dispatcher running tasks concurrently with a bounded number of pending tasks. <br>
+ * The producer blocks when the bound is reached, so that the source of tasks can be streamed lazily.
+ * Tasks are deduplicated by key and their results are returned in submission order.
+ * @param <T> the result type.
+ * @author Julb.
+ */
+class BoundedDispatcher<T> implements AutoCloseable {
+
+    /**
+     * The executor.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The permits bounding the number of pending tasks.
+     */
+    private final Semaphore permits;
+
+    /**
+     * The keys of the tasks already submitted.
+     */
+    private final Set<String> keys = new HashSet<>();
+
+    /**
+     * The futures of the tasks already submitted.
+     */
+    private final List<Future<T>> futures = new ArrayList<>();
+
+    /**
+     * Default constructor.
+     * @param concurrency the maximum number of tasks running or pending.
+     */
+    BoundedDispatcher(int concurrency) {
+        this.executor = Executors.newFixedThreadPool(concurrency);
+        this.permits = new Semaphore(concurrency);
+    }
+
+    /**
+     * Submits a task, waiting for a permit if the bound is reached.
+     * @param key the task key.
+     * @param task the task.
+     * @return <code>true</code> if the task has been submitted, <code>false</code> if a task with the same key was already submitted.
+     * @throws InterruptedException if the thread is interrupted while waiting for a permit.
+     */
+    boolean submit(@NonNull String key, @NonNull Callable<T> task) throws InterruptedException {
+        if (!keys.add(key)) {
+            return false;
+        }
+
+        permits.acquire();
+        futures.add(executor.submit(() -> {
+            try {
+                return task.call();
+            } finally {
+                permits.release();
+            }
+        }));
+        return true;
+    }
+
+    /**
+     * Waits for all the tasks to complete.
+     * @return the results in submission order.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    List<T> await() throws InterruptedException {
+        var results = new ArrayList<T>(futures.size());
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
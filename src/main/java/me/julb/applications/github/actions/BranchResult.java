@@ -0,0 +1,124 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.util.Locale;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.NonNull;
+
+/**
+ * The result of a branch operation on a repository. <br>
+ * @param repository the repository full name.
+ * @param name the branch name.
+ * @param state the expected state of the branch.
+ * @param ref the branch ref, or <code>null</code> if the branch is absent.
+ * @param sha the branch SHA, or <code>null</code> if the branch is absent.
+ * @param error the error message if the operation failed, <code>null</code> otherwise.
+ * @param skipped the reason why the operation was skipped, <code>null</code> otherwise.
+ * @author Julb.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+record BranchResult(
+        String repository, String name, String state, String ref, String sha, String error, String skipped) {
+
+    /**
+     * Builds the result of a branch created or updated.
+     * @param repository the repository full name.
+     * @param name the branch name.
+     * @param ref the branch ref.
+     * @param sha the branch SHA.
+     * @return the result.
+     */
+    static BranchResult present(String repository, @NonNull String name, @NonNull String ref, @NonNull String sha) {
+        return new BranchResult(repository, name, stateKey(InputBranchState.PRESENT), ref, sha, null, null);
+    }
+
+    /**
+     * Builds the result of a branch waited for.
+     * @param repository the repository full name.
+     * @param name the branch name.
+     * @param ref the branch ref.
+     * @param sha the branch SHA.
+     * @return the result.
+     */
+    static BranchResult waited(String repository, @NonNull String name, @NonNull String ref, @NonNull String sha) {
+        return new BranchResult(repository, name, stateKey(InputBranchState.WAIT), ref, sha, null, null);
+    }
+
+    /**
+     * Builds the result of a branch deleted.
+     * @param repository the repository full name.
+     * @param name the branch name.
+     * @return the result.
+     */
+    static BranchResult absent(String repository, @NonNull String name) {
+        return new BranchResult(repository, name, stateKey(InputBranchState.ABSENT), null, null, null, null);
+    }
+
+    /**
+     * Builds the result of a failed branch operation.
+     * @param repository the repository full name.
+     * @param name the branch name.
+     * @param state the expected state of the branch.
+     * @param e the error.
+     * @return the result.
+     */
+    static BranchResult failed(
+            String repository, @NonNull String name, @NonNull InputBranchState state, @NonNull Throwable e) {
+        var error = String.format("%s: %s", e.getClass().getSimpleName(), e.getMessage());
+        return new BranchResult(repository, name, stateKey(state), null, null, error, null);
+    }
+
+    /**
+     * Builds the result of a skipped branch operation.
+     * @param repository the repository full name.
+     * @param name the branch name.
+     * @param state the expected state of the branch.
+     * @param reason the reason why the operation was skipped.
+     * @return the result.
+     */
+    static BranchResult skipped(
+            String repository, @NonNull String name, @NonNull InputBranchState state, @NonNull String reason) {
+        return new BranchResult(repository, name, stateKey(state), null, null, null, reason);
+    }
+
+    /**
+     * Checks if the operation failed.
+     * @return <code>true</code> if the operation failed, <code>false</code> otherwise.
+     */
+    boolean isFailed() {
+        return error != null;
+    }
+
+    /**
+     * Gets the state key as used in the inputs.
+     * @param state the state.
+     * @return the state key.
+     */
+    private static String stateKey(InputBranchState state) {
+        return state.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,301 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import lombok.NonNull;
+
+/**
+ * A memoized view of the commits and annotated tags of a repository, resolving revision expressions. <br>
+ * Each object is fetched at most once. The first-parent ancestors a revision walks through are fetched along with
+ * their parents in a single nested GraphQL query, up to {@link #MAX_BATCH_DEPTH} generations per query.
+ * @author Julb.
+ */
+class CommitGraph {
+
+    /**
+     * The maximum number of generations fetched by a single query.
+     */
+    static final int MAX_BATCH_DEPTH = 10;
+
+    /**
+     * The maximum number of parents fetched for a commit.
+     */
+    static final int MAX_PARENTS = 100;
+
+    /**
+     * The type of a commit.
+     */
+    static final String COMMIT = "commit";
+
+    /**
+     * The type of an annotated tag.
+     */
+    static final String TAG = "tag";
+
+    /**
+     * A git object.
+     * @param oid the full SHA of the object.
+     * @param type the type of the object, e.g. <code>commit</code> or <code>tag</code>.
+     * @param target the SHA of the object the annotated tag points to, or <code>null</code> if not a tag.
+     * @param parents the SHA of the parents of the commit, or <code>null</code> if not a commit.
+     */
+    private record GitObject(String oid, String type, String target, List<String> parents) {}
+
+    /**
+     * The HTTP client.
+     */
+    private final GitHubHttpClient httpClient;
+
+    /**
+     * The repository owner.
+     */
+    private final String owner;
+
+    /**
+     * The repository name.
+     */
+    private final String name;
+
+    /**
+     * The objects fetched, by full or requested SHA, in lower case.
+     */
+    private final Map<String, GitObject> objects = new HashMap<>();
+
+    /**
+     * The number of requests sent.
+     */
+    private int requests;
+
+    /**
+     * Default constructor.
+     * @param httpClient the HTTP client.
+     * @param repository the repository full name.
+     */
+    CommitGraph(@NonNull GitHubHttpClient httpClient, @NonNull String repository) {
+        var ownerAndName = repository.split("/", 2);
+        if (ownerAndName.length != 2) {
+            throw new IllegalArgumentException(String.format("invalid repository: %s", repository));
+        }
+        this.httpClient = httpClient;
+        this.owner = ownerAndName[0];
+        this.name = ownerAndName[1];
+    }
+
+    /**
+     * Resolves the steps of a revision from the object its base points to.<br>
+     * Annotated tags are peeled to their commit. A commit, or an object of unknown type without any step, is
+     * returned as is, without any request.
+     * @param sha the SHA of the object the base of the revision points to.
+     * @param type the type of the object, or <code>null</code> if unknown.
+     * @param steps the steps of the revision.
+     * @return the SHA of the commit the revision resolves to.
+     * @throws IOException if an error occurs or if the object does not exist.
+     * @throws IllegalArgumentException if the revision does not resolve to a commit.
+     */
+    synchronized String resolve(@NonNull String sha, String type, @NonNull List<RevisionExpression.Step> steps)
+            throws IOException {
+        if (steps.isEmpty() && !TAG.equals(type)) {
+            return sha;
+        }
+
+        var commit = peel(sha, lookahead(steps, 0));
+        for (int i = 0; i < steps.size(); i++) {
+            var step = steps.get(i);
+            if (step.operator() == '~') {
+                for (int generation = 0; generation < step.count(); generation++) {
+                    commit = parent(commit, 1, step.count() - generation + lookahead(steps, i + 1));
+                }
+            } else if (step.count() > 0) {
+                commit = parent(commit, step.count(), 1 + lookahead(steps, i + 1));
+            }
+        }
+        return commit;
+    }
+
+    /**
+     * Gets the number of requests sent.
+     * @return the number of requests sent.
+     */
+    synchronized int getRequests() {
+        return requests;
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Peels the object to a commit.
+     * @param sha the SHA of the object.
+     * @param depth the number of first-parent generations to prefetch.
+     * @return the SHA of the commit.
+     * @throws IOException if an error occurs.
+     */
+    private String peel(String sha, int depth) throws IOException {
+        var object = get(sha, depth);
+        while (TAG.equals(object.type())) {
+            object = get(object.target(), depth);
+        }
+        if (!COMMIT.equals(object.type())) {
+            throw new IllegalArgumentException(String.format("%s is a %s, not a commit", sha, object.type()));
+        }
+        return object.oid();
+    }
+
+    /**
+     * Gets a parent of the commit.
+     * @param commit the SHA of the commit.
+     * @param number the parent number, starting at 1.
+     * @param depth the number of first-parent generations to prefetch.
+     * @return the SHA of the parent.
+     * @throws IOException if an error occurs.
+     */
+    private String parent(String commit, int number, int depth) throws IOException {
+        var parents = get(commit, depth).parents();
+        if (parents.size() < number) {
+            throw new IllegalArgumentException(String.format("%s has no parent %d", commit, number));
+        }
+        return parents.get(number - 1);
+    }
+
+    /**
+     * Gets an object, fetching it along with its first-parent ancestors if not known.
+     * @param sha the full or abbreviated SHA of the object.
+     * @param depth the number of first-parent generations to prefetch.
+     * @return the object.
+     * @throws IOException if an error occurs or if the object does not exist.
+     */
+    private GitObject get(String sha, int depth) throws IOException {
+        var key = sha.toLowerCase(Locale.ROOT);
+        var object = objects.get(key);
+        if (object == null) {
+            object = fetch(sha, Math.max(1, Math.min(depth, MAX_BATCH_DEPTH)));
+            objects.put(key, object);
+        }
+        return object;
+    }
+
+    /**
+     * Fetches an object and its first-parent ancestors.
+     * @param sha the full or abbreviated SHA of the object.
+     * @param depth the number of first-parent generations to fetch.
+     * @return the object.
+     * @throws IOException if an error occurs or if the object does not exist.
+     */
+    private GitObject fetch(String sha, int depth) throws IOException {
+        var commitFields = commitFields(depth);
+        var query = "query($owner: String!, $name: String!, $expression: String!) {"
+                + " repository(owner: $owner, name: $name) { object(expression: $expression) { __typename oid"
+                + " ... on Tag { target { __typename oid ... on Commit { " + commitFields + " } } }"
+                + " ... on Commit { " + commitFields + " } } } }";
+        requests++;
+        var data = httpClient.graphql(query, Map.of("owner", owner, "name", name, "expression", sha));
+
+        var node = data.path("repository").path("object");
+        if (node.isMissingNode() || node.isNull()) {
+            throw new IOException(String.format("object not found: %s", sha));
+        }
+        var type = node.path("__typename").asText().toLowerCase(Locale.ROOT);
+        if (TAG.equals(type)) {
+            var target = node.path("target");
+            if (COMMIT.equals(target.path("__typename").asText().toLowerCase(Locale.ROOT))) {
+                cacheCommits(target);
+            }
+            return cache(new GitObject(node.path("oid").asText(), TAG, target.path("oid").asText(), null));
+        } else if (COMMIT.equals(type)) {
+            return cacheCommits(node);
+        }
+        return cache(new GitObject(node.path("oid").asText(), type, null, null));
+    }
+
+    /**
+     * Caches a commit node and its nested first-parent ancestors.
+     * @param node the commit node.
+     * @return the commit.
+     */
+    private GitObject cacheCommits(JsonNode node) {
+        var parents = new ArrayList<String>();
+        for (JsonNode parent : node.path("parents").path("nodes")) {
+            parents.add(parent.path("oid").asText());
+        }
+        var firstParent = node.path("firstParent").path("nodes").path(0);
+        if (!firstParent.isMissingNode()) {
+            cacheCommits(firstParent);
+        }
+        return cache(new GitObject(node.path("oid").asText(), COMMIT, null, List.copyOf(parents)));
+    }
+
+    /**
+     * Caches an object by its full SHA.
+     * @param object the object.
+     * @return the object.
+     */
+    private GitObject cache(GitObject object) {
+        objects.put(object.oid().toLowerCase(Locale.ROOT), object);
+        return object;
+    }
+
+    /**
+     * Builds the fields of a commit and of its first-parent ancestors.
+     * @param depth the number of generations.
+     * @return the fields.
+     */
+    private static String commitFields(int depth) {
+        var fields = new StringBuilder("oid parents(first: ").append(MAX_PARENTS).append(") { nodes { oid } }");
+        if (depth > 1) {
+            fields.append(" firstParent: parents(first: 1) { nodes { ")
+                    .append(commitFields(depth - 1))
+                    .append(" } }");
+        }
+        return fields.toString();
+    }
+
+    /**
+     * Counts the first-parent generations walked by the steps, until a step leaves the first-parent line.
+     * @param steps the steps.
+     * @param from the index of the first step.
+     * @return the number of generations.
+     */
+    private static int lookahead(List<RevisionExpression.Step> steps, int from) {
+        var generations = 0;
+        for (int i = from; i < steps.size(); i++) {
+            var step = steps.get(i);
+            if (step.operator() == '~') {
+                generations += step.count();
+            } else if (step.count() == 1) {
+                generations++;
+            } else if (step.count() > 1) {
+                break;
+            }
+        }
+        return generations;
+    }
+}
@@ -0,0 +1,191 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.kohsuke.github.GHRateLimit;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.authorization.AuthorizationProvider;
+
+import lombok.NonNull;
+
+/**
+ * A pool of credentials spreading the requests across several rate-limit buckets. <br>
+ * Each operation is assigned the credential with the most remaining requests, as last reported by GitHub. Exhausted
+ * credentials are skipped until their rate limit resets. A credential whose rate limit is not known yet is assigned a
+ * single operation to probe it, and is then only used when no known credential is available until GitHub reports it.
+ * @author Julb.
+ */
+class CredentialPool {
+
+    /**
+     * A credential and the GitHub clients using it.
+     * @param name the credential name, for tracing.
+     * @param ghApi the GitHub client using the credential.
+     * @param authorizationProvider the authorization provider of the credential.
+     * @param httpClient the HTTP client using the credential, shared by all the operations assigned the credential.
+     */
+    record Credential(
+            @NonNull String name,
+            @NonNull GitHub ghApi,
+            @NonNull AuthorizationProvider authorizationProvider,
+            @NonNull GitHubHttpClient httpClient) {}
+
+    /**
+     * The credentials.
+     */
+    private final List<Credential> credentials;
+
+    /**
+     * The round-robin counter to break ties.
+     */
+    private final AtomicInteger counter = new AtomicInteger();
+
+    /**
+     * The number of operations assigned to each credential.
+     */
+    private final Map<String, AtomicLong> assignments = new ConcurrentHashMap<>();
+
+    /**
+     * The names of the credentials whose rate limit was probed.
+     */
+    private final Set<String> probed = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Default constructor.
+     * @param credentials the credentials.
+     */
+    CredentialPool(@NonNull List<Credential> credentials) {
+        if (credentials.isEmpty()) {
+            throw new IllegalArgumentException("at least one credential is required.");
+        }
+        this.credentials = List.copyOf(credentials);
+        this.credentials.forEach(credential -> assignments.put(credential.name(), new AtomicLong()));
+    }
+
+    /**
+     * Gets the number of credentials.
+     * @return the number of credentials.
+     */
+    int size() {
+        return credentials.size();
+    }
+
+    /**
+     * Gets the credential with the most remaining requests.<br>
+     * A credential whose rate limit is not known yet is returned once first, to probe it. If all the known credentials
+     * are exhausted, a credential not known yet is returned, or else the one resetting first.
+     * @return the credential.
+     */
+    Credential next() {
+        var start = Math.floorMod(counter.getAndIncrement(), credentials.size());
+        Credential best = null;
+        long bestRemaining = -1;
+        Credential unknown = null;
+        Credential firstReset = null;
+        long firstResetTime = Long.MAX_VALUE;
+        for (int i = 0; i < credentials.size(); i++) {
+            var credential = credentials.get((start + i) % credentials.size());
+            var rateLimit = coreRateLimit(credential);
+            if (rateLimit.isEmpty()) {
+                // Probe each unknown credential once, then wait for its rate limit.
+                if (probed.add(credential.name())) {
+                    return assign(credential);
+                }
+                if (unknown == null) {
+                    unknown = credential;
+                }
+                continue;
+            }
+
+            var remaining = rateLimit.get().getRemaining();
+            var resetTime = Optional.ofNullable(rateLimit.get().getResetDate())
+                    .map(Date::getTime)
+                    .orElse(0L);
+
+            if (remaining > 0 || resetTime <= System.currentTimeMillis()) {
+                if (remaining > bestRemaining) {
+                    best = credential;
+                    bestRemaining = remaining;
+                }
+            } else if (resetTime < firstResetTime) {
+                firstReset = credential;
+                firstResetTime = resetTime;
+            }
+        }
+
+        if (best != null) {
+            return assign(best);
+        }
+        return assign(unknown != null ? unknown : firstReset);
+    }
+
+    /**
+     * Gets a summary of the assignments per credential.
+     * @return the summary.
+     */
+    String summary() {
+        return credentials.stream()
+                .map(credential -> String.format(
+                        "%s: %d operations, %s remaining",
+                        credential.name(),
+                        assignments.get(credential.name()).get(),
+                        coreRateLimit(credential)
+                                .map(GHRateLimit.Record::getRemaining)
+                                .map(String::valueOf)
+                                .orElse("unknown")))
+                .collect(Collectors.joining(", ", "credential pool: [", "]"));
+    }
+
+    /**
+     * Assigns an operation to the credential.
+     * @param credential the credential.
+     * @return the credential.
+     */
+    private Credential assign(Credential credential) {
+        assignments.get(credential.name()).incrementAndGet();
+        return credential;
+    }
+
+    /**
+     * Gets the core rate limit last reported for the credential.<br>
+     * Before any request, the GitHub client reports an unknown, effectively unlimited, rate limit: it is not known.
+     * @param credential the credential.
+     * @return the core rate limit, or {@link Optional#empty()} if not known.
+     */
+    private static Optional<GHRateLimit.Record> coreRateLimit(Credential credential) {
+        return Optional.ofNullable(credential.ghApi().lastRateLimit())
+                .map(GHRateLimit::getCore)
+                .filter(record -> !(record instanceof GHRateLimit.UnknownLimitRecord));
+    }
+}
@@ -0,0 +1,310 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import lombok.NonNull;
+
+/**
+ * The branches of a repository which must not be deleted: the default branch, the head branches of open pull
+ * requests and the branches matching a protection rule. <br>
+ * They are gathered upfront in a few paginated GraphQL queries, so that deletion candidates are then filtered locally.
+ * A single branch is rather checked alone, without paging through all the pull requests and rules.
+ * @author Julb.
+ */
+class DeletionGuard {
+
+    /**
+     * The page size of the queries.
+     */
+    static final int PAGE_SIZE = 100;
+
+    /**
+     * The query reading a page of open pull requests and a page of branch protection rules.
+     */
+    private static final String QUERY = "query($owner: String!, $name: String!, $pageSize: Int!,"
+            + " $pullRequestsCursor: String, $withPullRequests: Boolean!,"
+            + " $rulesCursor: String, $withRules: Boolean!) {"
+            + " repository(owner: $owner, name: $name) { nameWithOwner defaultBranchRef { name }"
+            + " pullRequests(states: OPEN, first: $pageSize, after: $pullRequestsCursor)"
+            + " @include(if: $withPullRequests)"
+            + " { pageInfo { hasNextPage endCursor } nodes { headRefName headRepository { nameWithOwner } } }"
+            + " branchProtectionRules(first: $pageSize, after: $rulesCursor) @include(if: $withRules)"
+            + " { pageInfo { hasNextPage endCursor } nodes { pattern } } } }";
+
+    /**
+     * The query reading the protection rule of a branch and a page of the open pull requests it is the head of.
+     */
+    private static final String BRANCH_QUERY = "query($owner: String!, $name: String!, $pageSize: Int!,"
+            + " $branch: String!, $qualifiedName: String!, $pullRequestsCursor: String) {"
+            + " repository(owner: $owner, name: $name) { nameWithOwner defaultBranchRef { name }"
+            + " ref(qualifiedName: $qualifiedName) { branchProtectionRule { pattern } }"
+            + " pullRequests(states: OPEN, headRefName: $branch, first: $pageSize, after: $pullRequestsCursor)"
+            + " { pageInfo { hasNextPage endCursor } nodes { headRepository { nameWithOwner } } } } }";
+
+    /**
+     * The default branch name, or <code>null</code> if the repository is empty.
+     */
+    private final String defaultBranch;
+
+    /**
+     * The head branch names of the open pull requests of the repository.
+     */
+    private final Set<String> pullRequestHeads;
+
+    /**
+     * The branch protection rule patterns.
+     */
+    private final List<String> protectionPatterns;
+
+    /**
+     * The compiled branch protection rule patterns, <code>null</code> for the patterns which cannot be parsed.
+     */
+    private final List<Pattern> compiledProtectionPatterns;
+
+    /**
+     * The patterns of the protection rules of the branches checked alone, by branch name.
+     */
+    private final Map<String, String> protectionRules;
+
+    /**
+     * Constructor.
+     * @param defaultBranch the default branch name, or <code>null</code> if the repository is empty.
+     * @param pullRequestHeads the head branch names of the open pull requests of the repository.
+     * @param protectionPatterns the branch protection rule patterns.
+     */
+    DeletionGuard(
+            String defaultBranch, @NonNull Set<String> pullRequestHeads, @NonNull List<String> protectionPatterns) {
+        this(defaultBranch, pullRequestHeads, protectionPatterns, Map.of());
+    }
+
+    /**
+     * Constructor.
+     * @param defaultBranch the default branch name, or <code>null</code> if the repository is empty.
+     * @param pullRequestHeads the head branch names of the open pull requests of the repository.
+     * @param protectionPatterns the branch protection rule patterns.
+     * @param protectionRules the patterns of the protection rules of the branches checked alone, by branch name.
+     */
+    private DeletionGuard(
+            String defaultBranch,
+            Set<String> pullRequestHeads,
+            List<String> protectionPatterns,
+            Map<String, String> protectionRules) {
+        this.defaultBranch = defaultBranch;
+        this.pullRequestHeads = Set.copyOf(pullRequestHeads);
+        this.protectionPatterns = List.copyOf(protectionPatterns);
+        this.compiledProtectionPatterns = protectionPatterns.stream()
+                .map(DeletionGuard::compileProtectionPattern)
+                .toList();
+        this.protectionRules = Map.copyOf(protectionRules);
+    }
+
+    /**
+     * Loads the branches of a repository which must not be deleted.
+     * @param httpClient the HTTP client.
+     * @param repository the repository full name.
+     * @return the guard.
+     * @throws IOException if an error occurs or if the repository does not exist.
+     */
+    static DeletionGuard load(@NonNull GitHubHttpClient httpClient, @NonNull String repository) throws IOException {
+        var ownerAndName = splitRepository(repository);
+
+        String defaultBranch = null;
+        var pullRequestHeads = new HashSet<String>();
+        var protectionPatterns = new ArrayList<String>();
+
+        String pullRequestsCursor = null;
+        String rulesCursor = null;
+        var withPullRequests = true;
+        var withRules = true;
+        while (withPullRequests || withRules) {
+            var variables = new HashMap<String, Object>();
+            variables.put("owner", ownerAndName[0]);
+            variables.put("name", ownerAndName[1]);
+            variables.put("pageSize", PAGE_SIZE);
+            variables.put("pullRequestsCursor", pullRequestsCursor);
+            variables.put("withPullRequests", withPullRequests);
+            variables.put("rulesCursor", rulesCursor);
+            variables.put("withRules", withRules);
+
+            var repositoryNode = httpClient.graphql(QUERY, variables).path("repository");
+            if (repositoryNode.isMissingNode() || repositoryNode.isNull()) {
+                throw new IOException(String.format("repository not found: %s", repository));
+            }
+            defaultBranch = repositoryNode.path("defaultBranchRef").path("name").asText(null);
+
+            // Open pull requests from the repository itself.
+            if (withPullRequests) {
+                var pullRequests = repositoryNode.path("pullRequests");
+                for (JsonNode pullRequest : pullRequests.path("nodes")) {
+                    var headRepository = pullRequest.path("headRepository").path("nameWithOwner").asText(null);
+                    if (repository.equalsIgnoreCase(headRepository)) {
+                        pullRequestHeads.add(pullRequest.path("headRefName").asText());
+                    }
+                }
+                withPullRequests = pullRequests.path("pageInfo").path("hasNextPage").asBoolean(false);
+                pullRequestsCursor = pullRequests.path("pageInfo").path("endCursor").asText(null);
+            }
+
+            // Branch protection rules.
+            if (withRules) {
+                var rules = repositoryNode.path("branchProtectionRules");
+                for (JsonNode rule : rules.path("nodes")) {
+                    protectionPatterns.add(rule.path("pattern").asText());
+                }
+                withRules = rules.path("pageInfo").path("hasNextPage").asBoolean(false);
+                rulesCursor = rules.path("pageInfo").path("endCursor").asText(null);
+            }
+        }
+
+        return new DeletionGuard(defaultBranch, pullRequestHeads, protectionPatterns);
+    }
+
+    /**
+     * Loads the reasons why a single branch of a repository must not be deleted.<br>
+     * Only the open pull requests whose head is the branch are read, and the protection rule is the one GitHub
+     * associates with the branch ref.
+     * @param httpClient the HTTP client.
+     * @param repository the repository full name.
+     * @param branchName the branch name.
+     * @return the guard, which only knows about the given branch and the default branch.
+     * @throws IOException if an error occurs or if the repository does not exist.
+     */
+    static DeletionGuard load(
+            @NonNull GitHubHttpClient httpClient, @NonNull String repository, @NonNull String branchName)
+            throws IOException {
+        var ownerAndName = splitRepository(repository);
+
+        String defaultBranch = null;
+        var pullRequestHeads = new HashSet<String>();
+        var protectionRules = new HashMap<String, String>();
+
+        String pullRequestsCursor = null;
+        var withPullRequests = true;
+        while (withPullRequests) {
+            var variables = new HashMap<String, Object>();
+            variables.put("owner", ownerAndName[0]);
+            variables.put("name", ownerAndName[1]);
+            variables.put("pageSize", PAGE_SIZE);
+            variables.put("branch", branchName);
+            variables.put("qualifiedName", "refs/heads/" + branchName);
+            variables.put("pullRequestsCursor", pullRequestsCursor);
+
+            var repositoryNode = httpClient.graphql(BRANCH_QUERY, variables).path("repository");
+            if (repositoryNode.isMissingNode() || repositoryNode.isNull()) {
+                throw new IOException(String.format("repository not found: %s", repository));
+            }
+            defaultBranch = repositoryNode.path("defaultBranchRef").path("name").asText(null);
+
+            // Branch protection rule.
+            var pattern = repositoryNode.path("ref").path("branchProtectionRule").path("pattern").asText(null);
+            if (pattern != null) {
+                protectionRules.put(branchName, pattern);
+            }
+
+            // Open pull requests from the repository itself, stopping at the first one.
+            var pullRequests = repositoryNode.path("pullRequests");
+            for (JsonNode pullRequest : pullRequests.path("nodes")) {
+                var headRepository = pullRequest.path("headRepository").path("nameWithOwner").asText(null);
+                if (repository.equalsIgnoreCase(headRepository)) {
+                    pullRequestHeads.add(branchName);
+                }
+            }
+            withPullRequests = pullRequestHeads.isEmpty()
+                    && pullRequests.path("pageInfo").path("hasNextPage").asBoolean(false);
+            pullRequestsCursor = pullRequests.path("pageInfo").path("endCursor").asText(null);
+        }
+
+        return new DeletionGuard(defaultBranch, pullRequestHeads, List.of(), protectionRules);
+    }
+
+    /**
+     * Finds the reason why the branch must not be deleted.
+     * @param branchName the branch name.
+     * @return the reason why the branch must not be deleted, or {@link Optional#empty()} if it can be deleted.
+     */
+    Optional<String> findReason(@NonNull String branchName) {
+        if (branchName.equals(defaultBranch)) {
+            return Optional.of("default branch");
+        }
+        if (pullRequestHeads.contains(branchName)) {
+            return Optional.of("head of an open pull request");
+        }
+        if (protectionRules.containsKey(branchName)) {
+            return Optional.of(String.format("protected by rule %s", protectionRules.get(branchName)));
+        }
+        for (int i = 0; i < compiledProtectionPatterns.size(); i++) {
+            // Fail closed: a rule which cannot be parsed may protect the branch.
+            var compiledProtectionPattern = compiledProtectionPatterns.get(i);
+            if (compiledProtectionPattern == null) {
+                return Optional.of(
+                        String.format("protected by rule %s, which cannot be parsed", protectionPatterns.get(i)));
+            }
+            if (compiledProtectionPattern.matcher(branchName).matches()) {
+                return Optional.of(String.format("protected by rule %s", protectionPatterns.get(i)));
+            }
+        }
+        return Optional.empty();
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Splits a repository full name.
+     * @param repository the repository full name.
+     * @return the owner and the name of the repository.
+     * @throws IllegalArgumentException if the full name is invalid.
+     */
+    private static String[] splitRepository(String repository) {
+        var ownerAndName = repository.split("/", 2);
+        if (ownerAndName.length != 2) {
+            throw new IllegalArgumentException(String.format("invalid repository: %s", repository));
+        }
+        return ownerAndName;
+    }
+
+    /**
+     * Compiles a branch protection rule pattern.
+     * @param pattern the pattern.
+     * @return the compiled pattern, or <code>null</code> if the pattern cannot be parsed.
+     */
+    private static Pattern compileProtectionPattern(String pattern) {
+        try {
+            return Globs.toPattern(pattern, false);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import lombok.NonNull;
+
+/**
+ * The refs known from the payload of the event which triggered the workflow. <br>
+ * The payload is streamed once, and only the fields describing the pushed ref and the pull request head and base are kept.
+ * @author Julb.
+ */
+class EventPayloadRefs {
+
+    /**
+     * The SHA used by GitHub for a deleted ref.
+     */
+    private static final String NULL_SHA = "0000000000000000000000000000000000000000";
+
+    /**
+     * The fields read from the payload.
+     */
+    private static final Set<String> FIELDS = Set.of(
+            "ref",
+            "after",
+            "repository.full_name",
+            "pull_request.head.ref",
+            "pull_request.head.sha",
+            "pull_request.head.repo.full_name",
+            "pull_request.base.ref",
+            "pull_request.base.sha");
+
+    /**
+     * The objects browsed in the payload.
+     */
+    private static final Set<String> OBJECTS =
+            Set.of("repository", "pull_request", "pull_request.head", "pull_request.head.repo", "pull_request.base");
+
+    /**
+     * The JSON factory.
+     */
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * The repository full name, lower-cased.
+     */
+    private final String repository;
+
+    /**
+     * The SHA of the refs known to exist, by lower-cased ref.
+     */
+    private final Map<String, String> shaByRef = new HashMap<>();
+
+    /**
+     * The actual refs known to exist, by lower-cased ref.
+     */
+    private final Map<String, String> refByRef = new HashMap<>();
+
+    /**
+     * The SHAs known to exist, lower-cased.
+     */
+    private final Set<String> shas = new HashSet<>();
+
+    /**
+     * The SHAs known to be commits, lower-cased: the SHA of a pushed tag may be an annotated tag.
+     */
+    private final Set<String> commitShas = new HashSet<>();
+
+    /**
+     * Default constructor.
+     * @param fields the fields read from the payload.
+     */
+    EventPayloadRefs(@NonNull Map<String, String> fields) {
+        this.repository = lowerCase(fields.get("repository.full_name"));
+
+        // Push event.
+        add(fields.get("ref"), fields.get("after"));
+
+        // Pull request event: head ref only belongs to the repository if not from a fork.
+        var headRepository = lowerCase(fields.get("pull_request.head.repo.full_name"));
+        if (headRepository != null && headRepository.equals(repository)) {
+            add(branchRef(fields.get("pull_request.head.ref")), fields.get("pull_request.head.sha"));
+        } else if (fields.get("pull_request.head.sha") != null) {
+            shas.add(lowerCase(fields.get("pull_request.head.sha")));
+            commitShas.add(lowerCase(fields.get("pull_request.head.sha")));
+        }
+
+        // The base SHA is the one of the pull request, not necessarily the current one of the branch.
+        var baseRef = branchRef(fields.get("pull_request.base.ref"));
+        if (baseRef != null && fields.get("pull_request.base.sha") != null) {
+            refByRef.put(lowerCase(baseRef), baseRef);
+        }
+    }
+
+    /**
+     * Gets an instance knowing no ref.
+     * @return an instance knowing no ref.
+     */
+    static EventPayloadRefs empty() {
+        return new EventPayloadRefs(Map.of());
+    }
+
+    /**
+     * Reads the refs from the event payload file.
+     * @param path the path to the event payload.
+     * @return the refs known from the event payload.
+     * @throws IOException if an error occurs.
+     */
+    static EventPayloadRefs read(@NonNull Path path) throws IOException {
+        var fields = new HashMap<String, String>();
+        try (var parser = JSON_FACTORY.createParser(Files.newInputStream(path))) {
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                readObject(parser, null, fields);
+            }
+        }
+        return new EventPayloadRefs(fields);
+    }
+
+    /**
+     * Resolves the SHA of a branch, a tag, a ref or a SHA known from the event payload.
+     * @param repository the repository full name.
+     * @param name the branch, tag, ref or SHA.
+     * @return the SHA if known from the event payload, {@link Optional#empty()} otherwise.
+     * @see #resolve(String, String)
+     */
+    Optional<String> resolveSha(String repository, @NonNull String name) {
+        return resolve(repository, name).map(RefEntry::sha);
+    }
+
+    /**
+     * Resolves a branch, a tag, a ref or a SHA known from the event payload.<br>
+     * The refs are listed in order, and the first one matching the name wins: a ref known from the payload is only
+     * used if it is the candidate listed first, so that e.g. a pushed tag never shadows a branch of the same name.
+     * The type is only known for commits: the SHA of a pushed tag may be an annotated tag.
+     * @param repository the repository full name.
+     * @param name the branch, tag, ref or SHA.
+     * @return the ref, or the SHA itself, and the object it points to if known from the event payload,
+     * {@link Optional#empty()} otherwise.
+     */
+    Optional<RefEntry> resolve(String repository, @NonNull String name) {
+        if (!isRepository(repository)) {
+            return Optional.empty();
+        }
+
+        var candidate = Stream.of(branchRef(name), String.format("refs/tags/%s", name), name)
+                .filter(ref -> ref.startsWith("refs/"))
+                .map(EventPayloadRefs::lowerCase)
+                .min(Comparator.naturalOrder())
+                .orElseThrow();
+        var sha = shaByRef.get(candidate);
+        if (sha != null) {
+            return Optional.of(new RefEntry(refByRef.get(candidate), sha, typeOf(sha)));
+        }
+
+        if (shas.contains(lowerCase(name))) {
+            return Optional.of(new RefEntry(name, name, typeOf(name)));
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Finds a ref known to exist from the event payload.
+     * @param repository the repository full name.
+     * @param ref the ref to look for, regardless of the case.
+     * @return the actual ref if known to exist, {@link Optional#empty()} otherwise.
+     */
+    Optional<String> findRef(String repository, @NonNull String ref) {
+        if (!isRepository(repository)) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(refByRef.get(lowerCase(ref)));
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Reads the fields of interest in the current object.
+     * @param parser the parser, positioned on the start of the object.
+     * @param path the path of the object, or <code>null</code> for the root object.
+     * @param fields the fields read.
+     * @throws IOException if an error occurs.
+     */
+    private static void readObject(JsonParser parser, String path, Map<String, String> fields) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            var field = path == null ? parser.getCurrentName() : path + "." + parser.getCurrentName();
+            var token = parser.nextToken();
+            if (token == JsonToken.START_OBJECT && OBJECTS.contains(field)) {
+                readObject(parser, field, fields);
+            } else if (token == JsonToken.VALUE_STRING && FIELDS.contains(field)) {
+                fields.put(field, parser.getText());
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Registers a ref known to exist.
+     * @param ref the ref.
+     * @param sha the SHA of the ref.
+     */
+    private void add(String ref, String sha) {
+        if (ref == null || sha == null || NULL_SHA.equals(sha)) {
+            return;
+        }
+        shaByRef.put(lowerCase(ref), sha);
+        refByRef.put(lowerCase(ref), ref);
+        shas.add(lowerCase(sha));
+        if (ref.startsWith("refs/heads/")) {
+            commitShas.add(lowerCase(sha));
+        }
+    }
+
+    /**
+     * Gets the type of an object known from the payload.
+     * @param sha the SHA of the object.
+     * @return <code>commit</code> if the object is known to be a commit, <code>null</code> if unknown.
+     */
+    private String typeOf(String sha) {
+        return commitShas.contains(lowerCase(sha)) ? CommitGraph.COMMIT : null;
+    }
+
+    /**
+     * Checks if the payload relates to the given repository.
+     * @param repository the repository full name.
+     * @return <code>true</code> if the payload relates to the given repository, <code>false</code> otherwise.
+     */
+    private boolean isRepository(String repository) {
+        return this.repository != null && this.repository.equals(lowerCase(repository));
+    }
+
+    /**
+     * Gets the ref from a branch name.
+     * @param branchName the branch name.
+     * @return the ref for the given branch name, or <code>null</code> if the branch name is <code>null</code>.
+     */
+    private static String branchRef(String branchName) {
+        return branchName == null ? null : String.format("refs/heads/%s", branchName);
+    }
+
+    /**
+     * Lower-cases the value.
+     * @param value the value.
+     * @return the lower-cased value, or <code>null</code> if the value is <code>null</code>.
+     */
+    private static String lowerCase(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,304 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+
+import lombok.NonNull;
+
+/**
+ * A profiler recording a Flight Recorder session, and summarizing it as a condensed text report. <br>
+ * The event set is tuned for short runs dominated by I/O: sampled allocations, socket I/O, TLS handshakes, GC pauses,
+ * class loading and CPU samples. The recording is started at launch, before the action is loaded, so that it covers
+ * the class loading of the action and its dependencies.
+ * @author Julb.
+ */
+public class FlightRecorderProfiler implements AutoCloseable {
+
+    /**
+     * The number of entries per section of the report.
+     */
+    static final int TOP_ENTRIES = 10;
+
+    /**
+     * The package prefixes of the JDK, skipped when looking for an allocation site.
+     */
+    private static final Set<String> JDK_PACKAGES = Set.of("java.", "javax.", "jdk.", "sun.", "com.sun.");
+
+    /**
+     * The profiler started at launch and not yet taken over by the action, if any.
+     */
+    private static FlightRecorderProfiler launched;
+
+    /**
+     * The recording.
+     */
+    private final Recording recording;
+
+    /**
+     * Default constructor.
+     */
+    private FlightRecorderProfiler() {
+        this.recording = new Recording();
+        this.recording.setName("gh-action-manage-branch");
+        this.recording.enable("jdk.ObjectAllocationSample").with("throttle", "300/s").withStackTrace();
+        this.recording.enable("jdk.SocketRead").withThreshold(Duration.ZERO).withStackTrace();
+        this.recording.enable("jdk.SocketWrite").withThreshold(Duration.ZERO);
+        this.recording.enable("jdk.TLSHandshake");
+        this.recording.enable("jdk.GarbageCollection").withThreshold(Duration.ZERO);
+        this.recording.enable("jdk.ClassLoadingStatistics").with("period", "everyChunk");
+        this.recording.enable("jdk.ExecutionSample").withPeriod(Duration.ofMillis(10));
+    }
+
+    /**
+     * Starts a recording at launch, before the action is loaded, if the "profile" input is enabled.<br>
+     * The action takes the recording over with {@link #start()}.
+     * @param profileInput the "profile" input, as read from the <code>INPUT_PROFILE</code> variable, or
+     * <code>null</code> if not set.
+     */
+    public static synchronized void startAtLaunch(String profileInput) {
+        if (launched == null && profileInput != null && Boolean.parseBoolean(profileInput.trim())) {
+            launched = new FlightRecorderProfiler();
+            launched.recording.start();
+        }
+    }
+
+    /**
+     * Starts a recording, or takes over the recording started at launch if any.
+     * @return the profiler.
+     */
+    static synchronized FlightRecorderProfiler start() {
+        if (launched != null) {
+            var profiler = launched;
+            launched = null;
+            return profiler;
+        }
+        var profiler = new FlightRecorderProfiler();
+        profiler.recording.start();
+        return profiler;
+    }
+
+    /**
+     * Stops the recording and writes it with its report in the given directory.
+     * @param directory the directory.
+     * @return the path to the recording; the report is written next to it with a <code>.txt</code> extension.
+     * @throws IOException if an error occurs.
+     */
+    Path stop(@NonNull Path directory) throws IOException {
+        recording.stop();
+        Files.createDirectories(directory);
+        var path = directory.resolve(String.format("gh-action-manage-branch-%d.jfr", ProcessHandle.current().pid()));
+        recording.dump(path);
+        Files.writeString(reportPath(path), report(path));
+        return path;
+    }
+
+    /**
+     * Gets the start time of the recording.
+     * @return the start time of the recording.
+     */
+    Instant getStartTime() {
+        return recording.getStartTime();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        recording.close();
+    }
+
+    /**
+     * Gets the path to the report of a recording.
+     * @param recordingPath the path to the recording.
+     * @return the path to the report.
+     */
+    static Path reportPath(@NonNull Path recordingPath) {
+        return recordingPath.resolveSibling(recordingPath.getFileName().toString().replaceFirst("\\.jfr$", "") + ".txt");
+    }
+
+    /**
+     * Summarizes a recording: top allocation sites, socket I/O per host, GC pauses, class loading and CPU hot spots.
+     * @param recordingPath the path to the recording.
+     * @return the report.
+     * @throws IOException if an error occurs.
+     */
+    static String report(@NonNull Path recordingPath) throws IOException {
+        var allocationBytes = new HashMap<String, Long>();
+        var socketReads = new HashMap<String, long[]>();
+        var executionSamples = new HashMap<String, Long>();
+        long socketWriteCount = 0;
+        long tlsHandshakeCount = 0;
+        long gcCount = 0;
+        var gcPauses = Duration.ZERO;
+        var gcLongestPause = Duration.ZERO;
+        long loadedClassCount = 0;
+
+        try (var file = new RecordingFile(recordingPath)) {
+            while (file.hasMoreEvents()) {
+                var event = file.readEvent();
+                switch (event.getEventType().getName()) {
+                    case "jdk.ObjectAllocationSample" -> allocationBytes.merge(
+                            allocationSite(event), event.getLong("weight"), Long::sum);
+                    case "jdk.SocketRead" -> {
+                        var read = socketReads.computeIfAbsent(event.getString("host"), host -> new long[3]);
+                        read[0]++;
+                        read[1] += event.getDuration().toNanos();
+                        read[2] += Math.max(0, event.getLong("bytesRead"));
+                    }
+                    case "jdk.SocketWrite" -> socketWriteCount++;
+                    case "jdk.TLSHandshake" -> tlsHandshakeCount++;
+                    case "jdk.GarbageCollection" -> {
+                        gcCount++;
+                        gcPauses = gcPauses.plus(event.getDuration("sumOfPauses"));
+                        var longestPause = event.getDuration("longestPause");
+                        gcLongestPause = longestPause.compareTo(gcLongestPause) > 0 ? longestPause : gcLongestPause;
+                    }
+                    case "jdk.ClassLoadingStatistics" -> loadedClassCount =
+                            Math.max(loadedClassCount, event.getLong("loadedClassCount"));
+                    case "jdk.ExecutionSample" -> executionSamples.merge(topFrame(event), 1L, Long::sum);
+                    default -> {
+                        // Not reported.
+                    }
+                }
+            }
+        }
+
+        var report = new StringBuilder();
+        report.append("allocation sites (sampled bytes):\n");
+        appendTop(report, allocationBytes, FlightRecorderProfiler::formatBytes);
+
+        var readCount = socketReads.values().stream().mapToLong(read -> read[0]).sum();
+        var readNanos = socketReads.values().stream().mapToLong(read -> read[1]).sum();
+        var readBytes = socketReads.values().stream().mapToLong(read -> read[2]).sum();
+        report.append(String.format(
+                "socket reads: %d reads, %d ms, %s - socket writes: %d - tls handshakes: %d%n",
+                readCount, Duration.ofNanos(readNanos).toMillis(), formatBytes(readBytes), socketWriteCount,
+                tlsHandshakeCount));
+        socketReads.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, long[]> entry) -> entry.getValue()[1])
+                        .reversed())
+                .limit(TOP_ENTRIES)
+                .forEach(entry -> report.append(String.format(
+                        "  %s: %d reads, %d ms%n",
+                        entry.getKey(), entry.getValue()[0], Duration.ofNanos(entry.getValue()[1]).toMillis())));
+
+        report.append(String.format(
+                "gc pauses: %d collections, %d ms total, %d ms longest%n",
+                gcCount, gcPauses.toMillis(), gcLongestPause.toMillis()));
+        report.append(String.format("classes loaded: %d%n", loadedClassCount));
+
+        report.append("cpu samples (top frames):\n");
+        appendTop(report, executionSamples, String::valueOf);
+        return report.toString();
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Appends the top entries of a section.
+     * @param report the report.
+     * @param values the values by key.
+     * @param formatter the value formatter.
+     */
+    private static void appendTop(StringBuilder report, Map<String, Long> values, Function<Long, String> formatter) {
+        values.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(TOP_ENTRIES)
+                .forEach(entry -> report.append(
+                        String.format("  %10s  %s%n", formatter.apply(entry.getValue()), entry.getKey())));
+    }
+
+    /**
+     * Gets the allocation site of an event: the first frame outside the JDK, or the top frame.
+     * @param event the event.
+     * @return the allocation site.
+     */
+    private static String allocationSite(RecordedEvent event) {
+        var stackTrace = event.getStackTrace();
+        if (stackTrace == null || stackTrace.getFrames().isEmpty()) {
+            return "unknown";
+        }
+        return stackTrace.getFrames().stream()
+                .filter(RecordedFrame::isJavaFrame)
+                .filter(frame -> JDK_PACKAGES.stream()
+                        .noneMatch(prefix -> frame.getMethod().getType().getName().startsWith(prefix)))
+                .findFirst()
+                .map(FlightRecorderProfiler::formatFrame)
+                .orElseGet(() -> formatFrame(stackTrace.getFrames().get(0)));
+    }
+
+    /**
+     * Gets the top frame of an event.
+     * @param event the event.
+     * @return the top frame.
+     */
+    private static String topFrame(RecordedEvent event) {
+        var stackTrace = event.getStackTrace();
+        if (stackTrace == null || stackTrace.getFrames().isEmpty()) {
+            return "unknown";
+        }
+        return formatFrame(stackTrace.getFrames().get(0));
+    }
+
+    /**
+     * Formats a frame.
+     * @param frame the frame.
+     * @return the formatted frame.
+     */
+    private static String formatFrame(RecordedFrame frame) {
+        return String.format(
+                "%s.%s:%d", frame.getMethod().getType().getName(), frame.getMethod().getName(), frame.getLineNumber());
+    }
+
+    /**
+     * Formats a number of bytes.
+     * @param bytes the number of bytes.
+     * @return the formatted number of bytes.
+     */
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return String.format("%d B", bytes);
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format("%.1f KiB", bytes / 1024.0);
+        }
+        return String.format("%.1f MiB", bytes / (1024.0 * 1024.0));
+    }
+}
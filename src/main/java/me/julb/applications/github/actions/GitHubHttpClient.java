@@ -0,0 +1,392 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.kohsuke.github.HttpException;
+import org.kohsuke.github.authorization.AuthorizationProvider;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.NonNull;
+
+/**
+ * A minimal client for the GitHub REST and GraphQL endpoints not covered by the GitHub API library. <br>
+ * As with the GitHub API library, requests hitting a rate limit wait for it to reset and are retried, and reads
+ * failing with a server error are retried after a backoff.
+ * @author Julb.
+ */
+class GitHubHttpClient {
+
+    /**
+     * The HTTP status for a resource not modified.
+     */
+    static final int HTTP_NOT_MODIFIED = 304;
+
+    /**
+     * The HTTP status for a resource not found.
+     */
+    static final int HTTP_NOT_FOUND = 404;
+
+    /**
+     * The HTTP status for a forbidden request, used for rate limits.
+     */
+    private static final int HTTP_FORBIDDEN = 403;
+
+    /**
+     * The HTTP status for too many requests, used for rate limits.
+     */
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    /**
+     * The lowest HTTP status for a server error.
+     */
+    private static final int HTTP_SERVER_ERROR = 500;
+
+    /**
+     * The maximum number of attempts of a request.
+     */
+    static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * The pattern to extract the next page URL from the <code>Link</code> header.
+     */
+    private static final Pattern NEXT_LINK = Pattern.compile("<([^>]+)>;\\s*rel=\"next\"");
+
+    /**
+     * The JSON mapper.
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * The response of a REST call.
+     * @param status the HTTP status.
+     * @param body the JSON body, or <code>null</code> if none.
+     * @param etag the <code>ETag</code> header, or <code>null</code> if none.
+     * @param nextUrl the URL of the next page, or <code>null</code> if none.
+     */
+    record Response(int status, JsonNode body, String etag, String nextUrl) {}
+
+    /**
+     * The errors reported by a GraphQL query. <br>
+     * @author Julb.
+     */
+    static class GraphQLException extends IOException {
+
+        /**
+         * The serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The errors.
+         */
+        private final transient JsonNode errors;
+
+        /**
+         * Default constructor.
+         * @param errors the <code>errors</code> of the response.
+         */
+        GraphQLException(@NonNull JsonNode errors) {
+            super(String.format("graphql errors: %s", errors));
+            this.errors = errors;
+        }
+
+        /**
+         * Gets the errors.
+         * @return the <code>errors</code> of the response.
+         */
+        JsonNode getErrors() {
+            return errors;
+        }
+    }
+
+    /**
+     * The REST API URL.
+     */
+    private final String apiUrl;
+
+    /**
+     * The GraphQL API URL.
+     */
+    private final String graphqlUrl;
+
+    /**
+     * The authorization provider.
+     */
+    private final AuthorizationProvider authorizationProvider;
+
+    /**
+     * The HTTP client.
+     */
+    private final HttpClient httpClient;
+
+    /**
+     * The remaining rate limit last reported, by rate limit resource.
+     */
+    private final Map<String, Integer> remainingRateLimits = new ConcurrentHashMap<>();
+
+    /**
+     * Default constructor.
+     * @param apiUrl the REST API URL, e.g. <code>https://api.github.com</code>.
+     * @param authorizationProvider the authorization provider.
+     */
+    GitHubHttpClient(@NonNull String apiUrl, @NonNull AuthorizationProvider authorizationProvider) {
+        this.apiUrl = apiUrl.replaceAll("/+$", "");
+        this.graphqlUrl = this.apiUrl.endsWith("/api/v3")
+                ? this.apiUrl.substring(0, this.apiUrl.length() - "/v3".length()) + "/graphql"
+                : this.apiUrl + "/graphql";
+        this.authorizationProvider = authorizationProvider;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(30))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Gets a REST resource.
+     * @param pathOrUrl the path relative to the API URL, or an absolute URL such as a next page URL.
+     * @param etag the <code>ETag</code> of a previous response to make the request conditional, or <code>null</code>.
+     * @return the response, with a {@link #HTTP_NOT_MODIFIED} status and no body if the resource is not modified.
+     * @throws FileNotFoundException if the resource does not exist.
+     * @throws IOException if an error occurs.
+     */
+    Response get(@NonNull String pathOrUrl, String etag) throws IOException {
+        var request = newRequest(pathOrUrl.startsWith("http") ? pathOrUrl : apiUrl + pathOrUrl);
+        if (etag != null) {
+            request.header("If-None-Match", etag);
+        }
+        return send(request.GET().build());
+    }
+
+    /**
+     * Sends a REST request with a JSON body.
+     * @param method the HTTP method.
+     * @param path the path relative to the API URL.
+     * @param body the body to serialize as JSON, or <code>null</code> for no body.
+     * @return the response.
+     * @throws IOException if an error occurs.
+     */
+    Response send(@NonNull String method, @NonNull String path, Object body) throws IOException {
+        var publisher = body == null
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(OBJECT_MAPPER.writeValueAsString(body));
+        return send(newRequest(apiUrl + path)
+                .header("Content-Type", "application/json")
+                .method(method, publisher)
+                .build());
+    }
+
+    /**
+     * Executes a GraphQL query.
+     * @param query the query.
+     * @param variables the variables.
+     * @return the <code>data</code> of the response.
+     * @throws GraphQLException if the response contains errors.
+     * @throws IOException if an error occurs.
+     */
+    JsonNode graphql(@NonNull String query, @NonNull Map<String, Object> variables) throws IOException {
+        var body = OBJECT_MAPPER.writeValueAsString(Map.of("query", query, "variables", variables));
+        var response = send(newRequest(graphqlUrl)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build());
+
+        if (response.body() == null) {
+            throw new IOException(String.format("graphql: empty response from %s", graphqlUrl));
+        }
+        var errors = response.body().path("errors");
+        if (errors.isArray() && errors.size() > 0) {
+            throw new GraphQLException(errors);
+        }
+        return response.body().path("data");
+    }
+
+    /**
+     * Gets the remaining rate limit of a resource, as last reported in the response headers.
+     * @param resource the rate limit resource, e.g. <code>core</code> or <code>graphql</code>.
+     * @return the remaining rate limit, or {@link Integer#MAX_VALUE} if not known.
+     */
+    int getRemainingRateLimit(@NonNull String resource) {
+        return remainingRateLimits.getOrDefault(resource, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Encodes a ref or a path for use in a URL path, keeping the <code>/</code> separators.
+     * @param path the path.
+     * @return the encoded path.
+     */
+    static String encodePath(@NonNull String path) {
+        return Arrays.stream(path.split("/", -1))
+                .map(segment -> URLEncoder.encode(segment, StandardCharsets.UTF_8).replace("+", "%20"))
+                .collect(Collectors.joining("/"));
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Creates a request builder with the common headers.
+     * @param url the URL.
+     * @return the request builder.
+     * @throws IOException if the authorization cannot be obtained.
+     */
+    private HttpRequest.Builder newRequest(String url) throws IOException {
+        var request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(60))
+                .header("Accept", "application/vnd.github+json");
+        var authorization = authorizationProvider.getEncodedAuthorization();
+        if (authorization != null) {
+            request.header("Authorization", authorization);
+        }
+        return request;
+    }
+
+    /**
+     * Sends the request.
+     * @param request the request.
+     * @return the response.
+     * @throws IOException if an error occurs.
+     */
+    private Response send(HttpRequest request) throws IOException {
+        HttpResponse<String> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            for (int attempt = 1; attempt < MAX_ATTEMPTS; attempt++) {
+                var retryDelay = retryDelay(response, attempt);
+                if (retryDelay.isEmpty()) {
+                    break;
+                }
+                trackRateLimit(response);
+                sleep(retryDelay.get());
+                response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(String.format("interrupted while calling %s", request.uri()));
+        }
+        trackRateLimit(response);
+
+        var status = response.statusCode();
+        if (status == HTTP_NOT_FOUND) {
+            throw new FileNotFoundException(String.format("%s: %s", request.uri(), response.body()));
+        }
+        if (status >= 400) {
+            throw new HttpException(response.body(), status, null, request.uri().toString());
+        }
+
+        var body = response.body() == null || response.body().isEmpty()
+                ? null
+                : OBJECT_MAPPER.readTree(response.body());
+        var etag = response.headers().firstValue("ETag").orElse(null);
+        var nextUrl = response.headers()
+                .firstValue("Link")
+                .map(NEXT_LINK::matcher)
+                .filter(matcher -> matcher.find())
+                .map(matcher -> matcher.group(1))
+                .orElse(null);
+        return new Response(status, body, etag, nextUrl);
+    }
+
+    /**
+     * Gets the delay after which a failed request is retried.<br>
+     * A secondary rate limit gives the delay in the <code>Retry-After</code> header, and an exhausted primary rate
+     * limit the time of its reset. Server errors are only retried for reads, which are idempotent.
+     * @param response the response.
+     * @param attempt the number of the attempt which got the response.
+     * @return the delay after which the request is retried, or {@link Optional#empty()} if it is not retried.
+     */
+    Optional<Duration> retryDelay(@NonNull HttpResponse<?> response, int attempt) {
+        var status = response.statusCode();
+        var headers = response.headers();
+        if (status == HTTP_FORBIDDEN || status == HTTP_TOO_MANY_REQUESTS) {
+            var retryAfter = headers.firstValue("Retry-After").flatMap(GitHubHttpClient::parseLong);
+            if (retryAfter.isPresent()) {
+                return Optional.of(Duration.ofSeconds(Math.max(0, retryAfter.get())));
+            }
+            var remaining = headers.firstValue("X-RateLimit-Remaining").flatMap(GitHubHttpClient::parseLong);
+            var reset = headers.firstValue("X-RateLimit-Reset").flatMap(GitHubHttpClient::parseLong);
+            if (remaining.isPresent() && remaining.get() == 0 && reset.isPresent()) {
+                var untilReset = Duration.between(Instant.now(), Instant.ofEpochSecond(reset.get()));
+                return Optional.of(untilReset.isNegative() ? Duration.ZERO : untilReset.plusSeconds(1));
+            }
+        } else if (status >= HTTP_SERVER_ERROR && "GET".equals(response.request().method())) {
+            return Optional.of(Duration.ofSeconds(attempt));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Sleeps before retrying a request.
+     * @param delay the delay.
+     * @throws InterruptedException if the thread is interrupted.
+     */
+    void sleep(@NonNull Duration delay) throws InterruptedException {
+        Thread.sleep(delay.toMillis());
+    }
+
+    /**
+     * Tracks the remaining rate limit of the resource of the response.
+     * @param response the response.
+     */
+    private void trackRateLimit(HttpResponse<?> response) {
+        var rateLimitResource = response.headers().firstValue("X-RateLimit-Resource");
+        var rateLimitRemaining =
+                response.headers().firstValue("X-RateLimit-Remaining").flatMap(GitHubHttpClient::parseLong);
+        if (rateLimitResource.isPresent() && rateLimitRemaining.isPresent()) {
+            var remaining = (int) Math.min(Integer.MAX_VALUE, rateLimitRemaining.get());
+            remainingRateLimits.put(rateLimitResource.get(), remaining);
+        }
+    }
+
+    /**
+     * Parses a numeric header.
+     * @param value the header value.
+     * @return the number, or {@link Optional#empty()} if the header is malformed.
+     */
+    private static Optional<Long> parseLong(String value) {
+        try {
+            return Optional.of(Long.valueOf(value.trim()));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.util.regex.Pattern;
+
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Glob pattern utilities. <br>
+ * <ul>
+ * <li><code>*</code> matches any sequence of characters except <code>/</code>.</li>
+ * <li><code>**</code> matches any sequence of characters including <code>/</code>.</li>
+ * <li><code>?</code> matches a single character except <code>/</code>.</li>
+ * <li><code>[abc]</code>, <code>[a-z]</code> match a single character of the class except <code>/</code>, and
+ * <code>[!abc]</code> or <code>[^abc]</code> a single character out of the class except <code>/</code>.</li>
+ * </ul>
+ * @author Julb.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+final class Globs {
+
+    /**
+     * Checks if the given value contains glob wildcards.
+     * @param value the value.
+     * @return <code>true</code> if the value contains glob wildcards, <code>false</code> otherwise.
+     */
+    static boolean isGlob(@NonNull String value) {
+        return value.indexOf('*') >= 0 || value.indexOf('?') >= 0 || value.indexOf('[') >= 0;
+    }
+
+    /**
+     * Converts the glob to a {@link Pattern}.
+     * @param glob the glob.
+     * @param caseInsensitive <code>true</code> to match regardless of the case.
+     * @return the {@link Pattern} matching the glob.
+     * @throws IllegalArgumentException if a character class is not closed or not valid.
+     */
+    static Pattern toPattern(@NonNull String glob, boolean caseInsensitive) {
+        var regex = new StringBuilder();
+        var literal = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            var c = glob.charAt(i);
+            if (c == '[') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                i = appendCharacterClass(glob, i, regex);
+            } else if (c == '*' || c == '?') {
+                // Flush literal part.
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+
+                if (c == '?') {
+                    regex.append("[^/]");
+                } else if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                    regex.append(".*");
+                    i++;
+                } else {
+                    regex.append("[^/]*");
+                }
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+
+        return Pattern.compile(regex.toString(), caseInsensitive ? Pattern.CASE_INSENSITIVE : 0);
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Appends the regular expression of a character class. A <code>]</code> right after the opening bracket is a
+     * member of the class.
+     * @param glob the glob.
+     * @param start the index of the opening bracket.
+     * @param regex the regular expression to append to.
+     * @return the index of the closing bracket.
+     * @throws IllegalArgumentException if the character class is not closed.
+     */
+    private static int appendCharacterClass(String glob, int start, StringBuilder regex) {
+        var i = start + 1;
+        var negated = i < glob.length() && (glob.charAt(i) == '!' || glob.charAt(i) == '^');
+        if (negated) {
+            i++;
+        }
+
+        var members = new StringBuilder();
+        for (var first = true; i < glob.length() && (first || glob.charAt(i) != ']'); i++, first = false) {
+            var c = glob.charAt(i);
+            if (c == '\\' || c == '[' || c == ']' || c == '&' || c == '^') {
+                members.append('\\');
+            }
+            members.append(c);
+        }
+        if (i >= glob.length()) {
+            throw new IllegalArgumentException(String.format("unclosed character class in glob: %s", glob));
+        }
+
+        regex.append("(?!/)[").append(negated ? "^" : "").append(members).append(']');
+        return i;
+    }
+}
@@ -0,0 +1,375 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import lombok.NonNull;
+
+/**
+ * A client reading and writing branches through the GitHub GraphQL API. <br>
+ * The repository, the branch and the source of the branch are resolved in a single query of constant size, whatever
+ * the number of refs of the repository. Annotated tags are peeled to their target commit.
+ * @author Julb.
+ */
+class GraphQLRefClient {
+
+    /**
+     * The fields of a git object, peeling up to three levels of annotated tags.
+     */
+    private static final String PEELED_OBJECT = "__typename oid ... on Tag { target { __typename oid ... on Tag {"
+            + " target { __typename oid ... on Tag { target { __typename oid } } } } } }";
+
+    /**
+     * The fields of a ref.
+     */
+    private static final String REF = "id prefix name target { " + PEELED_OBJECT + " }";
+
+    /**
+     * The number of refs matching a name regardless of the case looked up.
+     */
+    private static final int MATCHING_REFS = 100;
+
+    /**
+     * The number of refs listed by page.
+     */
+    private static final int PAGE_SIZE = 100;
+
+    /**
+     * The query listing the refs starting with a prefix, by page.
+     */
+    private static final String LIST_QUERY = "query($owner: String!, $name: String!, $prefix: String!,"
+            + " $after: String) { repository(owner: $owner, name: $name) { refs(refPrefix: $prefix, first: " + PAGE_SIZE + ","
+            + " after: $after, orderBy: {field: ALPHABETICAL, direction: ASC}) {"
+            + " pageInfo { hasNextPage endCursor } nodes { " + REF + " } } } }";
+
+    /**
+     * The mutation creating a ref.
+     */
+    private static final String CREATE_MUTATION = "mutation($repositoryId: ID!, $name: String!, $oid: GitObjectID!) {"
+            + " createRef(input: {repositoryId: $repositoryId, name: $name, oid: $oid}) { ref { " + REF + " } } }";
+
+    /**
+     * The mutation updating a ref.
+     */
+    private static final String UPDATE_MUTATION = "mutation($refId: ID!, $oid: GitObjectID!, $force: Boolean!) {"
+            + " updateRef(input: {refId: $refId, oid: $oid, force: $force}) { ref { " + REF + " } } }";
+
+    /**
+     * The mutation deleting a ref.
+     */
+    private static final String DELETE_MUTATION =
+            "mutation($refId: ID!) { deleteRef(input: {refId: $refId}) { clientMutationId } }";
+
+    /**
+     * The state of a repository for a branch operation.
+     * @param repositoryId the repository node ID.
+     * @param repository the repository full name.
+     * @param branchId the branch ref node ID, or <code>null</code> if the branch does not exist.
+     * @param branch the branch, or <code>null</code> if the branch does not exist.
+     * @param source the source, pointing to the peeled object, or <code>null</code> if not resolved.
+     */
+    record BranchSnapshot(String repositoryId, String repository, String branchId, RefEntry branch, RefEntry source) {
+
+        /**
+         * Gets the branch.
+         * @return the branch if it exists, {@link Optional#empty()} otherwise.
+         */
+        Optional<RefEntry> findBranch() {
+            return Optional.ofNullable(branch);
+        }
+
+        /**
+         * Gets the source.
+         * @return the source, pointing to the peeled object, or {@link Optional#empty()} if not resolved.
+         */
+        Optional<RefEntry> findSource() {
+            return Optional.ofNullable(source);
+        }
+    }
+
+    /**
+     * A ref listed, with its node ID.
+     * @param refId the ref node ID.
+     * @param ref the ref.
+     */
+    record ListedRef(String refId, RefEntry ref) {}
+
+    /**
+     * The HTTP client.
+     */
+    private final GitHubHttpClient httpClient;
+
+    /**
+     * Default constructor.
+     * @param httpClient the HTTP client.
+     */
+    GraphQLRefClient(@NonNull GitHubHttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    /**
+     * Reads the repository, the branch and the source of the branch in a single query.<br>
+     * The source is looked up as a branch, then as a tag, then as a ref, then as a SHA. Like the REST lookups, names
+     * are matched regardless of their case: among the refs matching a name, the first one in alphabetical order wins.
+     * @param repository the repository full name.
+     * @param branchRef the branch ref, e.g. <code>refs/heads/main</code>, or <code>null</code> not to read it.
+     * @param from the branch, tag, ref or SHA from which to create the branch, or <code>null</code> not to read it.
+     * @return the snapshot.
+     * @throws IOException if an error occurs or if the repository does not exist.
+     */
+    BranchSnapshot read(@NonNull String repository, String branchRef, String from) throws IOException {
+        var ownerAndName = splitRepository(repository);
+
+        var variables = new HashMap<String, Object>();
+        variables.put("owner", ownerAndName[0]);
+        variables.put("name", ownerAndName[1]);
+        var declarations = new StringBuilder("$owner: String!, $name: String!");
+        var fields = new StringBuilder();
+        if (branchRef != null) {
+            variables.put("branch", branchRef);
+            variables.put("branchName", branchRef.replaceFirst("^refs/heads/", ""));
+            declarations.append(", $branch: String!, $branchName: String!");
+            fields.append(matchingRefs("branch", "$branch", "refs/heads/", "$branchName"));
+        }
+        if (from != null) {
+            variables.put("from", from);
+            variables.put("fromBranch", String.format("refs/heads/%s", from));
+            variables.put("fromTag", String.format("refs/tags/%s", from));
+            declarations.append(", $from: String!, $fromBranch: String!, $fromTag: String!");
+            fields.append(matchingRefs("fromBranch", "$fromBranch", "refs/heads/", "$from"))
+                    .append(matchingRefs("fromTag", "$fromTag", "refs/tags/", "$from"))
+                    .append(" fromRef: ref(qualifiedName: $from) { ")
+                    .append(REF)
+                    .append(" } fromObject: object(expression: $from) { ")
+                    .append(PEELED_OBJECT)
+                    .append(" }");
+        }
+
+        var data = httpClient.graphql(
+                String.format(
+                        "query(%s) { repository(owner: $owner, name: $name) { id nameWithOwner%s } }",
+                        declarations, fields),
+                variables);
+
+        var repositoryNode = data.path("repository");
+        if (repositoryNode.isMissingNode() || repositoryNode.isNull()) {
+            throw new IOException(String.format("repository not found: %s", repository));
+        }
+
+        var branchNode = branchRef != null ? findMatchingRef(repositoryNode, "branch", branchRef) : null;
+        RefEntry source = null;
+        if (from != null) {
+            var sourceNode = findMatchingRef(repositoryNode, "fromBranch", String.format("refs/heads/%s", from));
+            if (sourceNode == null) {
+                sourceNode = findMatchingRef(repositoryNode, "fromTag", String.format("refs/tags/%s", from));
+            }
+            if (sourceNode == null && isPresent(repositoryNode.path("fromRef"))) {
+                sourceNode = repositoryNode.path("fromRef");
+            }
+            if (sourceNode != null) {
+                source = toPeeledRefEntry(refName(sourceNode), sourceNode.path("target"));
+            } else if (isPresent(repositoryNode.path("fromObject"))) {
+                source = toPeeledRefEntry(from, repositoryNode.path("fromObject"));
+            }
+        }
+
+        return new BranchSnapshot(
+                repositoryNode.path("id").asText(),
+                repositoryNode.path("nameWithOwner").asText(repository),
+                branchNode != null ? branchNode.path("id").asText() : null,
+                branchNode != null ? toRefEntry(branchNode) : null,
+                source);
+    }
+
+    /**
+     * Lists the refs starting with a prefix, page by page.
+     * @param repository the repository full name.
+     * @param prefix the prefix, ending with a <code>/</code>, e.g. <code>refs/heads/</code>.
+     * @return the refs, in alphabetical order.
+     * @throws IOException if an error occurs or if the repository does not exist.
+     */
+    List<ListedRef> listRefs(@NonNull String repository, @NonNull String prefix) throws IOException {
+        var ownerAndName = splitRepository(repository);
+
+        var refs = new ArrayList<ListedRef>();
+        String after = null;
+        do {
+            var variables = new HashMap<String, Object>();
+            variables.put("owner", ownerAndName[0]);
+            variables.put("name", ownerAndName[1]);
+            variables.put("prefix", prefix);
+            variables.put("after", after);
+            var refsNode = httpClient.graphql(LIST_QUERY, variables).path("repository").path("refs");
+            if (refsNode.isMissingNode() || refsNode.isNull()) {
+                throw new IOException(String.format("repository not found: %s", repository));
+            }
+            for (JsonNode refNode : refsNode.path("nodes")) {
+                refs.add(new ListedRef(refNode.path("id").asText(), toRefEntry(refNode)));
+            }
+            var pageInfo = refsNode.path("pageInfo");
+            after = pageInfo.path("hasNextPage").asBoolean() ? pageInfo.path("endCursor").asText() : null;
+        } while (after != null);
+        return refs;
+    }
+
+    /**
+     * Creates a ref.
+     * @param repositoryId the repository node ID.
+     * @param ref the ref to create.
+     * @param sha the full commit SHA.
+     * @return the ref created.
+     * @throws IOException if an error occurs.
+     */
+    RefEntry createRef(@NonNull String repositoryId, @NonNull String ref, @NonNull String sha) throws IOException {
+        var data = httpClient.graphql(CREATE_MUTATION, Map.of("repositoryId", repositoryId, "name", ref, "oid", sha));
+        return toRefEntry(data.path("createRef").path("ref"));
+    }
+
+    /**
+     * Updates a ref.
+     * @param refId the ref node ID.
+     * @param sha the full commit SHA.
+     * @param force <code>false</code> to only allow fast-forward updates.
+     * @return the ref updated.
+     * @throws IOException if an error occurs.
+     */
+    RefEntry updateRef(@NonNull String refId, @NonNull String sha, boolean force) throws IOException {
+        var data = httpClient.graphql(UPDATE_MUTATION, Map.of("refId", refId, "oid", sha, "force", force));
+        return toRefEntry(data.path("updateRef").path("ref"));
+    }
+
+    /**
+     * Deletes a ref.
+     * @param refId the ref node ID.
+     * @throws IOException if an error occurs.
+     */
+    void deleteRef(@NonNull String refId) throws IOException {
+        httpClient.graphql(DELETE_MUTATION, Map.of("refId", refId));
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Splits a repository full name.
+     * @param repository the repository full name.
+     * @return the owner and the name of the repository.
+     * @throws IllegalArgumentException if the full name is invalid.
+     */
+    private static String[] splitRepository(String repository) {
+        var ownerAndName = repository.split("/", 2);
+        if (ownerAndName.length != 2) {
+            throw new IllegalArgumentException(String.format("invalid repository: %s", repository));
+        }
+        return ownerAndName;
+    }
+
+    /**
+     * Checks if a node is present.
+     * @param node the node.
+     * @return <code>true</code> if the node is present and not <code>null</code>.
+     */
+    private static boolean isPresent(JsonNode node) {
+        return !node.isMissingNode() && !node.isNull();
+    }
+
+    /**
+     * Gets the fields of a ref matched with its case, and of the refs matching its name regardless of the case.
+     * @param alias the alias of the ref.
+     * @param refVariable the variable holding the ref.
+     * @param prefix the prefix of the refs matching the name.
+     * @param nameVariable the variable holding the name.
+     * @return the fields.
+     */
+    private static String matchingRefs(String alias, String refVariable, String prefix, String nameVariable) {
+        return String.format(
+                " %1$s: ref(qualifiedName: %2$s) { %5$s } %1$sMatches: refs(refPrefix: \"%3$s\", query: %4$s,"
+                        + " first: %6$d, orderBy: {field: ALPHABETICAL, direction: ASC}) { nodes { %5$s } }",
+                alias, refVariable, prefix, nameVariable, REF, MATCHING_REFS);
+    }
+
+    /**
+     * Finds the first ref matching a ref regardless of the case, in alphabetical order.
+     * @param repositoryNode the repository node.
+     * @param alias the alias of the ref.
+     * @param ref the ref.
+     * @return the ref node, or <code>null</code> if none matches.
+     */
+    private static JsonNode findMatchingRef(JsonNode repositoryNode, String alias, String ref) {
+        for (JsonNode refNode : repositoryNode.path(alias + "Matches").path("nodes")) {
+            if (refName(refNode).equalsIgnoreCase(ref)) {
+                return refNode;
+            }
+        }
+
+        // More refs match the name than listed.
+        var refNode = repositoryNode.path(alias);
+        return isPresent(refNode) ? refNode : null;
+    }
+
+    /**
+     * Gets the full name of a ref node.
+     * @param refNode the ref node.
+     * @return the full name of the ref.
+     */
+    private static String refName(JsonNode refNode) {
+        return refNode.path("prefix").asText() + refNode.path("name").asText();
+    }
+
+    /**
+     * Converts a ref to the object annotated tags point to.
+     * @param ref the ref.
+     * @param object the git object the ref points to.
+     * @return the ref, pointing to the peeled object.
+     */
+    private static RefEntry toPeeledRefEntry(String ref, JsonNode object) {
+        var peeled = object;
+        while ("Tag".equals(peeled.path("__typename").asText()) && isPresent(peeled.path("target"))) {
+            peeled = peeled.path("target");
+        }
+        return new RefEntry(
+                ref, peeled.path("oid").asText(), peeled.path("__typename").asText().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Converts a ref node.
+     * @param refNode the ref node.
+     * @return the ref.
+     */
+    private static RefEntry toRefEntry(JsonNode refNode) {
+        var target = refNode.path("target");
+        return new RefEntry(
+                refName(refNode),
+                target.path("oid").asText(),
+                target.path("__typename").asText().toLowerCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,253 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.kohsuke.github.HttpException;
+
+import lombok.NonNull;
+
+/**
+ * The {@link RefStore} reading and writing the branches through the GraphQL API. <br>
+ * The repository, the branch and the source are read in a single query, then the branch is written with a single
+ * mutation, whatever the number of refs of the repository.
+ * @author Julb.
+ */
+public class GraphQLRefStore implements RefStore {
+
+    /**
+     * The HTTP status with which the REST API reports the conflicting updates.
+     */
+    private static final int HTTP_UNPROCESSABLE_ENTITY = 422;
+
+    /**
+     * The type of the GraphQL errors reporting the updates which cannot be applied, such as a non-fast-forward update.
+     */
+    private static final String UNPROCESSABLE = "UNPROCESSABLE";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String name() {
+        return "graphql";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String rateLimitResource() {
+        return "graphql";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int estimateRequests(@NonNull InputBranchState branchState, boolean repositoryFetched) {
+        // The query, then the mutation.
+        return branchState == InputBranchState.WAIT ? 1 : 2;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Session open(@NonNull ManageBranchGitHubAction action, @NonNull String repositoryName) {
+        return new GraphQLSession(action.newGraphQLRefClient(), repositoryName);
+    }
+
+    /**
+     * The session of the {@link GraphQLRefStore}, keeping the node IDs read to write the refs.
+     * @author Julb.
+     */
+    private static class GraphQLSession implements Session {
+
+        /**
+         * The GraphQL client.
+         */
+        private final GraphQLRefClient graphQLRefClient;
+
+        /**
+         * The repository full name, as reported once read.
+         */
+        private volatile String repository;
+
+        /**
+         * The repository node ID, or <code>null</code> if not read yet.
+         */
+        private volatile String repositoryId;
+
+        /**
+         * The node IDs of the refs read by ref.
+         */
+        private final Map<String, String> refIds = new ConcurrentHashMap<>();
+
+        /**
+         * Default constructor.
+         * @param graphQLRefClient the GraphQL client.
+         * @param repository the repository full name.
+         */
+        GraphQLSession(GraphQLRefClient graphQLRefClient, String repository) {
+            this.graphQLRefClient = graphQLRefClient;
+            this.repository = repository;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String repository() {
+            return repository;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Optional<RefEntry> read(@NonNull String branchRef) throws IOException {
+            return lookup(branchRef, null).findBranch();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Optional<RefEntry> resolve(@NonNull String name) throws IOException {
+            return Optional.ofNullable(readSnapshot(null, name).source());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public List<RefEntry> list(@NonNull String prefix) throws IOException {
+            var listedRefs = graphQLRefClient.listRefs(repository, prefix);
+            listedRefs.forEach(listedRef -> refIds.put(listedRef.ref().ref(), listedRef.refId()));
+            return listedRefs.stream().map(GraphQLRefClient.ListedRef::ref).toList();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Lookup lookup(@NonNull String branchRef, String name) throws IOException {
+            var snapshot = readSnapshot(branchRef, name);
+            if (snapshot.branch() != null) {
+                refIds.put(snapshot.branch().ref(), snapshot.branchId());
+            }
+            return new Lookup(snapshot.branch(), snapshot.source());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public RefEntry create(@NonNull String ref, @NonNull String sha) throws IOException {
+            if (repositoryId == null) {
+                readSnapshot(null, null);
+            }
+            return graphQLRefClient.createRef(repositoryId, ref, sha);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public RefEntry update(@NonNull RefEntry ref, @NonNull String sha, boolean force) throws IOException {
+            try {
+                return graphQLRefClient.updateRef(findId(ref), sha, force);
+            } catch (GitHubHttpClient.GraphQLException e) {
+                if (!isConflict(e)) {
+                    throw e;
+                }
+                // Report the conflict as the REST API does, for the caller to retry.
+                var conflict = new HttpException(e.getMessage(), HTTP_UNPROCESSABLE_ENTITY, null, null);
+                conflict.initCause(e);
+                throw conflict;
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void delete(@NonNull RefEntry ref) throws IOException {
+            graphQLRefClient.deleteRef(findId(ref));
+            refIds.remove(ref.ref());
+        }
+
+        /**
+         * Reads the repository, and the branch and the source if any.
+         * @param branchRef the branch ref, or <code>null</code> not to read it.
+         * @param name the source, or <code>null</code> not to read it.
+         * @return the snapshot.
+         * @throws IOException if an error occurs.
+         */
+        private GraphQLRefClient.BranchSnapshot readSnapshot(String branchRef, String name) throws IOException {
+            var snapshot = graphQLRefClient.read(repository, branchRef, name);
+            repository = snapshot.repository();
+            repositoryId = snapshot.repositoryId();
+            return snapshot;
+        }
+
+        /**
+         * Checks if the errors of a mutation report a conflicting update, such as a non-fast-forward update.
+         * @param e the errors of the mutation.
+         * @return <code>true</code> if the update conflicts with the current ref, <code>false</code> otherwise.
+         */
+        private static boolean isConflict(GitHubHttpClient.GraphQLException e) {
+            for (var error : e.getErrors()) {
+                var message = error.path("message").asText().toLowerCase(Locale.ROOT);
+                if (UNPROCESSABLE.equals(error.path("type").asText())
+                        || message.contains("fast forward")
+                        || message.contains("fast-forward")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Finds the node ID of a ref read by this session.
+         * @param ref the ref.
+         * @return the node ID.
+         * @throws IllegalStateException if the ref was not read by this session.
+         */
+        private String findId(RefEntry ref) {
+            var refId = refIds.get(ref.ref());
+            if (refId == null) {
+                throw new IllegalStateException(String.format("ref not read: %s", ref.ref()));
+            }
+            return refId;
+        }
+    }
+}
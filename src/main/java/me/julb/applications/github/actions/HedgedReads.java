@@ -0,0 +1,316 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+import lombok.NonNull;
+
+/**
+ * Hedged execution of idempotent reads. <br>
+ * When a read does not answer within the configured percentile of the latencies observed for reads of the same kind,
+ * a duplicate read is sent. The first answer wins and the other read is cancelled. Only reads of a known, small number
+ * of requests (a single ref, a repository) are meant to be hedged: no hedge is sent when it would bring the remaining
+ * rate limit below the reserve.
+ * @author Julb.
+ */
+class HedgedReads {
+
+    /**
+     * The number of latency samples kept.
+     */
+    static final int SAMPLES = 128;
+
+    /**
+     * The minimum number of latency samples before using the percentile.
+     */
+    static final int MIN_SAMPLES = 10;
+
+    /**
+     * The remaining rate limit under which no hedge is sent.
+     */
+    static final int RATE_LIMIT_RESERVE = 100;
+
+    /**
+     * The kind of the reads of a single ref.
+     */
+    static final String REF = "ref";
+
+    /**
+     * The kind of the reads of a repository.
+     */
+    static final String REPOSITORY = "repository";
+
+    /**
+     * A read.
+     * @param <T> the result type.
+     */
+    @FunctionalInterface
+    interface Read<T> {
+        /**
+         * Executes the read.
+         * @return the result.
+         * @throws IOException if an error occurs.
+         */
+        T call() throws IOException;
+    }
+
+    /**
+     * <code>true</code> if hedging is enabled.
+     */
+    private final boolean enabled;
+
+    /**
+     * The latency percentile after which a hedge is sent.
+     */
+    private final int percentile;
+
+    /**
+     * The minimum delay before sending a hedge, in milliseconds.
+     */
+    private final long minDelayMillis;
+
+    /**
+     * The supplier of the remaining rate limit.
+     */
+    private final IntSupplier remainingRateLimit;
+
+    /**
+     * The latency samples, by kind of read.
+     */
+    private final Map<String, Histogram> histograms = new HashMap<>();
+
+    /**
+     * The number of reads.
+     */
+    private final AtomicLong reads = new AtomicLong();
+
+    /**
+     * The number of hedges sent.
+     */
+    private final AtomicLong hedges = new AtomicLong();
+
+    /**
+     * The number of hedges which answered first.
+     */
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    /**
+     * The number of hedges skipped because of the rate limit.
+     */
+    private final AtomicLong hedgesSkipped = new AtomicLong();
+
+    /**
+     * The executor running the reads.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Default constructor.
+     * @param enabled <code>true</code> if hedging is enabled.
+     * @param percentile the latency percentile after which a hedge is sent.
+     * @param minDelayMillis the minimum delay before sending a hedge, in milliseconds.
+     * @param remainingRateLimit the supplier of the remaining rate limit.
+     */
+    HedgedReads(boolean enabled, int percentile, long minDelayMillis, @NonNull IntSupplier remainingRateLimit) {
+        if (percentile < 1 || percentile > 100) {
+            throw new IllegalArgumentException(String.format("invalid hedge percentile: %d", percentile));
+        }
+        if (minDelayMillis < 0) {
+            throw new IllegalArgumentException(String.format("invalid hedge delay: %d", minDelayMillis));
+        }
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.minDelayMillis = minDelayMillis;
+        this.remainingRateLimit = remainingRateLimit;
+        this.executor = enabled
+                ? Executors.newCachedThreadPool(runnable -> {
+                    var thread = new Thread(runnable, "hedged-read");
+                    thread.setDaemon(true);
+                    return thread;
+                })
+                : null;
+    }
+
+    /**
+     * Gets an instance with hedging disabled.
+     * @return an instance with hedging disabled.
+     */
+    static HedgedReads disabled() {
+        return new HedgedReads(false, 100, 0, () -> Integer.MAX_VALUE);
+    }
+
+    /**
+     * Checks if hedging is enabled.
+     * @return <code>true</code> if hedging is enabled, <code>false</code> otherwise.
+     */
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The latency samples of a kind of read.
+     */
+    private static final class Histogram {
+        /**
+         * The latency samples, in nanoseconds.
+         */
+        private final long[] latencies = new long[SAMPLES];
+
+        /**
+         * The number of latency samples recorded.
+         */
+        private int count;
+    }
+
+    /**
+     * Executes the read, hedging it if it does not answer in time.
+     * @param <T> the result type.
+     * @param kind the kind of read, whose latencies are observed apart from the other kinds.
+     * @param requests the number of requests sent by the read, which a hedge would send again.
+     * @param read the read, which must be idempotent.
+     * @return the result of the first read to answer.
+     * @throws IOException if both reads fail.
+     */
+    <T> T call(@NonNull String kind, int requests, @NonNull Read<T> read) throws IOException {
+        if (requests < 1) {
+            throw new IllegalArgumentException(String.format("invalid number of requests: %d", requests));
+        }
+        if (!enabled) {
+            return read.call();
+        }
+
+        reads.incrementAndGet();
+        var completion = new ExecutorCompletionService<T>(executor);
+        var start = System.nanoTime();
+        var primary = completion.submit(read::call);
+        Future<T> hedge = null;
+        try {
+            var first = completion.poll(hedgeDelayNanos(kind), TimeUnit.NANOSECONDS);
+            if (first == null) {
+                if (remainingRateLimit.getAsInt() - requests >= RATE_LIMIT_RESERVE) {
+                    hedges.incrementAndGet();
+                    hedge = completion.submit(read::call);
+                } else {
+                    hedgesSkipped.incrementAndGet();
+                }
+                first = completion.take();
+            }
+
+            try {
+                var result = first.get();
+                recordLatency(kind, System.nanoTime() - start);
+                if (first == hedge) {
+                    hedgeWins.incrementAndGet();
+                }
+                return result;
+            } catch (ExecutionException e) {
+                // The other read may still succeed.
+                if (hedge == null) {
+                    throw unwrap(e);
+                }
+                try {
+                    return completion.take().get();
+                } catch (ExecutionException e2) {
+                    throw unwrap(e2);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for read.");
+        } finally {
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Gets the delay after which a hedge is sent.
+     * @param kind the kind of read.
+     * @return the delay after which a hedge is sent, in nanoseconds.
+     */
+    synchronized long hedgeDelayNanos(@NonNull String kind) {
+        var minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMillis);
+        var histogram = histograms.get(kind);
+        if (histogram == null || histogram.count < MIN_SAMPLES) {
+            return minDelayNanos;
+        }
+
+        var samples = Arrays.copyOf(histogram.latencies, Math.min(histogram.count, SAMPLES));
+        Arrays.sort(samples);
+        var index = (int) Math.ceil(percentile / 100.0 * samples.length) - 1;
+        return Math.max(minDelayNanos, samples[Math.max(0, index)]);
+    }
+
+    /**
+     * Gets a summary of the hedged reads.
+     * @return the summary.
+     */
+    String summary() {
+        return String.format(
+                "hedged reads: [reads: %d, hedges: %d, hedge wins: %d, hedges skipped: %d]",
+                reads.get(), hedges.get(), hedgeWins.get(), hedgesSkipped.get());
+    }
+
+    /**
+     * Records the latency of a read.
+     * @param kind the kind of read.
+     * @param latencyNanos the latency, in nanoseconds.
+     */
+    synchronized void recordLatency(@NonNull String kind, long latencyNanos) {
+        var histogram = histograms.computeIfAbsent(kind, key -> new Histogram());
+        histogram.latencies[histogram.count % SAMPLES] = latencyNanos;
+        histogram.count++;
+    }
+
+    /**
+     * Unwraps the cause of a failed read.
+     * @param e the exception.
+     * @return the cause as an {@link IOException}.
+     */
+    private static IOException unwrap(ExecutionException e) {
+        var cause = e.getCause();
+        if (cause instanceof IOException ioException) {
+            return ioException;
+        }
+        if (cause instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        return new IOException(cause);
+    }
+}
@@ -27,7 +27,7 @@ package me.julb.applications.github.actions;
  * The input branch state. <br>
  * @author Julb.
  */
-enum InputBranchState {
+public enum InputBranchState {
     /**
      * The branch needs to be created.
      */
@@ -36,5 +36,10 @@ enum InputBranchState {
     /**
      * The branch needs to be deleted.
      */
-    ABSENT;
+    ABSENT,
+
+    /**
+     * The branch needs to exist, and to point to the expected SHA if any, within a timeout.
+     */
+    WAIT;
 }
@@ -23,22 +23,54 @@
  */
 package me.julb.applications.github.actions;
 
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.ServiceLoader;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
 
+import org.kohsuke.github.GHPerson;
+import org.kohsuke.github.GHRateLimit;
 import org.kohsuke.github.GHRef;
 import org.kohsuke.github.GHRef.GHObject;
 import org.kohsuke.github.GHRepository;
 import org.kohsuke.github.GitHub;
 import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.HttpException;
+import org.kohsuke.github.authorization.AuthorizationProvider;
+import org.kohsuke.github.extras.HttpClientGitHubConnector;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import me.julb.sdk.github.actions.kit.GitHubActionsKit;
 import me.julb.sdk.github.actions.spi.GitHubActionProvider;
 
 import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
 
@@ -48,6 +80,81 @@ import lombok.Setter;
  */
 public class ManageBranchGitHubAction implements GitHubActionProvider {
 
+    /**
+     * The default number of repositories managed concurrently.
+     */
+    static final int DEFAULT_CONCURRENCY = 8;
+
+    /**
+     * The default latency percentile after which a read is hedged.
+     */
+    static final int DEFAULT_HEDGE_PERCENTILE = 95;
+
+    /**
+     * The default minimum delay before hedging a read, in milliseconds.
+     */
+    static final long DEFAULT_HEDGE_MIN_DELAY_MILLIS = 1000;
+
+    /**
+     * The default maximum duration to wait for a branch, in seconds.
+     */
+    static final long DEFAULT_WAIT_TIMEOUT_SECONDS = 300;
+
+    /**
+     * The path designating the standard input or output of an operations stream.
+     */
+    static final String STANDARD_STREAM = "-";
+
+    /**
+     * The maximum number of repositories kept when streaming operations.
+     */
+    static final int MAX_CACHED_REPOSITORIES = 64;
+
+    /**
+     * The rate limit resource of the REST API.
+     */
+    static final String REST_RATE_LIMIT_RESOURCE = "core";
+
+    /**
+     * The maximum number of attempts to update a branch when the update conflicts.
+     */
+    static final int MAX_UPDATE_ATTEMPTS = 5;
+
+    /**
+     * The HTTP status returned by GitHub when a ref update is rejected.
+     */
+    private static final int HTTP_UNPROCESSABLE_ENTITY = 422;
+
+    /**
+     * The length of a full SHA-1 commit hash.
+     */
+    private static final int FULL_SHA_LENGTH = 40;
+
+    /**
+     * The length of a full SHA-256 commit hash.
+     */
+    private static final int FULL_SHA256_LENGTH = 64;
+
+    /**
+     * The JSON mapper.
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * Visits a repository.
+     */
+    @FunctionalInterface
+    interface RepositoryVisitor {
+        /**
+         * Visits a repository.
+         * @param fullName the repository full name.
+         * @param repository the repository if already fetched, <code>null</code> otherwise.
+         * @throws IOException if an error occurs.
+         * @throws InterruptedException if the thread is interrupted.
+         */
+        void visit(String fullName, GHRepository repository) throws IOException, InterruptedException;
+    }
+
     /**
      * The GitHub action kit.
      */
@@ -63,63 +170,443 @@ public class ManageBranchGitHubAction implements GitHubActionProvider {
     /**
      * The GitHub repository.
      */
+    @Getter(AccessLevel.PACKAGE)
     @Setter(AccessLevel.PACKAGE)
     private GHRepository ghRepository;
 
+    /**
+     * The refs known from the event payload, loaded lazily.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private EventPayloadRefs eventPayloadRefs;
+
+    /**
+     * The hedged execution of reads.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private HedgedReads hedgedReads = HedgedReads.disabled();
+
+    /**
+     * <code>true</code> to look for refs by listing prefix shards concurrently rather than all the refs.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    private boolean shardedListing;
+
+    /**
+     * The authorization provider of the GitHub API.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private AuthorizationProvider authorizationProvider;
+
+    /**
+     * The GitHub HTTP client, created lazily.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private GitHubHttpClient httpClient;
+
+    /**
+     * The pool of credentials spreading the operations of a multi-repository run, or <code>null</code> if none.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private CredentialPool credentialPool;
+
+    /**
+     * The update mode of an existing branch.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private InputUpdateMode updateMode = InputUpdateMode.FORCE;
+
+    /**
+     * The SHA the existing branch is expected to point to before being updated, if any.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private String expectedSha;
+
+    /**
+     * The API used to read and write the branch.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private InputApi api = InputApi.REST;
+
+    /**
+     * The SHA the branch must point to when waiting for it, if any.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private String waitSha;
+
+    /**
+     * The maximum duration to wait for the branch.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private Duration waitTimeout = Duration.ofSeconds(DEFAULT_WAIT_TIMEOUT_SECONDS);
+
+    /**
+     * <code>true</code> to keep the default branch, the heads of open pull requests and the protected branches when
+     * deleting.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private boolean safeDelete;
+
+    /**
+     * The journal of the operations completed by the run, or <code>null</code> if none.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private ProgressJournal journal;
+
+    /**
+     * The commit SHA the source of the last branch created or updated resolved to, journaled with the operation.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private String resolvedFromSha;
+
+    /**
+     * The commits and tags fetched to resolve revisions during the run, by repository.
+     */
+    private Map<String, CommitGraph> commitGraphs = new ConcurrentHashMap<>();
+
+    /**
+     * The names of the ref stores the planner picks from, or an empty list for all the stores discovered.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private List<String> refStoreNames = List.of();
+
+    /**
+     * The ref stores discovered, loaded lazily.
+     */
+    private List<RefStore> refStores;
+
+    /**
+     * The planner of the ref stores, created lazily when the "api" input is <code>auto</code>.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private RefStorePlanner refStorePlanner;
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void execute() {
+        FlightRecorderProfiler profiler = null;
         try {
+            // Start profiling if requested, taking over the recording started at launch.
+            profiler = getInputProfile() ? FlightRecorderProfiler.start() : null;
+
             // Get inputs
-            var branchName = getInputName();
+            var operations = getInputOperations();
+            var mirrorFrom = getInputMirrorFrom();
+            var branchName = operations.isEmpty() && mirrorFrom.isEmpty() ? getInputName() : null;
             var branchState = getInputState();
             var from = getInputFrom();
+            var repositories = getInputRepositories();
+            var repositoriesQuery = getInputRepositoriesQuery();
+            updateMode = getInputUpdateMode();
+            expectedSha = getInputExpectedSha().orElse(null);
+            hedgedReads = newHedgedReads();
+            shardedListing = getInputShardedListing();
+            api = getInputApi();
+            refStoreNames = getInputRefStores();
+            waitSha = getInputWaitSha().orElse(null);
+            waitTimeout = getInputWaitTimeout();
+            safeDelete = getInputSafeDelete();
 
             // Trace parameters
-            ghActionsKit.debug(
-                    String.format("parameters: [name: %s, state: %s, from: %s]", branchName, branchState.name(), from));
+            ghActionsKit.debug(String.format(
+                    "parameters: [name: %s, state: %s, from: %s, update-mode: %s, expected-sha: %s, api: %s]",
+                    branchName, branchState.name(), from, updateMode.name(), expectedSha, api.name()));
 
             // Read GitHub repository.
             connectApi();
+            credentialPool = connectCredentialPool();
 
-            // Retrieve repository
-            ghRepository = ghApi.getRepository(ghActionsKit.getGitHubRepository());
+            if (operations.isPresent()) {
+                // Stream the operations through the pipeline.
+                journal = openJournal(operationsSource(operations.get()));
+                runOperations(operations.get(), getInputOperationsOutput());
+            } else if (mirrorFrom.isPresent()) {
+                // Mirror branches from the source repository.
+                var results = mirror(
+                        mirrorFrom.get(),
+                        getInputMirrorBranches(),
+                        getInputMirrorPrune(),
+                        repositories,
+                        repositoriesQuery);
+                setResultsOutput(results);
+            } else if (repositories.isEmpty() && repositoriesQuery.isEmpty()) {
+                // Retrieve repository and manage branch.
+                var repositoryName = ghActionsKit.getGitHubRepository();
+                BranchResult result;
+                if (branchState == InputBranchState.WAIT) {
+                    result = waitBranch(repositoryName, branchName);
+                } else {
+                    var refStore = planRefStore(branchState, false);
+                    result = applyRefStore(refStore, this, repositoryName, branchName, branchState, from);
+                }
 
-            // Get existing branch if any.
-            var existingBranchGHRef = getBranchGHRef(branchName);
+                // Set output.
+                if (branchState != InputBranchState.ABSENT) {
+                    ghActionsKit.setOutput(OutputVars.REF.key(), result.ref());
+                    ghActionsKit.setOutput(OutputVars.NAME.key(), result.name());
+                    ghActionsKit.setOutput(OutputVars.SHA.key(), result.sha());
+                } else {
+                    ghActionsKit.setEmptyOutput(OutputVars.REF.key());
+                    ghActionsKit.setEmptyOutput(OutputVars.NAME.key());
+                    ghActionsKit.setEmptyOutput(OutputVars.SHA.key());
+                }
+            } else {
+                // Fan-out across repositories.
+                journal = openJournal(branchName, branchState, from, repositories, repositoriesQuery.orElse(""));
+                var results = fanOut(repositories, repositoriesQuery, branchName, branchState, from);
+
+                // Set output.
+                setResultsOutput(results);
+            }
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        } finally {
+            if (hedgedReads.isEnabled()) {
+                ghActionsKit.debug(hedgedReads.summary());
+            }
+            if (credentialPool != null) {
+                ghActionsKit.debug(credentialPool.summary());
+            }
+            if (refStorePlanner != null) {
+                ghActionsKit.debug(refStorePlanner.summary());
+            }
+            if (journal != null) {
+                closeJournal(journal);
+            }
+            if (profiler != null) {
+                stopProfiler(profiler);
+            }
+        }
+    }
 
-            // Creation path.
-            if (branchState == InputBranchState.PRESENT) {
-                // New ref
-                var newRef = branchRef(branchName);
+    /**
+     * Manages the branch in a repository, through the primitives of a ref store.
+     * @param session the session of the ref store on the repository.
+     * @param branchName the branch name.
+     * @param branchState the expected state of the branch, {@link InputBranchState#PRESENT} or
+     * {@link InputBranchState#ABSENT}.
+     * @param from the ref or SHA from which to create the branch.
+     * @return the result of the operation.
+     * @throws IOException if an error occurs.
+     */
+    BranchResult manageBranch(
+            @NonNull RefStore.Session session,
+            @NonNull String branchName,
+            @NonNull InputBranchState branchState,
+            @NonNull String from)
+            throws IOException {
+        // New ref
+        var newRef = branchRef(branchName);
 
-                // Get source SHA.
-                var fromSha = getAnyGHRef(from)
-                        .map(GHRef::getObject)
-                        .map(GHObject::getSha)
-                        .orElse(from);
+        // Creation path.
+        if (branchState == InputBranchState.PRESENT) {
+            // Get existing branch if any, and the source SHA unless known from the event payload.
+            var revision = RevisionExpression.parse(from);
+            var payloadRef = getEventPayloadRefs().resolve(session.repository(), revision.base());
+            var lookup = session.lookup(newRef, payloadRef.isPresent() ? null : revision.base());
+            String fromSha;
+            String fromType;
+            if (payloadRef.isPresent()) {
+                fromSha = payloadRef.get().sha();
+                fromType = payloadType(payloadRef.get());
+                ghActionsKit.debug(String.format("from resolved from event payload: %s", fromSha));
+            } else {
+                fromSha = lookup.findResolved().map(RefEntry::sha).orElse(revision.base());
+                fromType = lookup.findResolved().map(RefEntry::type).orElse(null);
+            }
 
-                // Create branch.
-                var ghRefCreated = createGHRef(newRef, fromSha, existingBranchGHRef);
+            // Peel annotated tags and walk the revision, if any.
+            var fromCommitSha = resolveRevision(session.repository(), fromSha, fromType, revision);
+            resolvedFromSha = fromCommitSha;
 
-                // Set output.
-                ghActionsKit.setOutput(OutputVars.REF.key(), ghRefCreated.getRef());
-                ghActionsKit.setOutput(OutputVars.NAME.key(), branchName);
-                ghActionsKit.setOutput(
-                        OutputVars.SHA.key(), ghRefCreated.getObject().getSha());
+            RefEntry ref;
+            if (lookup.findBranch().isEmpty()) {
+                // The branch does not exist: create
+                ghActionsKit.notice("creating the ref.");
+                ref = session.create(newRef, fromCommitSha);
             } else {
-                // Delete branch.
-                deleteGHRef(existingBranchGHRef);
+                // The branch already exists: update to source SHA.
+                ghActionsKit.notice("updating the ref with the given SHA");
+                ref = updateRef(session, lookup.branch(), fromCommitSha);
+            }
 
-                // Set empty output.
-                ghActionsKit.setEmptyOutput(OutputVars.REF.key());
-                ghActionsKit.setEmptyOutput(OutputVars.NAME.key());
-                ghActionsKit.setEmptyOutput(OutputVars.SHA.key());
+            return BranchResult.present(session.repository(), branchName, ref.ref(), ref.sha());
+        } else {
+            // Get existing branch if any.
+            var existingBranch = session.read(newRef);
+
+            // Keep the branch if still in use.
+            if (existingBranch.isPresent() && safeDelete) {
+                var existingName = existingBranch.get().ref().replaceFirst("^refs/heads/", "");
+                var reason = newDeletionGuard(session.repository(), existingName).findReason(existingName);
+                if (reason.isPresent()) {
+                    ghActionsKit.notice(String.format("skipping branch deletion: %s.", reason.get()));
+                    return BranchResult.skipped(session.repository(), branchName, branchState, reason.get());
+                }
             }
-        } catch (Exception e) {
-            throw new CompletionException(e);
+
+            if (existingBranch.isPresent()) {
+                // The branch exists: delete.
+                ghActionsKit.notice("deleting the branch.");
+                session.delete(existingBranch.get());
+            } else {
+                // The branch does not exist, nothing to do.
+                ghActionsKit.notice("skipping branch deletion as it does not exist.");
+            }
+
+            return BranchResult.absent(session.repository(), branchName);
+        }
+    }
+
+    /**
+     * Waits until the branch exists in the given repository, and points to the "wait-sha" input if any.<br>
+     * Only the refs matching the branch name are polled, with conditional requests.
+     * @param repositoryName the repository full name.
+     * @param branchName the branch name.
+     * @return the result of the operation.
+     * @throws IOException if an error occurs, or if the condition does not hold before the timeout.
+     */
+    BranchResult waitBranch(@NonNull String repositoryName, @NonNull String branchName) throws IOException {
+        var refPoller = newRefPoller(repositoryName);
+        ghActionsKit.notice(String.format(
+                "waiting for the branch%s.", waitSha != null ? String.format(" to point to %s", waitSha) : ""));
+        try {
+            var ref = refPoller.await(branchRef(branchName), waitSha, waitTimeout);
+            return BranchResult.waited(repositoryName, branchName, ref.ref(), ref.sha());
+        } catch (TimeoutException e) {
+            throw new IOException(e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(String.format("interrupted while waiting for %s", branchName));
+        } finally {
+            ghActionsKit.debug(String.format(
+                    "wait: %d polls, %d not modified.", refPoller.getPolls(), refPoller.getNotModifiedPolls()));
+        }
+    }
+
+    /**
+     * Manages the branch in all the repositories matching the given entries or query.<br>
+     * Repositories are streamed and dispatched to a bounded pool of workers sharing the same {@link GitHub} client.
+     * @param repositories the repositories entries, as <code>owner/name</code> or <code>owner/glob</code>.
+     * @param repositoriesQuery the repository search query, if any.
+     * @param branchName the branch name.
+     * @param branchState the expected state of the branch.
+     * @param from the ref or SHA from which to create the branch.
+     * @return the result for each repository, in the order the repositories were listed.
+     * @throws IOException if an error occurs while listing repositories.
+     * @throws InterruptedException if the thread is interrupted.
+     */
+    List<BranchResult> fanOut(
+            @NonNull List<String> repositories,
+            @NonNull Optional<String> repositoriesQuery,
+            @NonNull String branchName,
+            @NonNull InputBranchState branchState,
+            @NonNull String from)
+            throws IOException, InterruptedException {
+        var concurrency = getInputConcurrency();
+        ghActionsKit.debug(String.format("fan-out: [repositories: %s, concurrency: %d]", repositories, concurrency));
+
+        try (var dispatcher = new BoundedDispatcher<BranchResult>(concurrency)) {
+            visitRepositories(
+                    repositories,
+                    repositoriesQuery,
+                    (fullName, repository) ->
+                            dispatchRepository(dispatcher, fullName, repository, branchName, branchState, from));
+            return dispatcher.await();
+        }
+    }
+
+    /**
+     * Mirrors the branches matching the given patterns from the source repository into the target repositories.<br>
+     * The branches of the source and of each target are listed once, and only the branches which differ are written:
+     * the writes are dispatched to a bounded pool of workers while the next target is listed. The branches are listed
+     * and written through the primitives of the ref store set in the "api" input.
+     * @param sourceRepositoryName the source repository full name.
+     * @param patterns the branch name globs, e.g. <code>release/**</code>.
+     * @param prune <code>true</code> to delete the target branches matching the patterns which do not exist in the
+     * source.
+     * @param repositories the target repositories entries, as <code>owner/name</code> or <code>owner/glob</code>.
+     * @param repositoriesQuery the target repository search query, if any.
+     * @return the result for each branch written, by target repository and branch name, then for each branch kept by
+     * the "safe-delete" input.
+     * @throws IOException if an error occurs while listing repositories or branches.
+     * @throws InterruptedException if the thread is interrupted.
+     */
+    List<BranchResult> mirror(
+            @NonNull String sourceRepositoryName,
+            @NonNull List<String> patterns,
+            boolean prune,
+            @NonNull List<String> repositories,
+            @NonNull Optional<String> repositoriesQuery)
+            throws IOException, InterruptedException {
+        var concurrency = getInputConcurrency();
+        ghActionsKit.debug(String.format(
+                "mirror: [source: %s, branches: %s, prune: %s, concurrency: %d]",
+                sourceRepositoryName, patterns, prune, concurrency));
+
+        // Snapshot source branches.
+        var sourceWorker = newWorker(null);
+        var sourceSession = planRefStore(InputBranchState.PRESENT, false).open(sourceWorker, sourceRepositoryName);
+        var sourceShas = toShas(listBranches(sourceSession, patterns));
+
+        // Default to the current repository.
+        var targets = repositories;
+        if (repositories.isEmpty() && repositoriesQuery.isEmpty()) {
+            targets = List.of(ghActionsKit.getGitHubRepository());
+        }
+
+        var skipped = Collections.synchronizedList(new ArrayList<BranchResult>());
+        try (var dispatcher = new BoundedDispatcher<BranchResult>(concurrency)) {
+            visitRepositories(targets, repositoriesQuery, (fullName, repository) -> {
+                var worker = newWorker(repository);
+                var session = planRefStore(InputBranchState.PRESENT, worker.usesRepository(fullName))
+                        .open(worker, fullName);
+
+                // Snapshot target branches, and diff: the branches listed are written without being read again.
+                var targetBranches = listBranches(session, patterns);
+                var plan = MirrorPlan.of(sourceShas, toShas(targetBranches), prune);
+                ghActionsKit.debug(String.format("mirror: %s: %s.", fullName, plan.summary()));
+
+                // Apply changes.
+                for (String name : plan.creates()) {
+                    dispatchMirrorChange(
+                            dispatcher,
+                            fullName,
+                            name,
+                            InputBranchState.PRESENT,
+                            () -> session.create(branchRef(name), sourceShas.get(name)));
+                }
+                for (String name : plan.updates()) {
+                    dispatchMirrorChange(
+                            dispatcher,
+                            fullName,
+                            name,
+                            InputBranchState.PRESENT,
+                            () -> worker.updateRef(session, targetBranches.get(name), sourceShas.get(name)));
+                }
+                var deletionGuard = safeDelete && !plan.deletes().isEmpty() ? worker.newDeletionGuard(fullName) : null;
+                for (String name : plan.deletes()) {
+                    // Keep the branches still in use.
+                    var reason = deletionGuard != null ? deletionGuard.findReason(name) : Optional.<String>empty();
+                    if (reason.isPresent()) {
+                        ghActionsKit.debug(String.format("mirror: %s %s kept: %s.", fullName, name, reason.get()));
+                        skipped.add(BranchResult.skipped(fullName, name, InputBranchState.ABSENT, reason.get()));
+                        continue;
+                    }
+
+                    dispatchMirrorChange(dispatcher, fullName, name, InputBranchState.ABSENT, () -> {
+                        session.delete(targetBranches.get(name));
+                        return null;
+                    });
+                }
+            });
+
+            var results = new ArrayList<>(dispatcher.await());
+            results.addAll(skipped);
+            return results;
         }
     }
 
@@ -127,10 +614,11 @@ public class ManageBranchGitHubAction implements GitHubActionProvider {
 
     /**
      * Gets the "name" input.
-     * @return the "name" input.
+     * @return the "name" input, normalized.
+     * @throws IllegalArgumentException if the name is not a valid branch name.
      */
     String getInputName() {
-        return ghActionsKit.getRequiredInput("name");
+        return RefNames.checkBranchName(ghActionsKit.getRequiredInput("name"));
     }
 
     /**
@@ -143,123 +631,1378 @@ public class ManageBranchGitHubAction implements GitHubActionProvider {
 
     /**
      * Gets the "from" input.
-     * @return the "from" input.
+     * @return the "from" input, normalized.
+     * @throws IllegalArgumentException if the input is neither a SHA nor a valid ref name.
      */
     String getInputFrom() {
-        return ghActionsKit.getInput("from").orElse(ghActionsKit.getGitHubSha());
+        return ghActionsKit.getInput("from").map(RefNames::checkSource).orElse(ghActionsKit.getGitHubSha());
     }
 
     /**
-     * Connects to GitHub API.
-     * @throws IOException if an error occurs.
+     * Gets the "update-mode" input.
+     * @return the "update-mode" input.
      */
-    void connectApi() throws IOException {
-        ghActionsKit.debug("github api url connection: check.");
-
-        // Get token
-        var githubToken = ghActionsKit.getRequiredEnv("GITHUB_TOKEN");
-
-        // @formatter:off
-        ghApi = Optional.ofNullable(ghApi)
-                .orElse(new GitHubBuilder()
-                        .withEndpoint(ghActionsKit.getGitHubApiUrl())
-                        .withOAuthToken(githubToken)
-                        .build());
-        ghApi.checkApiUrlValidity();
-        ghActionsKit.debug("github api url connection: ok.");
-        // @formatter:on
+    InputUpdateMode getInputUpdateMode() {
+        return ghActionsKit
+                .getInput("update-mode")
+                .map(mode -> mode.trim().replace('-', '_').toUpperCase(Locale.ROOT))
+                .map(InputUpdateMode::valueOf)
+                .orElse(InputUpdateMode.FORCE);
     }
 
     /**
-     * Gets the {@link GHRef} branch matching the given name.
-     * @param name the branch name to look for.
-     * @return the {@link GHRef} for the given branch if exists, <code>false</code> otherwise.
-     * @throws IOException if an error occurs.
+     * Gets the "expected-sha" input.
+     * @return the "expected-sha" input.
      */
-    Optional<GHRef> getBranchGHRef(@NonNull String name) throws IOException {
-        // Convert branch name to ref
-        var branchRef = branchRef(name);
+    Optional<String> getInputExpectedSha() {
+        return ghActionsKit.getInput("expected-sha").map(String::trim).filter(sha -> !sha.isEmpty());
+    }
 
-        // Browse existing refs
-        for (GHRef ghRef : ghRepository.getRefs("heads")) {
-            // Check if the branch to manage already exists.
-            if (ghRef.getRef().equalsIgnoreCase(branchRef)) {
-                return Optional.of(ghRef);
-            }
-        }
+    /**
+     * Gets the "profile" input.
+     * @return the "profile" input.
+     */
+    boolean getInputProfile() {
+        return ghActionsKit.getInput("profile").map(String::trim).map(Boolean::parseBoolean).orElse(false);
+    }
 
-        return Optional.empty();
+    /**
+     * Gets the "hedge-reads" input.
+     * @return the "hedge-reads" input.
+     */
+    boolean getInputHedgeReads() {
+        return ghActionsKit.getInput("hedge-reads").map(String::trim).map(Boolean::parseBoolean).orElse(false);
     }
 
     /**
-     * Gets the {@link GHRef} branch or tag matching the given name.
-     * @param name the branch or tag name to look for.
-     * @return the {@link GHRef} for the given branch or tag if exists, <code>false</code> otherwise.
-     * @throws IOException if an error occurs.
+     * Gets the "hedge-percentile" input.
+     * @return the "hedge-percentile" input.
      */
-    Optional<GHRef> getAnyGHRef(@NonNull String name) throws IOException {
-        // Convert name to branch ref
-        var branchRef = branchRef(name);
+    int getInputHedgePercentile() {
+        return ghActionsKit
+                .getInput("hedge-percentile")
+                .map(String::trim)
+                .map(Integer::valueOf)
+                .orElse(DEFAULT_HEDGE_PERCENTILE);
+    }
 
-        // Convert name to tag ref
-        var tagRef = tagRef(name);
+    /**
+     * Gets the "hedge-min-delay" input.
+     * @return the "hedge-min-delay" input, in milliseconds.
+     */
+    long getInputHedgeMinDelay() {
+        return ghActionsKit
+                .getInput("hedge-min-delay")
+                .map(String::trim)
+                .map(Long::valueOf)
+                .orElse(DEFAULT_HEDGE_MIN_DELAY_MILLIS);
+    }
 
-        // List of candidates for which ref is OK.
-        var candidates = List.of(
-                branchRef.toLowerCase(Locale.ROOT), tagRef.toLowerCase(Locale.ROOT), name.toLowerCase(Locale.ROOT));
+    /**
+     * Gets the "sharded-listing" input.
+     * @return the "sharded-listing" input.
+     */
+    boolean getInputShardedListing() {
+        return ghActionsKit
+                .getInput("sharded-listing")
+                .map(String::trim)
+                .map(Boolean::parseBoolean)
+                .orElse(false);
+    }
 
-        // Browse existing refs
-        for (GHRef ghRef : ghRepository.getRefs()) {
-            // Check if the ref is in the candidates.
-            if (candidates.contains(ghRef.getRef().toLowerCase(Locale.ROOT))) {
-                return Optional.of(ghRef);
-            }
-        }
+    /**
+     * Gets the "api" input.
+     * @return the "api" input.
+     */
+    InputApi getInputApi() {
+        return ghActionsKit
+                .getInput("api")
+                .map(value -> value.trim().toUpperCase(Locale.ROOT))
+                .map(InputApi::valueOf)
+                .orElse(InputApi.REST);
+    }
 
-        return Optional.empty();
+    /**
+     * Gets the "ref-stores" input.
+     * @return the "ref-stores" input, or an empty list if not provided.
+     */
+    List<String> getInputRefStores() {
+        return getInputList("ref-stores").stream()
+                .map(name -> name.toLowerCase(Locale.ROOT))
+                .toList();
     }
 
     /**
-     * Creates or updates the {@link GHRef} if any.
-     * @param newRef the ref to create.
-     * @param sourceSHA the SHA from which to create the branch.
-     * @param existingRef the {@link GHRef} for the existing branch, or {@link Optional#empty()} if the branch does not exist.
-     * @return the {@link GHRef} created.
-     * @throws IOException if an error occurs.
+     * Gets the "wait-sha" input.
+     * @return the "wait-sha" input.
      */
-    GHRef createGHRef(@NonNull String newRef, @NonNull String sourceSHA, @NonNull Optional<GHRef> existingRef)
-            throws IOException {
-        GHRef ghRefManaged;
+    Optional<String> getInputWaitSha() {
+        return ghActionsKit.getInput("wait-sha").map(String::trim).filter(sha -> !sha.isEmpty());
+    }
 
-        if (existingRef.isEmpty()) {
-            // The branch does not exist: create
-            ghActionsKit.notice("creating the ref.");
-            ghRefManaged = ghRepository.createRef(newRef, sourceSHA);
-        } else {
-            // The branch already exists: update to source SHA.
-            ghActionsKit.notice("updating the ref with the given SHA");
-            ghRefManaged = existingRef.get();
-            ghRefManaged.updateTo(sourceSHA, true);
+    /**
+     * Gets the "wait-timeout" input.
+     * @return the "wait-timeout" input.
+     */
+    Duration getInputWaitTimeout() {
+        var timeout = ghActionsKit
+                .getInput("wait-timeout")
+                .map(String::trim)
+                .map(Long::valueOf)
+                .orElse(DEFAULT_WAIT_TIMEOUT_SECONDS);
+        if (timeout < 0) {
+            throw new IllegalArgumentException(String.format("invalid wait-timeout: %d", timeout));
         }
+        return Duration.ofSeconds(timeout);
+    }
 
-        return ghRefManaged;
+    /**
+     * Gets the "mirror-from" input.
+     * @return the "mirror-from" input.
+     */
+    Optional<String> getInputMirrorFrom() {
+        return ghActionsKit.getInput("mirror-from").map(String::trim).filter(repository -> !repository.isEmpty());
     }
 
     /**
-     * Deletes the {@link GHRef} if any.
-     * @param refToDelete the {@link GHRef} to delete, or {@link Optional#empty()}.
-     * @throws IOException if an error occurs.
+     * Gets the "mirror-branches" input.
+     * @return the "mirror-branches" input.
      */
-    void deleteGHRef(@NonNull Optional<GHRef> refToDelete) throws IOException {
-        // Check if branch exists.
-        if (refToDelete.isPresent()) {
-            // The branch exists: delete.
-            ghActionsKit.notice("deleting the branch.");
-            refToDelete.get().delete();
-        } else {
-            // The branch does not exist, nothing to do.
-            ghActionsKit.notice("skipping branch deletion as it does not exist.");
-        }
+    List<String> getInputMirrorBranches() {
+        var patterns = getInputList("mirror-branches");
+        return patterns.isEmpty() ? List.of("**") : patterns;
+    }
+
+    /**
+     * Gets the "mirror-prune" input.
+     * @return the "mirror-prune" input.
+     */
+    boolean getInputMirrorPrune() {
+        return ghActionsKit.getInput("mirror-prune").map(String::trim).map(Boolean::parseBoolean).orElse(false);
+    }
+
+    /**
+     * Gets the "operations" input.
+     * @return the "operations" input.
+     */
+    Optional<String> getInputOperations() {
+        return ghActionsKit.getInput("operations").map(String::trim).filter(operations -> !operations.isEmpty());
+    }
+
+    /**
+     * Gets the "operations-output" input.<br>
+     * The standard output is not allowed: it also carries the workflow commands, which would interleave with the
+     * results.
+     * @return the "operations-output" input, or a file in the runner temporary directory if not provided.
+     * @throws IllegalArgumentException if the input is the standard output.
+     */
+    String getInputOperationsOutput() {
+        var output = ghActionsKit
+                .getInput("operations-output")
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .orElseGet(() -> Path.of(
+                                ghActionsKit.getEnv("RUNNER_TEMP").orElse(System.getProperty("java.io.tmpdir")),
+                                "branch-operations.ndjson")
+                        .toString());
+        if (STANDARD_STREAM.equals(output)) {
+            throw new IllegalArgumentException("operations-output: the results must be written to a file.");
+        }
+        return output;
+    }
+
+    /**
+     * Gets the "safe-delete" input.
+     * @return the "safe-delete" input.
+     */
+    boolean getInputSafeDelete() {
+        return ghActionsKit.getInput("safe-delete").map(String::trim).map(Boolean::parseBoolean).orElse(false);
+    }
+
+    /**
+     * Gets the "journal-dir" input.
+     * @return the "journal-dir" input.
+     */
+    Optional<String> getInputJournalDir() {
+        return ghActionsKit.getInput("journal-dir").map(String::trim).filter(directory -> !directory.isEmpty());
+    }
+
+    /**
+     * Gets the "repositories" input.
+     * @return the "repositories" input, or an empty list if not provided.
+     */
+    List<String> getInputRepositories() {
+        return getInputList("repositories");
+    }
+
+    /**
+     * Gets the "repositories-query" input.
+     * @return the "repositories-query" input.
+     */
+    Optional<String> getInputRepositoriesQuery() {
+        return ghActionsKit.getInput("repositories-query").filter(query -> !query.isBlank());
+    }
+
+    /**
+     * Gets the "concurrency" input.
+     * @return the "concurrency" input.
+     */
+    int getInputConcurrency() {
+        var concurrency = ghActionsKit
+                .getInput("concurrency")
+                .map(String::trim)
+                .map(Integer::valueOf)
+                .orElse(DEFAULT_CONCURRENCY);
+        if (concurrency < 1) {
+            throw new IllegalArgumentException(String.format("invalid concurrency: %d", concurrency));
+        }
+        return concurrency;
+    }
+
+    /**
+     * Gets an input as a list of values separated by new lines or commas.
+     * @param name the input name.
+     * @return the list of non-blank values, or an empty list if not provided.
+     */
+    List<String> getInputList(@NonNull String name) {
+        return ghActionsKit.getInput(name).map(this::splitList).orElse(List.of());
+    }
+
+    /**
+     * Splits a value separated by new lines or commas.
+     * @param value the value.
+     * @return the list of non-blank values.
+     */
+    List<String> splitList(@NonNull String value) {
+        return Arrays.stream(value.split("[,\\r\\n]+"))
+                .map(String::trim)
+                .filter(item -> !item.isEmpty())
+                .toList();
+    }
+
+    /**
+     * Sets the results output of a multi-branch or multi-repository run.
+     * @param results the results.
+     * @throws JsonProcessingException if an error occurs.
+     * @throws IllegalStateException if any operation failed.
+     */
+    void setResultsOutput(@NonNull List<BranchResult> results) throws JsonProcessingException {
+        ghActionsKit.setOutput(OutputVars.RESULTS.key(), toJson(results));
+
+        var failures = results.stream().filter(BranchResult::isFailed).count();
+        if (failures > 0) {
+            throw new IllegalStateException(
+                    String.format("%d of %d operations failed.", failures, results.size()));
+        }
+    }
+
+    /**
+     * Connects to GitHub API.
+     * @throws IOException if an error occurs.
+     */
+    void connectApi() throws IOException {
+        ghActionsKit.debug("github api url connection: check.");
+
+        // Get token
+        var githubToken = ghActionsKit.getRequiredEnv("GITHUB_TOKEN");
+        authorizationProvider = () -> String.format("token %s", githubToken);
+
+        // @formatter:off
+        ghApi = Optional.ofNullable(ghApi)
+                .orElse(withConnector(new GitHubBuilder())
+                        .withEndpoint(ghActionsKit.getGitHubApiUrl())
+                        .withOAuthToken(githubToken)
+                        .build());
+        ghApi.checkApiUrlValidity();
+        ghActionsKit.debug("github api url connection: ok.");
+        // @formatter:on
+    }
+
+    /**
+     * Sets the connector of a {@link GitHub} client. <br>
+     * When reads are hedged, requests are sent by the JDK HTTP client, which aborts a request when the thread sending
+     * it is interrupted: the read losing the race is then cancelled instead of running to completion.
+     * @param builder the builder of the client.
+     * @return the builder.
+     */
+    GitHubBuilder withConnector(@NonNull GitHubBuilder builder) {
+        return hedgedReads.isEnabled() ? builder.withConnector(new HttpClientGitHubConnector()) : builder;
+    }
+
+    /**
+     * Connects the pool of credentials, if additional credentials are provided through the <code>GITHUB_TOKENS</code>
+     * variable (personal access tokens separated by new lines or commas) or the <code>GITHUB_APP_ID</code> and
+     * <code>GITHUB_APP_PRIVATE_KEY</code> variables (GitHub App installed on the current repository).
+     * @return the pool of credentials including the <code>GITHUB_TOKEN</code> one, or <code>null</code> if no
+     * additional credential is provided.
+     * @throws IOException if an error occurs.
+     * @throws GeneralSecurityException if the App private key is invalid.
+     */
+    CredentialPool connectCredentialPool() throws IOException, GeneralSecurityException {
+        var tokens = ghActionsKit.getEnv("GITHUB_TOKENS").map(this::splitList).orElse(List.of());
+        var appId = ghActionsKit.getEnv("GITHUB_APP_ID").filter(id -> !id.isBlank());
+        var appPrivateKey = ghActionsKit.getEnv("GITHUB_APP_PRIVATE_KEY").filter(key -> !key.isBlank());
+        if (tokens.isEmpty() && appId.isEmpty()) {
+            return null;
+        }
+
+        var apiUrl = ghActionsKit.getGitHubApiUrl();
+        var credentials = new ArrayList<CredentialPool.Credential>();
+        credentials.add(new CredentialPool.Credential("github-token", ghApi, authorizationProvider, getHttpClient()));
+        for (int i = 0; i < tokens.size(); i++) {
+            var token = tokens.get(i);
+            AuthorizationProvider tokenProvider = () -> String.format("token %s", token);
+            credentials.add(newCredential(String.format("token-%d", i + 1), apiUrl, tokenProvider));
+        }
+        if (appId.isPresent()) {
+            var appProvider = new AppInstallationTokenProvider(
+                    apiUrl,
+                    appId.get().trim(),
+                    appPrivateKey.orElseThrow(() -> new NoSuchElementException("GITHUB_APP_PRIVATE_KEY")),
+                    ghActionsKit.getGitHubRepository());
+            credentials.add(newCredential(String.format("app-%s", appId.get().trim()), apiUrl, appProvider));
+        }
+
+        ghActionsKit.debug(String.format("credential pool: %d credentials.", credentials.size()));
+        return new CredentialPool(credentials);
+    }
+
+    /**
+     * Creates a credential with its GitHub clients.
+     * @param name the credential name.
+     * @param apiUrl the GitHub API URL.
+     * @param credentialProvider the authorization provider of the credential.
+     * @return the credential.
+     * @throws IOException if an error occurs.
+     */
+    CredentialPool.Credential newCredential(
+            @NonNull String name, @NonNull String apiUrl, @NonNull AuthorizationProvider credentialProvider)
+            throws IOException {
+        var credentialApi = withConnector(new GitHubBuilder())
+                .withEndpoint(apiUrl)
+                .withAuthorizationProvider(credentialProvider)
+                .build();
+        return new CredentialPool.Credential(
+                name, credentialApi, credentialProvider, new GitHubHttpClient(apiUrl, credentialProvider));
+    }
+
+    /**
+     * Gets the GitHub HTTP client, for the endpoints not covered by the GitHub API library.
+     * @return the GitHub HTTP client.
+     */
+    synchronized GitHubHttpClient getHttpClient() {
+        if (httpClient == null) {
+            httpClient = new GitHubHttpClient(ghActionsKit.getGitHubApiUrl(), authorizationProvider);
+        }
+        return httpClient;
+    }
+
+    /**
+     * Creates a client reading and writing branches through the GraphQL API.
+     * @return the client.
+     */
+    GraphQLRefClient newGraphQLRefClient() {
+        return new GraphQLRefClient(getHttpClient());
+    }
+
+    /**
+     * Resolves a revision from the object its base points to, peeling annotated tags to their commit.<br>
+     * The commits and tags are fetched once per repository and run, and only if the revision has steps or the base
+     * points to an annotated tag.
+     * @param repositoryName the repository full name, only required if the commits or tags are fetched.
+     * @param sha the SHA of the object the base of the revision points to.
+     * @param type the type of the object, or <code>null</code> if unknown.
+     * @param revision the revision.
+     * @return the SHA of the commit the revision resolves to.
+     * @throws IOException if an error occurs.
+     */
+    String resolveRevision(
+            String repositoryName, @NonNull String sha, String type, @NonNull RevisionExpression revision)
+            throws IOException {
+        if (!revision.hasSteps() && !"tag".equals(type)) {
+            return sha;
+        }
+
+        var commitGraph = commitGraphs.computeIfAbsent(
+                repositoryName.toLowerCase(Locale.ROOT), key -> newCommitGraph(repositoryName));
+        var commitSha = commitGraph.resolve(sha, type, revision.steps());
+        ghActionsKit.debug(String.format(
+                "from resolved to %s, %d object requests so far.", commitSha, commitGraph.getRequests()));
+        return commitSha;
+    }
+
+    /**
+     * Gets the type of an object known from the event payload, to peel it as an annotated tag unless known to be a
+     * commit: the SHA of a pushed tag may be an annotated tag.
+     * @param payloadRef the ref known from the event payload.
+     * @return the type of the object.
+     */
+    private String payloadType(RefEntry payloadRef) {
+        return payloadRef.type() != null ? payloadRef.type() : CommitGraph.TAG;
+    }
+
+    /**
+     * Creates the view of the commits and tags of the given repository.
+     * @param repositoryName the repository full name.
+     * @return the view.
+     */
+    CommitGraph newCommitGraph(@NonNull String repositoryName) {
+        return new CommitGraph(getHttpClient(), repositoryName);
+    }
+
+    /**
+     * Loads the branches of the given repository which must not be deleted.
+     * @param repositoryName the repository full name.
+     * @return the guard.
+     * @throws IOException if an error occurs.
+     */
+    DeletionGuard newDeletionGuard(@NonNull String repositoryName) throws IOException {
+        return DeletionGuard.load(getHttpClient(), repositoryName);
+    }
+
+    /**
+     * Loads the reasons why a single branch of the given repository must not be deleted.
+     * @param repositoryName the repository full name.
+     * @param branchName the branch name.
+     * @return the guard.
+     * @throws IOException if an error occurs.
+     */
+    DeletionGuard newDeletionGuard(@NonNull String repositoryName, @NonNull String branchName) throws IOException {
+        return DeletionGuard.load(getHttpClient(), repositoryName, branchName);
+    }
+
+    /**
+     * Creates a poller waiting for a ref of the given repository.
+     * @param repositoryName the repository full name.
+     * @return the poller.
+     */
+    RefPoller newRefPoller(@NonNull String repositoryName) {
+        return new RefPoller(getHttpClient(), repositoryName);
+    }
+
+    /**
+     * Stops the profiler, and writes the recording and its report in the runner temporary directory.
+     * @param profiler the profiler.
+     */
+    void stopProfiler(@NonNull FlightRecorderProfiler profiler) {
+        try (profiler) {
+            var directory = ghActionsKit
+                    .getEnv("RUNNER_TEMP")
+                    .filter(path -> !path.isBlank())
+                    .orElse(System.getProperty("java.io.tmpdir"));
+            var recordingPath = profiler.stop(Path.of(directory));
+            var reportPath = FlightRecorderProfiler.reportPath(recordingPath);
+            ghActionsKit.notice(String.format("profile: %s%n%s", recordingPath, Files.readString(reportPath)));
+            ghActionsKit.setOutput(OutputVars.PROFILE.key(), recordingPath.toString());
+            ghActionsKit.setOutput(OutputVars.PROFILE_REPORT.key(), reportPath.toString());
+        } catch (IOException e) {
+            ghActionsKit.debug(String.format("unable to write profile: %s", e.getMessage()));
+        }
+    }
+
+    /**
+     * Creates the hedged execution of reads from the inputs.
+     * @return the hedged execution of reads.
+     */
+    HedgedReads newHedgedReads() {
+        if (!getInputHedgeReads()) {
+            return HedgedReads.disabled();
+        }
+        return new HedgedReads(
+                true, getInputHedgePercentile(), getInputHedgeMinDelay(), this::getRemainingRateLimit);
+    }
+
+    /**
+     * Gets the remaining rate limit as last reported by the GitHub API.
+     * @return the remaining rate limit, or {@link Integer#MAX_VALUE} if not known.
+     */
+    int getRemainingRateLimit() {
+        return Optional.ofNullable(ghApi)
+                .map(GitHub::lastRateLimit)
+                .map(GHRateLimit::getCore)
+                .map(GHRateLimit.Record::getRemaining)
+                .orElse(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Gets the remaining rate limit of a resource as last reported by the GitHub API.
+     * @param resource the rate limit resource, e.g. <code>core</code> or <code>graphql</code>.
+     * @return the remaining rate limit, or {@link Integer#MAX_VALUE} if not known.
+     */
+    int getRemainingRateLimit(@NonNull String resource) {
+        var remaining = httpClient != null ? httpClient.getRemainingRateLimit(resource) : Integer.MAX_VALUE;
+        if (REST_RATE_LIMIT_RESOURCE.equals(resource)) {
+            remaining = Math.min(remaining, getRemainingRateLimit());
+        }
+        return remaining;
+    }
+
+    /**
+     * Gets the refs known from the event payload.<br>
+     * The payload is read once, and only if the <code>GITHUB_EVENT_PATH</code> variable is set.
+     * @return the refs known from the event payload.
+     */
+    synchronized EventPayloadRefs getEventPayloadRefs() {
+        if (eventPayloadRefs == null) {
+            eventPayloadRefs = ghActionsKit
+                    .getEnv("GITHUB_EVENT_PATH")
+                    .filter(path -> !path.isBlank())
+                    .map(this::readEventPayloadRefs)
+                    .orElseGet(EventPayloadRefs::empty);
+        }
+        return eventPayloadRefs;
+    }
+
+    /**
+     * Reads the refs from the event payload.
+     * @param path the path to the event payload.
+     * @return the refs known from the event payload, or no refs if the payload cannot be read.
+     */
+    private EventPayloadRefs readEventPayloadRefs(String path) {
+        try {
+            return EventPayloadRefs.read(Path.of(path));
+        } catch (IOException e) {
+            ghActionsKit.debug(String.format("unable to read event payload %s: %s", path, e.getMessage()));
+            return EventPayloadRefs.empty();
+        }
+    }
+
+    /**
+     * Gets the {@link GHRef} branch matching the given name.
+     * @param name the branch name to look for.
+     * @return the {@link GHRef} for the given branch if exists, <code>false</code> otherwise.
+     * @throws IOException if an error occurs.
+     */
+    Optional<GHRef> getBranchGHRef(@NonNull String name) throws IOException {
+        // Convert branch name to ref
+        var branchRef = branchRef(name);
+
+        // Fetch the single ref if known to exist from the event payload.
+        var knownRef = getEventPayloadRefs().findRef(repositoryName(), branchRef);
+        if (knownRef.isPresent()) {
+            try {
+                var path = knownRef.get().replaceFirst("^refs/", "");
+                return Optional.of(hedgedReads.call(HedgedReads.REF, 1, () -> ghRepository.getRef(path)));
+            } catch (FileNotFoundException e) {
+                ghActionsKit.debug(String.format("ref %s from event payload not found.", knownRef.get()));
+            }
+        }
+
+        // Look for the ref in the matching shards only.
+        if (shardedListing) {
+            return findShardedGHRef(List.of(branchRef));
+        }
+
+        // Browse existing refs
+        for (GHRef ghRef : ghRepository.getRefs("heads")) {
+            // Check if the branch to manage already exists.
+            if (ghRef.getRef().equalsIgnoreCase(branchRef)) {
+                return Optional.of(ghRef);
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Gets the {@link GHRef} branch or tag matching the given name.
+     * @param name the branch or tag name to look for.
+     * @return the {@link GHRef} for the given branch or tag if exists, <code>false</code> otherwise.
+     * @throws IOException if an error occurs.
+     */
+    Optional<GHRef> getAnyGHRef(@NonNull String name) throws IOException {
+        // Convert name to branch ref
+        var branchRef = branchRef(name);
+
+        // Convert name to tag ref
+        var tagRef = tagRef(name);
+
+        // List of candidates for which ref is OK.
+        var candidates = List.of(
+                branchRef.toLowerCase(Locale.ROOT), tagRef.toLowerCase(Locale.ROOT), name.toLowerCase(Locale.ROOT));
+
+        // Look for the candidates in the matching shards only.
+        if (shardedListing) {
+            var shardedCandidates = new ArrayList<>(List.of(branchRef, tagRef));
+            if (name.startsWith("refs/") && name.indexOf('/', "refs/".length()) > 0) {
+                shardedCandidates.add(name);
+            }
+            return findShardedGHRef(shardedCandidates);
+        }
+
+        // Browse existing refs
+        for (GHRef ghRef : ghRepository.getRefs()) {
+            // Check if the ref is in the candidates.
+            if (candidates.contains(ghRef.getRef().toLowerCase(Locale.ROOT))) {
+                return Optional.of(ghRef);
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Gets the {@link GHRef} matching the first of the given refs found, regardless of the case, by listing the
+     * matching prefix shards only.
+     * @param refs the refs to look for, by order of preference.
+     * @return the {@link GHRef} matching the first ref found, or {@link Optional#empty()} if none exists.
+     * @throws IOException if an error occurs.
+     */
+    Optional<GHRef> findShardedGHRef(@NonNull List<String> refs) throws IOException {
+        try (var enumerator = newShardedRefEnumerator()) {
+            for (String ref : refs) {
+                var found = enumerator.findIgnoreCase(ref);
+                if (!found.isEmpty()) {
+                    ghActionsKit.debug(String.format(
+                            "sharded listing: %s found in %d requests.", ref, enumerator.getRequests()));
+                    var path = found.get(0).ref().replaceFirst("^refs/", "");
+                    return Optional.of(hedgedReads.call(HedgedReads.REF, 1, () -> ghRepository.getRef(path)));
+                }
+            }
+            ghActionsKit.debug(
+                    String.format("sharded listing: %s not found in %d requests.", refs, enumerator.getRequests()));
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Creates an enumerator listing the refs of the current repository by prefix shards.
+     * @return the enumerator.
+     */
+    ShardedRefEnumerator newShardedRefEnumerator() {
+        return new ShardedRefEnumerator(getHttpClient(), ghRepository.getFullName(), getInputConcurrency());
+    }
+
+    /**
+     * Updates an existing branch to the given SHA, through the primitives of a ref store.<br>
+     * Unless the update is forced without precondition, the update is an optimistic compare-and-swap: the precondition
+     * is checked against the branch, and the updates the store reports as conflicting are retried a bounded number of
+     * times by re-reading the branch only. When the branch already contains the source SHA in its history, a newer SHA
+     * won and the update is skipped.
+     * @param session the session of the ref store on the repository.
+     * @param existingRef the existing branch, read by the session.
+     * @param sourceSHA the SHA to which to move the branch.
+     * @return the branch updated.
+     * @throws IOException if an error occurs.
+     */
+    RefEntry updateRef(@NonNull RefStore.Session session, @NonNull RefEntry existingRef, @NonNull String sourceSHA)
+            throws IOException {
+        // Blind update.
+        if (updateMode == InputUpdateMode.FORCE && expectedSha == null) {
+            return session.update(existingRef, sourceSHA, true);
+        }
+
+        var ref = existingRef;
+        for (int attempt = 1; ; attempt++) {
+            var currentSha = ref.sha();
+
+            // Nothing to do.
+            if (currentSha.equalsIgnoreCase(sourceSHA)) {
+                ghActionsKit.debug("ref already points to the given SHA.");
+                return ref;
+            }
+
+            // Check precondition.
+            if (expectedSha != null && !expectedSha.equalsIgnoreCase(currentSha)) {
+                if (isAncestor(session.repository(), sourceSHA, currentSha)) {
+                    ghActionsKit.notice(String.format("ref already moved to newer SHA %s, skipping.", currentSha));
+                    return ref;
+                }
+                throw new IllegalStateException(String.format(
+                        "ref %s points to %s while %s was expected.", ref.ref(), currentSha, expectedSha));
+            }
+
+            try {
+                return session.update(ref, sourceSHA, updateMode == InputUpdateMode.FORCE);
+            } catch (HttpException e) {
+                if (e.getResponseCode() != HTTP_UNPROCESSABLE_ENTITY || attempt >= MAX_UPDATE_ATTEMPTS) {
+                    throw e;
+                }
+
+                // Re-read the branch only.
+                ghActionsKit.debug(String.format("update conflict (attempt %d): re-reading the ref.", attempt));
+                ref = session.read(ref.ref()).orElseThrow(() -> e);
+                var newSha = ref.sha();
+
+                // A newer SHA won.
+                if (updateMode == InputUpdateMode.FAST_FORWARD && isAncestor(session.repository(), sourceSHA, newSha)) {
+                    ghActionsKit.notice(String.format("ref already moved to newer SHA %s, skipping.", newSha));
+                    return ref;
+                }
+
+                // The branch did not move: the update is rejected for good.
+                if (newSha.equalsIgnoreCase(currentSha)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if a commit is an ancestor of another one, or the same commit, without fetching the repository.
+     * @param repositoryName the repository full name.
+     * @param ancestorSha the SHA of the potential ancestor.
+     * @param sha the SHA of the commit.
+     * @return <code>true</code> if <code>ancestorSha</code> is reachable from <code>sha</code>, <code>false</code> otherwise.
+     * @throws IOException if an error occurs.
+     */
+    boolean isAncestor(@NonNull String repositoryName, @NonNull String ancestorSha, @NonNull String sha)
+            throws IOException {
+        var response = getHttpClient()
+                .get(String.format("/repos/%s/compare/%s...%s", repositoryName, ancestorSha, sha), null);
+        var status = response.body().path("status").asText();
+        return "ahead".equals(status) || "identical".equals(status);
+    }
+
+    /**
+     * Runs the branch operations streamed from a file or the standard input.<br>
+     * The results are streamed to a file as the operations complete.
+     * @param operationsPath the path to the operations, or {@link #STANDARD_STREAM} for the standard input.
+     * @param outputPath the path to the results.
+     * @throws IOException if the operations cannot be read or the results cannot be written.
+     * @throws InterruptedException if the thread is interrupted.
+     * @throws IllegalStateException if any operation failed.
+     */
+    void runOperations(@NonNull String operationsPath, @NonNull String outputPath)
+            throws IOException, InterruptedException {
+        var concurrency = getInputConcurrency();
+        var pipeline = new NdjsonPipeline(concurrency, concurrency * 2);
+        var repositoryName = ghActionsKit.getGitHubRepository();
+        var defaultFrom = ghActionsKit.getGitHubSha();
+        var repositories = newRepositoryCache();
+
+        NdjsonPipeline.Summary summary;
+        try (var input = STANDARD_STREAM.equals(operationsPath)
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Path.of(operationsPath));
+                var output = Files.newBufferedWriter(Path.of(outputPath))) {
+            summary = pipeline.run(
+                    input, output, line -> handleOperation(line, repositoryName, defaultFrom, repositories));
+        }
+        ghActionsKit.setOutput(OutputVars.OPERATIONS_RESULTS.key(), outputPath);
+
+        ghActionsKit.notice(String.format("%d operations, %d failed.", summary.processed(), summary.failed()));
+        if (summary.failed() > 0) {
+            throw new IllegalStateException(
+                    String.format("%d of %d operations failed.", summary.failed(), summary.processed()));
+        }
+    }
+
+    /**
+     * Handles an operation of the stream.
+     * @param line the operation, as a JSON line.
+     * @param defaultRepository the repository of the operations not specifying any.
+     * @param defaultFrom the ref or SHA of the operations not specifying any.
+     * @param repositories the repositories already fetched.
+     * @return the result of the operation, failed if the operation is invalid or fails.
+     */
+    BranchResult handleOperation(
+            @NonNull String line,
+            @NonNull String defaultRepository,
+            @NonNull String defaultFrom,
+            @NonNull Map<String, GHRepository> repositories) {
+        BranchOperation operation;
+        try {
+            operation = OBJECT_MAPPER.readValue(line, BranchOperation.class);
+        } catch (JsonProcessingException e) {
+            return BranchResult.failed(null, line, InputBranchState.PRESENT, e);
+        }
+
+        var fullName = Optional.ofNullable(operation.repository())
+                .map(String::trim)
+                .filter(repository -> !repository.isEmpty())
+                .orElse(defaultRepository);
+        var branchName = Optional.ofNullable(operation.name()).orElse("");
+        var branchState = InputBranchState.PRESENT;
+        try {
+            if (operation.state() != null) {
+                branchState = InputBranchState.valueOf(operation.state().trim().toUpperCase(Locale.ROOT));
+            }
+            branchName = RefNames.checkBranchName(branchName);
+            var from = operation.from() != null ? RefNames.checkSource(operation.from()) : defaultFrom;
+
+            // Skip the operations completed by a previous attempt.
+            var journaled = findJournaled(fullName, branchName, branchState, from);
+            if (journaled.isPresent()) {
+                return journaled.get();
+            }
+
+            // Only the REST path without credential pool reuses the repository, which waiting does not need.
+            var repository = api == InputApi.REST && credentialPool == null && branchState != InputBranchState.WAIT
+                    ? getRepository(repositories, fullName)
+                    : null;
+            return manageRepository(fullName, repository, branchName, branchState, from);
+        } catch (IOException | RuntimeException e) {
+            ghActionsKit.debug(String.format("operations: %s %s failed: %s", fullName, branchName, e.getMessage()));
+            return BranchResult.failed(fullName, branchName, branchState, e);
+        }
+    }
+
+    /**
+     * Gets a repository, fetching it unless recently used.
+     * @param repositories the repositories recently used.
+     * @param fullName the repository full name.
+     * @return the repository.
+     * @throws IOException if an error occurs.
+     */
+    private GHRepository getRepository(Map<String, GHRepository> repositories, String fullName) throws IOException {
+        var key = fullName.toLowerCase(Locale.ROOT);
+        var repository = repositories.get(key);
+        if (repository == null) {
+            repository = hedgedReads.call(HedgedReads.REPOSITORY, 1, () -> ghApi.getRepository(fullName));
+            repositories.put(key, repository);
+        }
+        return repository;
+    }
+
+    /**
+     * Creates a thread-safe cache of the repositories recently used, bounded to keep the memory constant.
+     * @return the cache.
+     */
+    static Map<String, GHRepository> newRepositoryCache() {
+        return Collections.synchronizedMap(new LinkedHashMap<String, GHRepository>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, GHRepository> eldest) {
+                return size() > MAX_CACHED_REPOSITORIES;
+            }
+        });
+    }
+
+    /**
+     * Dispatches the branch management of a repository.
+     * @param dispatcher the dispatcher.
+     * @param fullName the repository full name.
+     * @param repository the repository if already fetched, <code>null</code> otherwise.
+     * @param branchName the branch name.
+     * @param branchState the expected state of the branch.
+     * @param from the ref or SHA from which to create the branch.
+     * @throws InterruptedException if the thread is interrupted.
+     */
+    private void dispatchRepository(
+            BoundedDispatcher<BranchResult> dispatcher,
+            String fullName,
+            GHRepository repository,
+            String branchName,
+            InputBranchState branchState,
+            String from)
+            throws InterruptedException {
+        dispatcher.submit(fullName.toLowerCase(Locale.ROOT), () -> {
+            try {
+                // Skip the operations completed by a previous attempt.
+                var journaled = findJournaled(fullName, branchName, branchState, from);
+                if (journaled.isPresent()) {
+                    return journaled.get();
+                }
+
+                return manageRepository(fullName, repository, branchName, branchState, from);
+            } catch (Exception e) {
+                ghActionsKit.debug(String.format("fan-out: %s failed: %s", fullName, e.getMessage()));
+                return BranchResult.failed(fullName, branchName, branchState, e);
+            }
+        });
+    }
+
+    /**
+     * Manages the branch in a repository of a fan-out, and records the operation in the journal, if any.
+     * @param fullName the repository full name.
+     * @param repository the repository if already fetched, <code>null</code> otherwise.
+     * @param branchName the branch name.
+     * @param branchState the expected state of the branch.
+     * @param from the ref or SHA from which to create the branch.
+     * @return the result of the operation.
+     * @throws IOException if an error occurs.
+     */
+    private BranchResult manageRepository(
+            String fullName, GHRepository repository, String branchName, InputBranchState branchState, String from)
+            throws IOException {
+        // Waiting only polls the single ref: neither the repository nor a ref store is needed.
+        if (branchState == InputBranchState.WAIT) {
+            var worker = newWorker(null);
+            if (credentialPool != null) {
+                worker.useCredential(credentialPool.next());
+            }
+            var result = worker.waitBranch(fullName, branchName);
+            recordJournal(result, null);
+            return result;
+        }
+
+        // Spread repositories across the credentials, if any: the repository is fetched again with the credential.
+        var worker = newWorker(credentialPool == null ? repository : null);
+        if (credentialPool != null) {
+            worker.useCredential(credentialPool.next());
+        }
+
+        var refStore = planRefStore(branchState, worker.usesRepository(fullName));
+        var result = applyRefStore(refStore, worker, fullName, branchName, branchState, from);
+        recordJournal(result, branchState == InputBranchState.PRESENT ? worker.getResolvedFromSha() : null);
+        return result;
+    }
+
+    /**
+     * Plans the ref store applying an operation.<br>
+     * The store is the one set in the "api" input, or the cheapest one when the input is <code>auto</code>.
+     * @param branchState the expected state of the branch.
+     * @param repositoryFetched <code>true</code> if the repository is already fetched.
+     * @return the ref store.
+     */
+    RefStore planRefStore(@NonNull InputBranchState branchState, boolean repositoryFetched) {
+        if (api == InputApi.AUTO) {
+            return getRefStorePlanner().plan(branchState, repositoryFetched);
+        }
+        return findRefStore(api.name().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Applies an operation with a ref store, measuring its latency for the planner.
+     * @param refStore the ref store.
+     * @param action the action to manage the branch with.
+     * @param repositoryName the repository full name.
+     * @param branchName the branch name.
+     * @param branchState the expected state of the branch.
+     * @param from the ref or SHA from which to create the branch.
+     * @return the result of the operation.
+     * @throws IOException if an error occurs.
+     */
+    BranchResult applyRefStore(
+            @NonNull RefStore refStore,
+            @NonNull ManageBranchGitHubAction action,
+            @NonNull String repositoryName,
+            @NonNull String branchName,
+            @NonNull InputBranchState branchState,
+            @NonNull String from)
+            throws IOException {
+        ghActionsKit.debug(String.format("ref store: %s for %s", refStore.name(), repositoryName));
+
+        // Estimate the requests before opening the session, which may fetch the repository.
+        var requests = refStore.estimateRequests(branchState, action.usesRepository(repositoryName));
+        var start = System.nanoTime();
+        try {
+            return action.manageBranch(refStore.open(action, repositoryName), branchName, branchState, from);
+        } finally {
+            if (refStorePlanner != null) {
+                refStorePlanner.record(refStore, requests, System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Gets the planner of the ref stores, creating it with the stores named in the "ref-stores" input, if any.
+     * @return the planner.
+     */
+    synchronized RefStorePlanner getRefStorePlanner() {
+        if (refStorePlanner == null) {
+            var candidates = refStoreNames.isEmpty()
+                    ? loadRefStores()
+                    : refStoreNames.stream().map(this::findRefStore).toList();
+            refStorePlanner = new RefStorePlanner(candidates, this::getRemainingRateLimit);
+        }
+        return refStorePlanner;
+    }
+
+    /**
+     * Finds a ref store by name.
+     * @param name the name of the store.
+     * @return the ref store.
+     * @throws IllegalArgumentException if no store has this name.
+     */
+    RefStore findRefStore(@NonNull String name) {
+        return loadRefStores().stream()
+                .filter(refStore -> refStore.name().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(String.format("unknown ref store: %s", name)));
+    }
+
+    /**
+     * Loads the ref stores declared as {@link ServiceLoader} providers.
+     * @return the ref stores, in the order they are declared.
+     */
+    synchronized List<RefStore> loadRefStores() {
+        if (refStores == null) {
+            refStores = ServiceLoader.load(RefStore.class, ManageBranchGitHubAction.class.getClassLoader()).stream()
+                    .map(ServiceLoader.Provider::get)
+                    .toList();
+        }
+        return refStores;
+    }
+
+    /**
+     * Checks if the given repository is already used.
+     * @param repositoryName the repository full name.
+     * @return <code>true</code> if the repository is already fetched and used.
+     */
+    boolean usesRepository(@NonNull String repositoryName) {
+        return ghRepository != null && repositoryName.equalsIgnoreCase(ghRepository.getFullName());
+    }
+
+    /**
+     * Uses the given repository, fetching it unless already used.
+     * @param repositoryName the repository full name.
+     * @throws IOException if an error occurs.
+     */
+    void useRepository(@NonNull String repositoryName) throws IOException {
+        if (!usesRepository(repositoryName)) {
+            ghRepository = hedgedReads.call(HedgedReads.REPOSITORY, 1, () -> ghApi.getRepository(repositoryName));
+        }
+    }
+
+    /**
+     * Resolves the source of an operation journaled, so that a retry redoes the operation if the source moved.<br>
+     * Only the operations creating a branch depend on their source, and a full SHA never moves.
+     * @param fullName the repository full name.
+     * @param branchState the expected state of the branch.
+     * @param from the ref or SHA from which to create the branch.
+     * @return the SHA the source resolves to, or <code>null</code> if not journaled or not resolved.
+     */
+    String resolveJournalFrom(
+            @NonNull String fullName, @NonNull InputBranchState branchState, @NonNull String from) {
+        if (journal == null || branchState != InputBranchState.PRESENT) {
+            return null;
+        }
+        if (RefNames.isSha(from) && (from.length() == FULL_SHA_LENGTH || from.length() == FULL_SHA256_LENGTH)) {
+            return from.toLowerCase(Locale.ROOT);
+        }
+        try {
+            var path = String.format(
+                    "/repos/%s/commits/%s", fullName, GitHubHttpClient.encodePath(from.replaceFirst("^refs/", "")));
+            var sha = getHttpClient().get(path, null).body().path("sha").asText();
+            return sha.isEmpty() ? null : sha;
+        } catch (IOException e) {
+            ghActionsKit.debug(
+                    String.format("journal: unable to resolve %s in %s: %s", from, fullName, e.getMessage()));
+            return null;
+        }
+    }
+
+    /**
+     * Finds an operation completed by a previous attempt of the run, and still in effect.<br>
+     * The operation is verified by reading the single branch ref, rather than by redoing the lookups. An operation
+     * creating a branch is only in effect if its source still resolves to the same SHA: the source is only resolved
+     * when such an operation is journaled.
+     * @param fullName the repository full name.
+     * @param branchName the branch name.
+     * @param branchState the expected state of the branch.
+     * @param from the ref or SHA from which to create the branch.
+     * @return the result of the operation journaled if still in effect, {@link Optional#empty()} otherwise.
+     */
+    Optional<BranchResult> findJournaled(
+            @NonNull String fullName,
+            @NonNull String branchName,
+            @NonNull InputBranchState branchState,
+            @NonNull String from) {
+        if (journal == null) {
+            return Optional.empty();
+        }
+
+        try {
+            var entry = journal.find(fullName, branchName, branchState);
+            if (entry.isEmpty()) {
+                return Optional.empty();
+            }
+            var fromSha = resolveJournalFrom(fullName, branchState, from);
+            if (branchState == InputBranchState.PRESENT
+                    && (fromSha == null || !fromSha.equalsIgnoreCase(entry.get().fromSha()))) {
+                ghActionsKit.debug(String.format("journal: %s %s source moved, redoing.", fullName, branchName));
+                return Optional.empty();
+            }
+
+            var journaled = Optional.of(entry.get().result());
+            String currentSha;
+            try {
+                var path = String.format(
+                        "/repos/%s/git/ref/%s", fullName, GitHubHttpClient.encodePath("heads/" + branchName));
+                currentSha = getHttpClient().get(path, null).body().path("object").path("sha").asText();
+            } catch (FileNotFoundException e) {
+                currentSha = null;
+            }
+
+            var journaledSha = journaled.get().sha();
+            if (journaledSha == null ? currentSha == null : journaledSha.equalsIgnoreCase(currentSha)) {
+                ghActionsKit.debug(String.format("journal: %s %s already done, skipping.", fullName, branchName));
+                return journaled;
+            }
+        } catch (IOException e) {
+            ghActionsKit.debug(String.format("journal: unable to verify %s: %s", fullName, e.getMessage()));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Records a completed operation in the journal, if any.<br>
+     * A failure to journal does not fail the operation: it will only be redone by a retry.
+     * @param result the result of the operation.
+     * @param fromSha the SHA the source of the operation resolved to before it, or <code>null</code> if not resolved.
+     */
+    void recordJournal(@NonNull BranchResult result, String fromSha) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.record(result, fromSha);
+        } catch (IOException e) {
+            ghActionsKit.debug(String.format("journal: unable to record %s: %s", result.repository(), e.getMessage()));
+        }
+    }
+
+    /**
+     * Gets the source of the operations identifying them in the journal key.
+     * @param operationsPath the path to the operations, or {@link #STANDARD_STREAM} for the standard input.
+     * @return the absolute path to the operations, or {@link #STANDARD_STREAM} for the standard input.
+     */
+    static String operationsSource(@NonNull String operationsPath) {
+        if (STANDARD_STREAM.equals(operationsPath)) {
+            return STANDARD_STREAM;
+        }
+        return Path.of(operationsPath).toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * Opens the journal of the run, if the "journal-dir" input is set.<br>
+     * The journal is keyed by the workflow run and the inputs, so that only a retry of the same run resumes from it.
+     * @param keyParts the inputs identifying the operations of the run.
+     * @return the journal, or <code>null</code> if not enabled.
+     * @throws IOException if the journal cannot be opened.
+     */
+    ProgressJournal openJournal(@NonNull Object... keyParts) throws IOException {
+        var directory = getInputJournalDir();
+        if (directory.isEmpty()) {
+            return null;
+        }
+
+        var runKey = new StringBuilder(ghActionsKit.getEnv("GITHUB_RUN_ID").orElse(""));
+        for (Object keyPart : keyParts) {
+            runKey.append('\n').append(keyPart);
+        }
+        ProgressJournal progressJournal;
+        try {
+            var digest =
+                    MessageDigest.getInstance("SHA-256").digest(runKey.toString().getBytes(StandardCharsets.UTF_8));
+            progressJournal = ProgressJournal.open(Path.of(directory.get()), HexFormat.of().formatHex(digest, 0, 8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ghActionsKit.debug(String.format(
+                "journal: %s, %d operations already done.", progressJournal.getFile(), progressJournal.size()));
+        return progressJournal;
+    }
+
+    /**
+     * Closes the journal, flushing the pending operations to disk.
+     * @param progressJournal the journal.
+     */
+    void closeJournal(@NonNull ProgressJournal progressJournal) {
+        try {
+            progressJournal.close();
+            ghActionsKit.debug(String.format(
+                    "journal: %d operations, %d syncs.", progressJournal.size(), progressJournal.getSyncs()));
+        } catch (IOException e) {
+            ghActionsKit.debug(String.format("journal: unable to close: %s", e.getMessage()));
+        }
+    }
+
+    /**
+     * Dispatches a change of a mirrored branch.
+     * @param dispatcher the dispatcher.
+     * @param fullName the target repository full name.
+     * @param branchName the branch name.
+     * @param branchState the expected state of the branch.
+     * @param change the change, returning the branch written or <code>null</code> if deleted.
+     * @throws InterruptedException if the thread is interrupted.
+     */
+    private void dispatchMirrorChange(
+            BoundedDispatcher<BranchResult> dispatcher,
+            String fullName,
+            String branchName,
+            InputBranchState branchState,
+            Callable<RefEntry> change)
+            throws InterruptedException {
+        var key = String.format("%s:%s", fullName.toLowerCase(Locale.ROOT), branchName);
+        dispatcher.submit(key, () -> {
+            try {
+                var ref = change.call();
+                return ref != null
+                        ? BranchResult.present(fullName, branchName, ref.ref(), ref.sha())
+                        : BranchResult.absent(fullName, branchName);
+            } catch (Exception e) {
+                ghActionsKit.debug(String.format("mirror: %s %s failed: %s", fullName, branchName, e.getMessage()));
+                return BranchResult.failed(fullName, branchName, branchState, e);
+            }
+        });
+    }
+
+    /**
+     * Visits the repositories matching the given entries or query, as they are listed.
+     * @param repositories the repositories entries, as <code>owner/name</code> or <code>owner/glob</code>.
+     * @param repositoriesQuery the repository search query, if any.
+     * @param visitor the visitor.
+     * @throws IOException if an error occurs while listing repositories.
+     * @throws InterruptedException if the thread is interrupted.
+     */
+    void visitRepositories(
+            @NonNull List<String> repositories,
+            @NonNull Optional<String> repositoriesQuery,
+            @NonNull RepositoryVisitor visitor)
+            throws IOException, InterruptedException {
+        for (String entry : repositories) {
+            if (Globs.isGlob(entry)) {
+                var pattern = Globs.toPattern(entry, true);
+                for (GHRepository repository : listOwnerRepositories(repositoryOwner(entry))) {
+                    if (pattern.matcher(repository.getFullName()).matches()) {
+                        visitor.visit(repository.getFullName(), repository);
+                    }
+                }
+            } else {
+                visitor.visit(entry, null);
+            }
+        }
+
+        if (repositoriesQuery.isPresent()) {
+            var query = ghApi.searchRepositories().q(repositoriesQuery.get());
+            for (GHRepository repository : query.list()) {
+                visitor.visit(repository.getFullName(), repository);
+            }
+        }
+    }
+
+    /**
+     * Lists the branches matching the given patterns, through the primitives of a ref store.
+     * @param session the session of the ref store on the repository.
+     * @param patterns the branch name globs.
+     * @return each matching branch, by branch name.
+     * @throws IOException if an error occurs.
+     */
+    Map<String, RefEntry> listBranches(@NonNull RefStore.Session session, @NonNull List<String> patterns)
+            throws IOException {
+        var compiledPatterns = patterns.stream().map(pattern -> Globs.toPattern(pattern, false)).toList();
+        var branches = new TreeMap<String, RefEntry>();
+        for (RefEntry ref : session.list("refs/heads/")) {
+            var name = ref.ref().replaceFirst("^refs/heads/", "");
+            if (compiledPatterns.stream().anyMatch(pattern -> pattern.matcher(name).matches())) {
+                branches.put(name, ref);
+            }
+        }
+        return branches;
+    }
+
+    /**
+     * Lists the refs of the current repository starting with a prefix, by pages fetched concurrently.
+     * @param prefix the prefix, relative to <code>refs/</code>, e.g. <code>heads/</code>.
+     * @return the refs.
+     * @throws IOException if an error occurs.
+     */
+    List<RefEntry> listShardedRefs(@NonNull String prefix) throws IOException {
+        try (var enumerator = newShardedRefEnumerator()) {
+            var refs = enumerator.list(prefix);
+            ghActionsKit.debug(String.format(
+                    "sharded listing: %d refs listed in %d requests.", refs.size(), enumerator.getRequests()));
+            return refs;
+        }
+    }
+
+    /**
+     * Gets a single {@link GHRef} of the current repository.
+     * @param ref the ref, e.g. <code>refs/heads/main</code>.
+     * @return the {@link GHRef}.
+     * @throws FileNotFoundException if the ref does not exist.
+     * @throws IOException if an error occurs.
+     */
+    GHRef getGHRef(@NonNull String ref) throws IOException {
+        var path = ref.replaceFirst("^refs/", "");
+        return hedgedReads.call(HedgedReads.REF, 1, () -> ghRepository.getRef(path));
+    }
+
+    /**
+     * Creates an action sharing the configuration and the {@link GitHub} client of this one, for the given repository.
+     * @param repository the repository to manage, or <code>null</code> if not fetched.
+     * @return the action.
+     */
+    ManageBranchGitHubAction newWorker(GHRepository repository) {
+        var worker = new ManageBranchGitHubAction();
+        worker.ghActionsKit = ghActionsKit;
+        worker.ghApi = ghApi;
+        worker.ghRepository = repository;
+        worker.updateMode = updateMode;
+        worker.expectedSha = expectedSha;
+        worker.api = api;
+        worker.waitSha = waitSha;
+        worker.waitTimeout = waitTimeout;
+        worker.safeDelete = safeDelete;
+        worker.eventPayloadRefs = getEventPayloadRefs();
+        worker.hedgedReads = hedgedReads;
+        worker.shardedListing = shardedListing;
+        worker.authorizationProvider = authorizationProvider;
+        worker.httpClient = httpClient;
+        worker.commitGraphs = commitGraphs;
+        return worker;
+    }
+
+    /**
+     * Makes this action use the given credential for its requests.
+     * @param credential the credential.
+     */
+    void useCredential(@NonNull CredentialPool.Credential credential) {
+        ghApi = credential.ghApi();
+        authorizationProvider = credential.authorizationProvider();
+        httpClient = credential.httpClient();
+    }
+
+    /**
+     * Lists the repositories of the given organization or user.
+     * @param owner the organization or user login.
+     * @return the repositories.
+     * @throws IOException if an error occurs.
+     */
+    Iterable<GHRepository> listOwnerRepositories(@NonNull String owner) throws IOException {
+        GHPerson person;
+        try {
+            person = ghApi.getOrganization(owner);
+        } catch (FileNotFoundException e) {
+            person = ghApi.getUser(owner);
+        }
+        return person.listRepositories(100);
+    }
+
+    /**
+     * Gets the owner of a repository entry.
+     * @param entry the repository entry, as <code>owner/name</code>.
+     * @return the owner.
+     */
+    String repositoryOwner(@NonNull String entry) {
+        var index = entry.indexOf('/');
+        if (index <= 0 || Globs.isGlob(entry.substring(0, index))) {
+            throw new IllegalArgumentException(String.format("invalid repository: %s", entry));
+        }
+        return entry.substring(0, index);
+    }
+
+    /**
+     * Gets the full name of the current repository.
+     * @return the full name of the current repository, or <code>null</code> if not known.
+     */
+    String repositoryName() {
+        return ghRepository != null ? ghRepository.getFullName() : null;
+    }
+
+    /**
+     * Gets the SHA of each ref.
+     * @param refs the refs by name.
+     * @return the SHA by name.
+     */
+    Map<String, String> toShas(@NonNull Map<String, RefEntry> refs) {
+        var shas = new TreeMap<String, String>();
+        refs.forEach((name, ref) -> shas.put(name, ref.sha()));
+        return shas;
+    }
+
+    /**
+     * Serializes the value as JSON.
+     * @param value the value.
+     * @return the JSON value.
+     * @throws JsonProcessingException if an error occurs.
+     */
+    String toJson(Object value) throws JsonProcessingException {
+        return OBJECT_MAPPER.writeValueAsString(value);
     }
 
     /**
@@ -0,0 +1,97 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import lombok.NonNull;
+
+/**
+ * The minimal set of changes making the branches of a target repository mirror the branches of a source repository.
+ * <br>
+ * @param creates the branches to create in the target repository.
+ * @param updates the branches to move in the target repository.
+ * @param deletes the branches to delete from the target repository.
+ * @param unchanged the number of branches already in sync.
+ * @author Julb.
+ */
+record MirrorPlan(List<String> creates, List<String> updates, List<String> deletes, int unchanged) {
+
+    /**
+     * Computes the changes from the snapshots of the source and target branches.
+     * @param sourceShas the SHA of each source branch, by branch name.
+     * @param targetShas the SHA of each target branch, by branch name.
+     * @param prune <code>true</code> to delete the target branches which do not exist in the source.
+     * @return the changes, by branch name order.
+     */
+    static MirrorPlan of(
+            @NonNull Map<String, String> sourceShas, @NonNull Map<String, String> targetShas, boolean prune) {
+        var creates = new ArrayList<String>();
+        var updates = new ArrayList<String>();
+        var deletes = new ArrayList<String>();
+        var unchanged = 0;
+
+        for (String name : new TreeSet<>(sourceShas.keySet())) {
+            var targetSha = targetShas.get(name);
+            if (targetSha == null) {
+                creates.add(name);
+            } else if (targetSha.equalsIgnoreCase(sourceShas.get(name))) {
+                unchanged++;
+            } else {
+                updates.add(name);
+            }
+        }
+
+        if (prune) {
+            for (String name : new TreeSet<>(targetShas.keySet())) {
+                if (!sourceShas.containsKey(name)) {
+                    deletes.add(name);
+                }
+            }
+        }
+
+        return new MirrorPlan(List.copyOf(creates), List.copyOf(updates), List.copyOf(deletes), unchanged);
+    }
+
+    /**
+     * Checks if the target repository is already in sync.
+     * @return <code>true</code> if there is no change to apply, <code>false</code> otherwise.
+     */
+    boolean isEmpty() {
+        return creates.isEmpty() && updates.isEmpty() && deletes.isEmpty();
+    }
+
+    /**
+     * Gets a summary of the changes.
+     * @return the summary of the changes.
+     */
+    String summary() {
+        return String.format(
+                "%d to create, %d to update, %d to delete, %d unchanged",
+                creates.size(), updates.size(), deletes.size(), unchanged);
+    }
+}
@@ -0,0 +1,261 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.NonNull;
+
+/**
+ * A pipeline streaming newline-delimited JSON operations to concurrent workers, and their results back as
+ * newline-delimited JSON. <br>
+ * Lines are handed to the workers through a bounded queue: when the workers are slow, the reader blocks, so that
+ * memory stays constant whatever the size of the input. Each result is written as soon as its operation completes.
+ * The reader never waits on a queue that no worker drains anymore: if a worker dies, the run stops and fails.
+ * @author Julb.
+ */
+class NdjsonPipeline {
+
+    /**
+     * The JSON mapper.
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * Handles an operation.
+     */
+    @FunctionalInterface
+    interface Handler {
+        /**
+         * Handles an operation.
+         * @param line the operation, as a JSON line.
+         * @return the result of the operation, failed if the operation is invalid or fails.
+         */
+        BranchResult handle(String line);
+    }
+
+    /**
+     * The counts of a run of the pipeline.
+     * @param processed the number of operations processed.
+     * @param failed the number of operations failed.
+     */
+    record Summary(long processed, long failed) {}
+
+    /**
+     * A line queued for the workers.
+     * @param value the line, or <code>null</code> for the end of the input.
+     */
+    private record Line(String value) {}
+
+    /**
+     * The line signaling the end of the input to a worker.
+     */
+    private static final Line END = new Line(null);
+
+    /**
+     * The delay after which the reader checks that workers are still alive while the queue is full, in milliseconds.
+     */
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+    /**
+     * The number of workers.
+     */
+    private final int concurrency;
+
+    /**
+     * The capacity of the queue between the reader and the workers.
+     */
+    private final int queueCapacity;
+
+    /**
+     * Default constructor.
+     * @param concurrency the number of workers.
+     * @param queueCapacity the capacity of the queue between the reader and the workers.
+     */
+    NdjsonPipeline(int concurrency, int queueCapacity) {
+        if (concurrency < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException(
+                    String.format("invalid concurrency or queue capacity: %d, %d", concurrency, queueCapacity));
+        }
+        this.concurrency = concurrency;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Runs the pipeline until the end of the input and the completion of all the operations.
+     * @param input the operations, one JSON object per line. Blank lines are skipped.
+     * @param output the results, one JSON object per line, flushed after each result.
+     * @param handler the handler of the operations.
+     * @return the counts of the run.
+     * @throws IOException if the input cannot be read or the output cannot be written.
+     * @throws InterruptedException if the thread is interrupted.
+     * @throws RuntimeException the error which killed a worker, if any.
+     */
+    Summary run(@NonNull Reader input, @NonNull Writer output, @NonNull Handler handler)
+            throws IOException, InterruptedException {
+        BlockingQueue<Line> queue = new ArrayBlockingQueue<>(queueCapacity);
+        var processed = new AtomicLong();
+        var failed = new AtomicLong();
+        var writeError = new AtomicReference<IOException>();
+        var workerError = new AtomicReference<Throwable>();
+        var running = new AtomicInteger(concurrency);
+
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency, runnable -> {
+            var thread = new Thread(runnable, "ndjson-pipeline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (int i = 0; i < concurrency; i++) {
+                workers.execute(
+                        () -> work(queue, output, handler, processed, failed, writeError, workerError, running));
+            }
+
+            // Read the input, blocking while the queue is full.
+            var reader = input instanceof BufferedReader bufferedReader ? bufferedReader : new BufferedReader(input);
+            try {
+                String line;
+                var alive = true;
+                while (alive
+                        && (line = reader.readLine()) != null
+                        && writeError.get() == null
+                        && workerError.get() == null) {
+                    if (!line.isBlank()) {
+                        alive = offer(queue, new Line(line), running);
+                    }
+                }
+            } finally {
+                for (int i = 0; i < concurrency && offer(queue, END, running); i++) {
+                    // Signal the end of the input to each worker still alive.
+                }
+            }
+            workers.shutdown();
+            while (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+                // Wait for the operations in progress.
+            }
+        } finally {
+            // Interrupted or failed reading: do not leave workers blocked on the queue.
+            workers.shutdownNow();
+        }
+
+        if (workerError.get() instanceof Error error) {
+            throw error;
+        }
+        if (workerError.get() instanceof RuntimeException e) {
+            throw e;
+        }
+        if (writeError.get() != null) {
+            throw writeError.get();
+        }
+        return new Summary(processed.get(), failed.get());
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Queues a line for the workers, waiting while the queue is full as long as a worker is alive to drain it.
+     * @param queue the queue.
+     * @param line the line.
+     * @param running the number of workers alive.
+     * @return <code>true</code> if the line is queued, <code>false</code> if no worker is alive anymore.
+     * @throws InterruptedException if the thread is interrupted.
+     */
+    private static boolean offer(BlockingQueue<Line> queue, Line line, AtomicInteger running)
+            throws InterruptedException {
+        while (!queue.offer(line, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (running.get() == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Takes the lines from the queue and handles them, until the end of the input.
+     * @param queue the queue.
+     * @param output the output.
+     * @param handler the handler.
+     * @param processed the number of operations processed.
+     * @param failed the number of operations failed.
+     * @param writeError the first error writing the output.
+     * @param workerError the first error killing a worker.
+     * @param running the number of workers alive.
+     */
+    private static void work(
+            BlockingQueue<Line> queue,
+            Writer output,
+            Handler handler,
+            AtomicLong processed,
+            AtomicLong failed,
+            AtomicReference<IOException> writeError,
+            AtomicReference<Throwable> workerError,
+            AtomicInteger running) {
+        try {
+            for (var line = queue.take(); line != END; line = queue.take()) {
+                BranchResult result;
+                try {
+                    result = handler.handle(line.value());
+                } catch (RuntimeException e) {
+                    result = BranchResult.failed(null, line.value(), InputBranchState.PRESENT, e);
+                }
+
+                processed.incrementAndGet();
+                if (result.isFailed()) {
+                    failed.incrementAndGet();
+                }
+
+                try {
+                    var json = OBJECT_MAPPER.writeValueAsString(result);
+                    synchronized (output) {
+                        output.write(json);
+                        output.write('\n');
+                        output.flush();
+                    }
+                } catch (IOException e) {
+                    writeError.compareAndSet(null, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException | Error e) {
+            // Reported by the run.
+            workerError.compareAndSet(null, e);
+        } finally {
+            running.decrementAndGet();
+        }
+    }
+}
@@ -41,7 +41,27 @@ enum OutputVars {
     /**
      * The branch name.
      */
-    NAME("name");
+    NAME("name"),
+
+    /**
+     * The results of a multi-repository run, as JSON.
+     */
+    RESULTS("results"),
+
+    /**
+     * The path to the results of the streamed operations, as newline-delimited JSON.
+     */
+    OPERATIONS_RESULTS("operations-results"),
+
+    /**
+     * The path to the Flight Recorder profile.
+     */
+    PROFILE("profile"),
+
+    /**
+     * The path to the report of the Flight Recorder profile.
+     */
+    PROFILE_REPORT("profile-report");
 
     /**
      * The variable name.
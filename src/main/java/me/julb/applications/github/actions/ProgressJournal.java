@@ -0,0 +1,342 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import lombok.NonNull;
+
+/**
+ * An append-only journal of the completed operations of a bulk run, so that a retried run resumes instead of redoing
+ * the work. <br>
+ * Each operation is appended as a JSON line, with the SHA its source resolved to, and the journal is flushed to disk
+ * in batches. A line truncated by an interruption is dropped when the journal is reopened. <br>
+ * Only the location of the last line of each operation is kept in memory: the journal is scanned line by line when
+ * reopened, and a line is read back from disk when its operation is looked up.
+ * @author Julb.
+ */
+class ProgressJournal implements AutoCloseable {
+
+    /**
+     * The maximum number of operations appended between two flushes to disk.
+     */
+    static final int SYNC_BATCH_SIZE = 64;
+
+    /**
+     * The maximum delay between two flushes to disk, in nanoseconds.
+     */
+    static final long SYNC_INTERVAL_NANOS = 1_000_000_000L;
+
+    /**
+     * The JSON mapper.
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * The field of a journal line holding the SHA the source resolved to.
+     */
+    private static final String FROM_FIELD = "from";
+
+    /**
+     * An operation journaled. <br>
+     * @param result the result of the operation.
+     * @param fromSha the SHA the source of the operation resolved to, or <code>null</code> if not resolved.
+     */
+    record Entry(BranchResult result, String fromSha) {}
+
+    /**
+     * The location of a journal line.
+     * @param offset the offset of the line in the journal, in bytes.
+     * @param length the length of the line, in bytes, without the line separator.
+     */
+    private record Location(long offset, int length) {}
+
+    /**
+     * The journal file.
+     */
+    private final Path file;
+
+    /**
+     * The channel appending to the journal.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The clock, in nanoseconds.
+     */
+    private final LongSupplier nanoClock;
+
+    /**
+     * The location of the last line of the operations journaled, by key.
+     */
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+
+    /**
+     * The position of the end of the journal, where the next line is appended.
+     */
+    private long end;
+
+    /**
+     * The number of operations appended since the last flush to disk.
+     */
+    private int unsynced;
+
+    /**
+     * The time of the last flush to disk, in nanoseconds.
+     */
+    private long lastSyncNanos;
+
+    /**
+     * The number of flushes to disk.
+     */
+    private int syncs;
+
+    /**
+     * Constructor.
+     * @param file the journal file.
+     * @param nanoClock the clock, in nanoseconds.
+     * @throws IOException if the journal cannot be read or opened.
+     */
+    ProgressJournal(@NonNull Path file, @NonNull LongSupplier nanoClock) throws IOException {
+        this.file = file;
+        this.nanoClock = nanoClock;
+
+        // Index the operations journaled by a previous run, up to the last complete line.
+        if (Files.exists(file)) {
+            end = scan(file, index);
+        }
+
+        // Drop a truncated line, then append.
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(
+                file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.channel.truncate(end);
+        this.lastSyncNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * Opens the journal of a run in the given directory.
+     * @param directory the journal directory.
+     * @param runKey the key identifying the run, so that only the retries of a run share its journal.
+     * @return the journal.
+     * @throws IOException if the journal cannot be read or opened.
+     */
+    static ProgressJournal open(@NonNull Path directory, @NonNull String runKey) throws IOException {
+        return new ProgressJournal(directory.resolve(String.format("%s.journal", runKey)), System::nanoTime);
+    }
+
+    /**
+     * Finds an operation journaled by a previous run.
+     * @param repository the repository full name.
+     * @param name the branch name.
+     * @param state the expected state of the branch.
+     * @return the operation journaled, or {@link Optional#empty()} if not journaled.
+     * @throws IOException if the journal cannot be read.
+     */
+    Optional<Entry> find(@NonNull String repository, @NonNull String name, @NonNull InputBranchState state)
+            throws IOException {
+        var location = index.get(key(repository, name, state.name()));
+        if (location == null) {
+            return Optional.empty();
+        }
+
+        var buffer = ByteBuffer.allocate(location.length());
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, location.offset() + buffer.position()) < 0) {
+                return Optional.empty();
+            }
+        }
+        return readEntry(new String(buffer.array(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Appends a completed operation to the journal. Failed operations are not journaled.
+     * @param result the result of the operation.
+     * @param fromSha the SHA the source of the operation resolved to, or <code>null</code> if not resolved.
+     * @throws IOException if an error occurs.
+     */
+    synchronized void record(@NonNull BranchResult result, String fromSha) throws IOException {
+        if (result.isFailed()) {
+            return;
+        }
+        ObjectNode node = OBJECT_MAPPER.valueToTree(result);
+        if (fromSha != null) {
+            node.put(FROM_FIELD, fromSha);
+        }
+        var line = OBJECT_MAPPER.writeValueAsString(node) + "\n";
+        var buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        var offset = end;
+        while (buffer.hasRemaining()) {
+            end += channel.write(buffer, end);
+        }
+        index.put(key(result), new Location(offset, buffer.capacity() - 1));
+
+        unsynced++;
+        if (unsynced >= SYNC_BATCH_SIZE || nanoClock.getAsLong() - lastSyncNanos >= SYNC_INTERVAL_NANOS) {
+            sync();
+        }
+    }
+
+    /**
+     * Gets the number of operations journaled.
+     * @return the number of operations journaled.
+     */
+    int size() {
+        return index.size();
+    }
+
+    /**
+     * Gets the number of flushes to disk.
+     * @return the number of flushes to disk.
+     */
+    synchronized int getSyncs() {
+        return syncs;
+    }
+
+    /**
+     * Gets the journal file.
+     * @return the journal file.
+     */
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try (channel) {
+            if (unsynced > 0) {
+                sync();
+            }
+        }
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Flushes the appended operations to disk.
+     * @throws IOException if an error occurs.
+     */
+    private void sync() throws IOException {
+        channel.force(false);
+        unsynced = 0;
+        lastSyncNanos = nanoClock.getAsLong();
+        syncs++;
+    }
+
+    /**
+     * Scans the journal line by line, indexing the last line of each operation.
+     * @param file the journal file.
+     * @param index the index to fill.
+     * @return the length of the journal up to the last complete line, in bytes.
+     * @throws IOException if the journal cannot be read.
+     */
+    private static long scan(Path file, Map<String, Location> index) throws IOException {
+        var line = new ByteArrayOutputStream();
+        long position = 0;
+        long lineOffset = 0;
+        try (var input = new BufferedInputStream(Files.newInputStream(file))) {
+            for (int b = input.read(); b >= 0; b = input.read()) {
+                position++;
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+
+                var offset = lineOffset;
+                var length = line.size();
+                readEntry(line.toString(StandardCharsets.UTF_8))
+                        .ifPresent(entry -> index.put(key(entry.result()), new Location(offset, length)));
+                line.reset();
+                lineOffset = position;
+            }
+        }
+        return lineOffset;
+    }
+
+    /**
+     * Reads an operation from a journal line.
+     * @param line the line.
+     * @return the operation, or {@link Optional#empty()} if the line is blank or truncated.
+     */
+    private static Optional<Entry> readEntry(String line) {
+        if (line.isBlank()) {
+            return Optional.empty();
+        }
+        try {
+            var node = OBJECT_MAPPER.readTree(line);
+            if (!node.isObject()) {
+                return Optional.empty();
+            }
+            var from = ((ObjectNode) node).remove(FROM_FIELD);
+            var result = OBJECT_MAPPER.treeToValue(node, BranchResult.class);
+            if (result.repository() == null || result.name() == null || result.state() == null || result.isFailed()) {
+                return Optional.empty();
+            }
+            return Optional.of(new Entry(result, from != null && from.isTextual() ? from.asText() : null));
+        } catch (JsonProcessingException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Gets the key of an operation.
+     * @param result the result of the operation.
+     * @return the key.
+     */
+    private static String key(BranchResult result) {
+        return key(result.repository(), result.name(), result.state());
+    }
+
+    /**
+     * Gets the key of an operation.
+     * @param repository the repository full name.
+     * @param name the branch name.
+     * @param state the expected state of the branch.
+     * @return the key.
+     */
+    private static String key(String repository, String name, String state) {
+        return String.format(
+                "%s:%s:%s", repository.toLowerCase(Locale.ROOT), name, state.toLowerCase(Locale.ROOT));
+    }
+}
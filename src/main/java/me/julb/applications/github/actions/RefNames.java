@@ -0,0 +1,181 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.util.regex.Pattern;
+
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Git ref name utilities, implementing the rules of <code>git check-ref-format</code>. <br>
+ * <ul>
+ * <li>No component begins with <code>.</code>, ends with <code>.lock</code> or is empty.</li>
+ * <li>No <code>..</code>, <code>@{</code>, control character, space, <code>~ ^ : ? * [ \</code>.</li>
+ * <li>The name does not begin or end with <code>/</code>, does not end with <code>.</code> and is not
+ * <code>@</code>.</li>
+ * <li>A branch name does not begin with <code>-</code> and is not <code>HEAD</code>.</li>
+ * </ul>
+ * Names are normalized as with <code>--normalize</code>: leading slashes are removed and consecutive slashes are
+ * collapsed.
+ * @author Julb.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+final class RefNames {
+
+    /**
+     * The pattern of a full or abbreviated SHA.
+     */
+    private static final Pattern SHA = Pattern.compile("[0-9a-fA-F]{4,64}");
+
+    /**
+     * The characters forbidden in a ref name, besides control characters.
+     */
+    private static final String FORBIDDEN_CHARACTERS = " ~^:?*[\\";
+
+    /**
+     * Normalizes the name, removing the leading slashes and collapsing the consecutive slashes.
+     * @param name the name.
+     * @return the normalized name.
+     */
+    static String normalize(@NonNull String name) {
+        return name.replaceAll("/{2,}", "/").replaceFirst("^/", "");
+    }
+
+    /**
+     * Checks that the name is a valid branch name.
+     * @param name the branch name, e.g. <code>feature/foo</code>.
+     * @return the normalized branch name.
+     * @throws IllegalArgumentException if the name is not a valid branch name.
+     */
+    static String checkBranchName(@NonNull String name) {
+        var normalized = normalize(name);
+        if (normalized.startsWith("-") || "HEAD".equals(normalized)) {
+            throw new IllegalArgumentException(String.format("invalid branch name: %s", name));
+        }
+        checkRefName(normalized, "branch name");
+        return normalized;
+    }
+
+    /**
+     * Checks that the source is a SHA or a valid ref name, optionally followed by revision suffixes.
+     * @param source the source, e.g. <code>main</code>, <code>refs/tags/v1.0.0</code>, a SHA or
+     * <code>main~3</code>.
+     * @return the normalized source.
+     * @throws IllegalArgumentException if the source is neither a SHA nor a valid ref name, or if a suffix is not
+     * supported.
+     * @see RevisionExpression
+     */
+    static String checkSource(@NonNull String source) {
+        var base = RevisionExpression.parse(source).base();
+        var suffix = source.substring(base.length());
+        if (isSha(base)) {
+            return source;
+        }
+        var normalized = normalize(base);
+        checkRefName(normalized, "ref name");
+        return normalized + suffix;
+    }
+
+    /**
+     * Checks if the value is a full or abbreviated SHA.
+     * @param value the value.
+     * @return <code>true</code> if the value is a SHA, <code>false</code> otherwise.
+     */
+    static boolean isSha(@NonNull String value) {
+        return SHA.matcher(value).matches();
+    }
+
+    /**
+     * Checks if the name is a valid ref name, once normalized.
+     * @param name the name.
+     * @return <code>true</code> if the name is valid, <code>false</code> otherwise.
+     */
+    static boolean isValid(@NonNull String name) {
+        return findViolation(normalize(name)) == null;
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Checks that the normalized name is a valid ref name.
+     * @param name the normalized name.
+     * @param kind the kind of name, for the error message.
+     * @throws IllegalArgumentException if the name is not valid.
+     */
+    private static void checkRefName(String name, String kind) {
+        var violation = findViolation(name);
+        if (violation != null) {
+            throw new IllegalArgumentException(String.format("invalid %s: %s (%s)", kind, name, violation));
+        }
+    }
+
+    /**
+     * Finds the first rule the normalized name violates.
+     * @param name the normalized name.
+     * @return the rule violated, or <code>null</code> if the name is valid.
+     */
+    private static String findViolation(String name) {
+        if (name.isEmpty()) {
+            return "empty";
+        }
+        if ("@".equals(name)) {
+            return "is @";
+        }
+        if (name.endsWith("/")) {
+            return "ends with /";
+        }
+        if (name.endsWith(".")) {
+            return "ends with .";
+        }
+        if (name.contains("..")) {
+            return "contains ..";
+        }
+        if (name.contains("@{")) {
+            return "contains @{";
+        }
+        for (int i = 0; i < name.length(); i++) {
+            var c = name.charAt(i);
+            if (c < 0x20 || c == 0x7F) {
+                return String.format("contains control character \\u%04x", (int) c);
+            }
+            if (FORBIDDEN_CHARACTERS.indexOf(c) >= 0) {
+                return String.format("contains '%c'", c);
+            }
+        }
+        for (String component : name.split("/", -1)) {
+            if (component.isEmpty()) {
+                return "contains an empty component";
+            }
+            if (component.startsWith(".")) {
+                return String.format("component %s begins with .", component);
+            }
+            if (component.endsWith(".lock")) {
+                return String.format("component %s ends with .lock", component);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,277 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import lombok.NonNull;
+
+/**
+ * A poller waiting for a single ref to exist, and optionally to point to a given SHA. <br>
+ * Polls list the refs matching the name rather than reading the single ref: a missing ref is then an empty list with
+ * an <code>ETag</code> rather than a <code>404</code> without one. Polls are conditional requests on the
+ * <code>ETag</code> of the previous response, so unchanged polls are answered with <code>304 Not Modified</code> and
+ * do not consume the rate limit, also while the ref does not exist yet. Polls are spaced by an exponential backoff
+ * with jitter, bounded by a timeout.
+ * @author Julb.
+ */
+class RefPoller {
+
+    /**
+     * The default delay before the second poll.
+     */
+    static final Duration DEFAULT_INITIAL_DELAY = Duration.ofSeconds(1);
+
+    /**
+     * The default maximum delay between two polls.
+     */
+    static final Duration DEFAULT_MAX_DELAY = Duration.ofSeconds(30);
+
+    /**
+     * The maximum number of doublings of the delay, to prevent overflows.
+     */
+    private static final int MAX_DOUBLINGS = 20;
+
+    /**
+     * The page size of the listing: the refs are sorted, so the exact match comes first among the refs it prefixes.
+     */
+    private static final int PAGE_SIZE = 100;
+
+    /**
+     * Sleeps between two polls.
+     */
+    @FunctionalInterface
+    interface Sleeper {
+        /**
+         * Sleeps.
+         * @param nanos the duration to sleep, in nanoseconds.
+         * @throws InterruptedException if the thread is interrupted.
+         */
+        void sleep(long nanos) throws InterruptedException;
+    }
+
+    /**
+     * The HTTP client.
+     */
+    private final GitHubHttpClient httpClient;
+
+    /**
+     * The repository full name.
+     */
+    private final String repository;
+
+    /**
+     * The delay before the second poll, in nanoseconds.
+     */
+    private final long initialDelayNanos;
+
+    /**
+     * The maximum delay between two polls, in nanoseconds.
+     */
+    private final long maxDelayNanos;
+
+    /**
+     * The sleeper.
+     */
+    private final Sleeper sleeper;
+
+    /**
+     * The clock, in nanoseconds.
+     */
+    private final LongSupplier nanoClock;
+
+    /**
+     * The source of randomness of the jitter, between 0 and 1.
+     */
+    private final DoubleSupplier random;
+
+    /**
+     * The number of polls sent.
+     */
+    private int polls;
+
+    /**
+     * The number of polls answered with <code>304 Not Modified</code>.
+     */
+    private int notModifiedPolls;
+
+    /**
+     * Default constructor.
+     * @param httpClient the HTTP client.
+     * @param repository the repository full name.
+     */
+    RefPoller(@NonNull GitHubHttpClient httpClient, @NonNull String repository) {
+        this(
+                httpClient,
+                repository,
+                DEFAULT_INITIAL_DELAY,
+                DEFAULT_MAX_DELAY,
+                TimeUnit.NANOSECONDS::sleep,
+                System::nanoTime,
+                () -> ThreadLocalRandom.current().nextDouble());
+    }
+
+    /**
+     * Constructor.
+     * @param httpClient the HTTP client.
+     * @param repository the repository full name.
+     * @param initialDelay the delay before the second poll.
+     * @param maxDelay the maximum delay between two polls.
+     * @param sleeper the sleeper.
+     * @param nanoClock the clock, in nanoseconds.
+     * @param random the source of randomness of the jitter, between 0 and 1.
+     */
+    RefPoller(
+            @NonNull GitHubHttpClient httpClient,
+            @NonNull String repository,
+            @NonNull Duration initialDelay,
+            @NonNull Duration maxDelay,
+            @NonNull Sleeper sleeper,
+            @NonNull LongSupplier nanoClock,
+            @NonNull DoubleSupplier random) {
+        this.httpClient = httpClient;
+        this.repository = repository;
+        this.initialDelayNanos = initialDelay.toNanos();
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.sleeper = sleeper;
+        this.nanoClock = nanoClock;
+        this.random = random;
+    }
+
+    /**
+     * Waits until the ref exists, and points to the given SHA if any.
+     * @param ref the ref, e.g. <code>refs/heads/main</code>.
+     * @param sha the full or abbreviated SHA the ref must point to, or <code>null</code> to only wait for the ref.
+     * @param timeout the maximum duration to wait.
+     * @return the ref once the condition holds.
+     * @throws TimeoutException if the condition does not hold before the timeout.
+     * @throws InterruptedException if the thread is interrupted.
+     * @throws IOException if an error occurs.
+     */
+    RefEntry await(@NonNull String ref, String sha, @NonNull Duration timeout)
+            throws IOException, InterruptedException, TimeoutException {
+        var path = String.format(
+                "/repos/%s/git/matching-refs/%s?per_page=%d",
+                repository,
+                GitHubHttpClient.encodePath(ref.replaceFirst("^refs/", "")),
+                PAGE_SIZE);
+        var deadline = nanoClock.getAsLong() + timeout.toNanos();
+
+        String etag = null;
+        RefEntry current = null;
+        for (int attempt = 0; ; attempt++) {
+            polls++;
+            var response = httpClient.get(path, etag);
+            if (response.status() == GitHubHttpClient.HTTP_NOT_MODIFIED) {
+                notModifiedPolls++;
+            } else {
+                etag = response.etag();
+                current = findRefEntry(response.body(), ref);
+            }
+
+            // Condition holds.
+            if (current != null && (sha == null || current.sha().regionMatches(true, 0, sha, 0, sha.length()))) {
+                return current;
+            }
+
+            var remainingNanos = deadline - nanoClock.getAsLong();
+            if (remainingNanos <= 0) {
+                throw new TimeoutException(String.format(
+                        "ref %s %s after %d polls.",
+                        ref,
+                        current == null ? "does not exist" : String.format("points to %s", current.sha()),
+                        polls));
+            }
+            sleeper.sleep(Math.min(remainingNanos, backoffNanos(attempt)));
+        }
+    }
+
+    /**
+     * Gets the number of polls sent.
+     * @return the number of polls sent.
+     */
+    int getPolls() {
+        return polls;
+    }
+
+    /**
+     * Gets the number of polls answered with <code>304 Not Modified</code>.
+     * @return the number of polls answered with <code>304 Not Modified</code>.
+     */
+    int getNotModifiedPolls() {
+        return notModifiedPolls;
+    }
+
+    /**
+     * Gets the delay after a poll: the delay doubles at each attempt up to the maximum delay, and a random half of it
+     * is removed so that concurrent pollers spread out.
+     * @param attempt the attempt, starting at 0.
+     * @return the delay, in nanoseconds.
+     */
+    long backoffNanos(int attempt) {
+        var ceiling = Math.min(maxDelayNanos, initialDelayNanos << Math.min(attempt, MAX_DOUBLINGS));
+        var half = ceiling / 2;
+        return ceiling - half + (long) (half * random.getAsDouble());
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Finds a ref in a listing response: the listing also holds the refs the name is a prefix of.<br>
+     * As in the ref stores, the name matches regardless of the case: the exact name is preferred, else the first
+     * matching name in alphabetical order.
+     * @param body the listing response.
+     * @param ref the ref.
+     * @return the ref, or <code>null</code> if not listed.
+     */
+    private static RefEntry findRefEntry(JsonNode body, String ref) {
+        if (body == null) {
+            return null;
+        }
+        JsonNode found = null;
+        for (var entry : body) {
+            var name = entry.path("ref").asText();
+            if (ref.equals(name)) {
+                found = entry;
+                break;
+            }
+            if (ref.equalsIgnoreCase(name) && (found == null || name.compareTo(found.path("ref").asText()) < 0)) {
+                found = entry;
+            }
+        }
+        if (found == null) {
+            return null;
+        }
+        var object = found.path("object");
+        return new RefEntry(found.path("ref").asText(), object.path("sha").asText(), object.path("type").asText());
+    }
+}
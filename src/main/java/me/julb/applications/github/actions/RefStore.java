@@ -0,0 +1,176 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A backend reading and writing the branches of a repository. <br>
+ * Implementations are discovered with {@link java.util.ServiceLoader}, and must be listed in
+ * <code>META-INF/services/me.julb.applications.github.actions.RefStore</code>. The <code>api</code> input selects a
+ * store by name, or lets {@link RefStorePlanner} pick the cheapest one for each operation. A store only provides the
+ * primitives of a {@link Session}: the action decides what to read and write. Names are matched regardless of their
+ * case, so that every store manages the same branch whichever the planner picks.
+ * @author Julb.
+ */
+public interface RefStore {
+
+    /**
+     * Gets the name of the store, as set in the inputs.
+     * @return the name of the store, e.g. <code>rest</code>.
+     */
+    String name();
+
+    /**
+     * Gets the rate limit resource the requests of the store count against.
+     * @return the rate limit resource, as reported in the <code>X-RateLimit-Resource</code> header, e.g.
+     * <code>core</code>.
+     */
+    String rateLimitResource();
+
+    /**
+     * Estimates the number of requests of an operation, opening the session included.
+     * @param branchState the expected state of the branch.
+     * @param repositoryFetched <code>true</code> if the repository is already fetched.
+     * @return the estimated number of requests.
+     */
+    int estimateRequests(InputBranchState branchState, boolean repositoryFetched);
+
+    /**
+     * Opens a session on a repository.
+     * @param action the action whose configuration and clients the session uses.
+     * @param repositoryName the repository full name.
+     * @return the session.
+     * @throws IOException if an error occurs.
+     */
+    Session open(ManageBranchGitHubAction action, String repositoryName) throws IOException;
+
+    /**
+     * The refs of a repository, as read and written by a store. <br>
+     * The refs returned by a session can be written with the same session only. A session can be used by several
+     * threads, to write different refs.
+     * @author Julb.
+     */
+    interface Session {
+
+        /**
+         * Gets the full name of the repository.
+         * @return the full name of the repository.
+         */
+        String repository();
+
+        /**
+         * Reads a branch, regardless of the case of its name. A branch already read is read again.
+         * @param branchRef the branch ref, e.g. <code>refs/heads/main</code>.
+         * @return the branch if it exists, {@link Optional#empty()} otherwise.
+         * @throws IOException if an error occurs.
+         */
+        Optional<RefEntry> read(String branchRef) throws IOException;
+
+        /**
+         * Resolves a name as a branch, a tag or a ref, regardless of its case.
+         * @param name the branch, tag or ref name.
+         * @return the ref and the object it points to if found, {@link Optional#empty()} otherwise.
+         * @throws IOException if an error occurs.
+         */
+        Optional<RefEntry> resolve(String name) throws IOException;
+
+        /**
+         * Lists the refs starting with a prefix.
+         * @param prefix the prefix, ending with a <code>/</code>, e.g. <code>refs/heads/</code>.
+         * @return the refs, pointing to the object they point to without peeling it.
+         * @throws IOException if an error occurs.
+         */
+        List<RefEntry> list(String prefix) throws IOException;
+
+        /**
+         * Reads a branch and resolves a name, in a single request if the store can.
+         * @param branchRef the branch ref, e.g. <code>refs/heads/main</code>.
+         * @param name the branch, tag or ref name to resolve, or <code>null</code> to only read the branch.
+         * @return the branch and the resolved name.
+         * @throws IOException if an error occurs.
+         * @see #read(String)
+         * @see #resolve(String)
+         */
+        default Lookup lookup(String branchRef, String name) throws IOException {
+            return new Lookup(
+                    read(branchRef).orElse(null),
+                    name != null ? resolve(name).orElse(null) : null);
+        }
+
+        /**
+         * Creates a ref.
+         * @param ref the ref to create.
+         * @param sha the full commit SHA.
+         * @return the ref created.
+         * @throws IOException if an error occurs.
+         */
+        RefEntry create(String ref, String sha) throws IOException;
+
+        /**
+         * Updates a ref read by this session.
+         * @param ref the ref to update.
+         * @param sha the full commit SHA.
+         * @param force <code>false</code> to only allow fast-forward updates.
+         * @return the ref updated.
+         * @throws IOException if an error occurs, an {@link org.kohsuke.github.HttpException} with a
+         * <code>422</code> status if the ref moved since it was read.
+         */
+        RefEntry update(RefEntry ref, String sha, boolean force) throws IOException;
+
+        /**
+         * Deletes a ref read by this session.
+         * @param ref the ref to delete.
+         * @throws IOException if an error occurs.
+         */
+        void delete(RefEntry ref) throws IOException;
+    }
+
+    /**
+     * A branch and a resolved name.
+     * @param branch the branch, or <code>null</code> if the branch does not exist.
+     * @param resolved the resolved name, or <code>null</code> if not resolved.
+     * @author Julb.
+     */
+    record Lookup(RefEntry branch, RefEntry resolved) {
+
+        /**
+         * Gets the branch.
+         * @return the branch if it exists, {@link Optional#empty()} otherwise.
+         */
+        public Optional<RefEntry> findBranch() {
+            return Optional.ofNullable(branch);
+        }
+
+        /**
+         * Gets the resolved name.
+         * @return the resolved name if found, {@link Optional#empty()} otherwise.
+         */
+        public Optional<RefEntry> findResolved() {
+            return Optional.ofNullable(resolved);
+        }
+    }
+}
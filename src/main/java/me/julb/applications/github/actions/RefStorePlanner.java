@@ -0,0 +1,161 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+import lombok.NonNull;
+
+/**
+ * A planner picking the cheapest {@link RefStore} for each operation. <br>
+ * The cost of an operation is the number of requests the store estimates for its shape, times the latency per
+ * request measured for the store so far. A store whose rate limit cannot afford the operation, on top of a reserve,
+ * is only picked if no other store can.
+ * @author Julb.
+ */
+class RefStorePlanner {
+
+    /**
+     * The latency per request assumed for a store before any measure, in nanoseconds.
+     */
+    static final long DEFAULT_LATENCY_NANOS = 250_000_000L;
+
+    /**
+     * The weight of the last measure in the moving average of the latency.
+     */
+    static final double LATENCY_WEIGHT = 0.2;
+
+    /**
+     * The number of requests kept in reserve in each rate limit.
+     */
+    static final int RATE_LIMIT_RESERVE = 50;
+
+    /**
+     * The stores, by order of preference when their costs are equal.
+     */
+    private final List<RefStore> stores;
+
+    /**
+     * The remaining rate limit, by rate limit resource.
+     */
+    private final ToIntFunction<String> remainingRateLimit;
+
+    /**
+     * The moving average of the latency per request, in nanoseconds, by store name.
+     */
+    private final Map<String, Double> latencies = new HashMap<>();
+
+    /**
+     * The number of operations planned, by store name.
+     */
+    private final Map<String, Integer> plans = new HashMap<>();
+
+    /**
+     * Default constructor.
+     * @param stores the stores, by order of preference when their costs are equal.
+     * @param remainingRateLimit the remaining rate limit, by rate limit resource, or {@link Integer#MAX_VALUE} if
+     * not known.
+     */
+    RefStorePlanner(@NonNull List<RefStore> stores, @NonNull ToIntFunction<String> remainingRateLimit) {
+        if (stores.isEmpty()) {
+            throw new IllegalArgumentException("no ref store to plan with");
+        }
+        this.stores = List.copyOf(stores);
+        this.remainingRateLimit = remainingRateLimit;
+    }
+
+    /**
+     * Picks the cheapest store for an operation.
+     * @param branchState the expected state of the branch.
+     * @param repositoryFetched <code>true</code> if the repository is already fetched.
+     * @return the cheapest store, or the store with the most remaining rate limit if none can afford the operation.
+     */
+    synchronized RefStore plan(@NonNull InputBranchState branchState, boolean repositoryFetched) {
+        RefStore cheapest = null;
+        var cheapestCost = Double.POSITIVE_INFINITY;
+        RefStore leastLimited = null;
+        var leastLimitedRemaining = Integer.MIN_VALUE;
+        for (RefStore store : stores) {
+            var requests = store.estimateRequests(branchState, repositoryFetched);
+            var remaining = remainingRateLimit.applyAsInt(store.rateLimitResource());
+            if (remaining > leastLimitedRemaining) {
+                leastLimited = store;
+                leastLimitedRemaining = remaining;
+            }
+            if ((long) requests + RATE_LIMIT_RESERVE > remaining) {
+                continue;
+            }
+
+            var cost = requests * latency(store);
+            if (cost < cheapestCost) {
+                cheapest = store;
+                cheapestCost = cost;
+            }
+        }
+
+        var planned = cheapest != null ? cheapest : leastLimited;
+        plans.merge(planned.name(), 1, Integer::sum);
+        return planned;
+    }
+
+    /**
+     * Records the latency of an operation applied by a store.
+     * @param store the store.
+     * @param requests the number of requests estimated for the operation.
+     * @param latencyNanos the latency of the operation, in nanoseconds.
+     */
+    synchronized void record(@NonNull RefStore store, int requests, long latencyNanos) {
+        var latencyPerRequest = (double) latencyNanos / Math.max(1, requests);
+        latencies.merge(
+                store.name(),
+                latencyPerRequest,
+                (average, latency) -> average + LATENCY_WEIGHT * (latency - average));
+    }
+
+    /**
+     * Gets the latency per request of a store.
+     * @param store the store.
+     * @return the moving average of the latency per request, in nanoseconds, or {@link #DEFAULT_LATENCY_NANOS} if
+     * not measured yet.
+     */
+    synchronized double latency(@NonNull RefStore store) {
+        return latencies.getOrDefault(store.name(), (double) DEFAULT_LATENCY_NANOS);
+    }
+
+    /**
+     * Summarizes the plans.
+     * @return the summary.
+     */
+    synchronized String summary() {
+        return stores.stream()
+                .map(store -> String.format(
+                        "%s: %d operations, %.0f ms per request",
+                        store.name(), plans.getOrDefault(store.name(), 0), latency(store) / 1_000_000))
+                .collect(Collectors.joining(", ", "ref stores: [", "]"));
+    }
+}
@@ -0,0 +1,233 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.kohsuke.github.GHRef;
+
+import lombok.NonNull;
+
+/**
+ * The {@link RefStore} reading and writing the branches through the REST API. <br>
+ * The repository is fetched, then the branch and the source are looked up by listing the refs.
+ * @author Julb.
+ */
+public class RestRefStore implements RefStore {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String name() {
+        return "rest";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String rateLimitResource() {
+        return ManageBranchGitHubAction.REST_RATE_LIMIT_RESOURCE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int estimateRequests(@NonNull InputBranchState branchState, boolean repositoryFetched) {
+        // The repository, then the branches, then the refs to find the source, then the write.
+        var repositoryRequests = repositoryFetched ? 0 : 1;
+        return switch (branchState) {
+            case PRESENT -> repositoryRequests + 3;
+            case ABSENT -> repositoryRequests + 2;
+            case WAIT -> 1;
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Session open(@NonNull ManageBranchGitHubAction action, @NonNull String repositoryName)
+            throws IOException {
+        action.useRepository(repositoryName);
+        return new RestSession(action);
+    }
+
+    /**
+     * The session of the {@link RestRefStore}, keeping the {@link GHRef} read to write them. <br>
+     * The refs listed by shards are listed without their {@link GHRef}, which is only fetched to write them.
+     * @author Julb.
+     */
+    private static class RestSession implements Session {
+
+        /**
+         * The action using the repository.
+         */
+        private final ManageBranchGitHubAction action;
+
+        /**
+         * The {@link GHRef} read by ref.
+         */
+        private final Map<String, GHRef> ghRefs = new ConcurrentHashMap<>();
+
+        /**
+         * The refs listed without their {@link GHRef}.
+         */
+        private final Set<String> listedRefs = ConcurrentHashMap.newKeySet();
+
+        /**
+         * Default constructor.
+         * @param action the action using the repository.
+         */
+        RestSession(ManageBranchGitHubAction action) {
+            this.action = action;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String repository() {
+            return action.repositoryName();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Optional<RefEntry> read(@NonNull String branchRef) throws IOException {
+            // A ref already read is fetched alone.
+            if (ghRefs.containsKey(branchRef) || listedRefs.contains(branchRef)) {
+                try {
+                    return Optional.of(remember(action.getGHRef(branchRef)));
+                } catch (FileNotFoundException e) {
+                    forget(branchRef);
+                    return Optional.empty();
+                }
+            }
+            return action.getBranchGHRef(branchRef.replaceFirst("^refs/heads/", "")).map(this::remember);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Optional<RefEntry> resolve(@NonNull String name) throws IOException {
+            return action.getAnyGHRef(name).map(this::remember);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public List<RefEntry> list(@NonNull String prefix) throws IOException {
+            var path = prefix.replaceFirst("^refs/", "");
+            if (action.isShardedListing()) {
+                var refs = action.listShardedRefs(path);
+                refs.forEach(ref -> listedRefs.add(ref.ref()));
+                return refs;
+            }
+
+            var refs = new ArrayList<RefEntry>();
+            for (GHRef ghRef : action.getGhRepository().getRefs(path.replaceFirst("/$", ""))) {
+                refs.add(remember(ghRef));
+            }
+            return refs;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public RefEntry create(@NonNull String ref, @NonNull String sha) throws IOException {
+            return remember(action.getGhRepository().createRef(ref, sha));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public RefEntry update(@NonNull RefEntry ref, @NonNull String sha, boolean force) throws IOException {
+            find(ref).updateTo(sha, force);
+            return new RefEntry(ref.ref(), sha, CommitGraph.COMMIT);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void delete(@NonNull RefEntry ref) throws IOException {
+            find(ref).delete();
+            forget(ref.ref());
+        }
+
+        /**
+         * Keeps a {@link GHRef} to write it.
+         * @param ghRef the {@link GHRef} read.
+         * @return the ref.
+         */
+        private RefEntry remember(GHRef ghRef) {
+            ghRefs.put(ghRef.getRef(), ghRef);
+            return new RefEntry(ghRef.getRef(), ghRef.getObject().getSha(), ghRef.getObject().getType());
+        }
+
+        /**
+         * Forgets a ref deleted.
+         * @param ref the ref.
+         */
+        private void forget(String ref) {
+            ghRefs.remove(ref);
+            listedRefs.remove(ref);
+        }
+
+        /**
+         * Finds the {@link GHRef} of a ref read by this session, fetching the single ref if only listed.
+         * @param ref the ref.
+         * @return the {@link GHRef}.
+         * @throws IOException if an error occurs.
+         * @throws IllegalStateException if the ref was not read by this session.
+         */
+        private GHRef find(RefEntry ref) throws IOException {
+            var ghRef = ghRefs.get(ref.ref());
+            if (ghRef != null) {
+                return ghRef;
+            }
+            if (!listedRefs.contains(ref.ref())) {
+                throw new IllegalStateException(String.format("ref not read: %s", ref.ref()));
+            }
+            ghRef = action.getGHRef(ref.ref());
+            ghRefs.put(ref.ref(), ghRef);
+            return ghRef;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.NonNull;
+
+/**
+ * A git revision expression, as a base ref or SHA followed by navigation suffixes. <br>
+ * <ul>
+ * <li><code>~n</code> selects the n-th first-parent ancestor, <code>~</code> the first parent.</li>
+ * <li><code>^n</code> selects the n-th parent, <code>^</code> the first parent.</li>
+ * <li><code>^{commit}</code>, <code>^{}</code> and <code>^0</code> peel annotated tags to their commit.</li>
+ * </ul>
+ * @param base the base ref or SHA, e.g. <code>main</code>.
+ * @param steps the navigation steps, in order.
+ * @author Julb.
+ */
+record RevisionExpression(String base, List<Step> steps) {
+
+    /**
+     * A navigation step.
+     * @param operator <code>~</code> for the first-parent ancestor, <code>^</code> for the parent.
+     * @param count the number of generations for <code>~</code>, the parent number for <code>^</code>, where
+     * <code>^0</code> peels the object to a commit.
+     */
+    record Step(char operator, int count) {}
+
+    /**
+     * Parses a revision expression.
+     * @param expression the expression, e.g. <code>v2.1^{commit}</code>, <code>main~3</code> or
+     * <code>release/1.0^2</code>.
+     * @return the revision expression.
+     * @throws IllegalArgumentException if a suffix is not supported.
+     */
+    static RevisionExpression parse(@NonNull String expression) {
+        var index = indexOfSuffix(expression);
+        var steps = new ArrayList<Step>();
+        while (index < expression.length()) {
+            var operator = expression.charAt(index++);
+            if (operator == '^' && index < expression.length() && expression.charAt(index) == '{') {
+                // Peel.
+                var end = expression.indexOf('}', index);
+                var type = end < 0 ? null : expression.substring(index + 1, end);
+                if (!"".equals(type) && !"commit".equals(type)) {
+                    throw new IllegalArgumentException(String.format("unsupported revision: %s", expression));
+                }
+                steps.add(new Step('^', 0));
+                index = end + 1;
+            } else if (operator == '^' || operator == '~') {
+                // Parent or ancestor, one by default.
+                var start = index;
+                while (index < expression.length() && Character.isDigit(expression.charAt(index))) {
+                    index++;
+                }
+                var count = start == index ? 1 : parseCount(expression, expression.substring(start, index));
+                steps.add(new Step(operator, count));
+            } else {
+                throw new IllegalArgumentException(String.format("unsupported revision: %s", expression));
+            }
+        }
+        return new RevisionExpression(expression.substring(0, indexOfSuffix(expression)), List.copyOf(steps));
+    }
+
+    /**
+     * Checks if the expression navigates from its base.
+     * @return <code>true</code> if the expression has steps, <code>false</code> if it is its base only.
+     */
+    boolean hasSteps() {
+        return !steps.isEmpty();
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Gets the index of the first suffix, <code>~</code> and <code>^</code> not being allowed in a ref name.
+     * @param expression the expression.
+     * @return the index of the first suffix, or the length of the expression if none.
+     */
+    private static int indexOfSuffix(String expression) {
+        for (int i = 0; i < expression.length(); i++) {
+            var c = expression.charAt(i);
+            if (c == '~' || c == '^') {
+                return i;
+            }
+        }
+        return expression.length();
+    }
+
+    /**
+     * Parses the count of a step.
+     * @param expression the expression.
+     * @param count the count.
+     * @return the count.
+     * @throws IllegalArgumentException if the count is too large.
+     */
+    private static int parseCount(String expression, String count) {
+        try {
+            return Integer.parseInt(count);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("unsupported revision: %s", expression), e);
+        }
+    }
+}
@@ -0,0 +1,369 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import lombok.NonNull;
+
+/**
+ * An enumerator listing the refs of a repository concurrently. <br>
+ * Refs are listed through the <code>matching-refs</code> endpoint. A namespace spanning more than one page has its
+ * refs counted, and the counted pages are fetched concurrently. A search for a ref regardless of the case lists only
+ * the prefix shards which may hold it, subdividing a shard spanning more than one page by appending the case variants
+ * of the next character to its prefix. Results are merged and deduplicated by ref, and returned in ref order.
+ * @author Julb.
+ */
+class ShardedRefEnumerator implements AutoCloseable {
+
+    /**
+     * The number of refs per page.
+     */
+    static final int PAGE_SIZE = 100;
+
+    /**
+     * The maximum number of characters appended to the root prefix when subdividing shards.
+     */
+    static final int MAX_DEPTH = 8;
+
+    /**
+     * The query counting the refs of a namespace.
+     */
+    private static final String COUNT_QUERY = "query($owner: String!, $name: String!, $prefix: String!) {"
+            + " repository(owner: $owner, name: $name) { refs(refPrefix: $prefix, first: 1) { totalCount } } }";
+
+    /**
+     * The HTTP client.
+     */
+    private final GitHubHttpClient httpClient;
+
+    /**
+     * The repository full name.
+     */
+    private final String repository;
+
+    /**
+     * The executor listing the shards.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The number of requests sent.
+     */
+    private int requests;
+
+    /**
+     * Default constructor.
+     * @param httpClient the HTTP client.
+     * @param repository the repository full name, as <code>owner/name</code>.
+     * @param concurrency the number of shards listed concurrently.
+     */
+    ShardedRefEnumerator(@NonNull GitHubHttpClient httpClient, @NonNull String repository, int concurrency) {
+        this.httpClient = httpClient;
+        this.repository = repository;
+        this.executor = Executors.newFixedThreadPool(concurrency);
+    }
+
+    /**
+     * Lists all the refs of a namespace.<br>
+     * The refs are only counted when the namespace spans more than one page. Pages added after the count are
+     * followed serially; as with serial paging, refs changed during the listing may be missed.
+     * @param namespace the namespace, e.g. <code>heads/</code> or <code>tags/</code>.
+     * @return the refs of the namespace, in ref order.
+     * @throws IOException if an error occurs.
+     */
+    List<RefEntry> list(@NonNull String namespace) throws IOException {
+        if (!namespace.endsWith("/")) {
+            throw new IllegalArgumentException(String.format("invalid namespace: %s", namespace));
+        }
+
+        Map<String, RefEntry> refs = new ConcurrentSkipListMap<>();
+        var response = get(pageUrl(namespace, 1));
+        addRefs(response.body(), ref -> true, refs);
+        if (response.nextUrl() == null) {
+            return new ArrayList<>(refs.values());
+        }
+
+        // Fetch the counted pages concurrently.
+        var pages = Math.max(2, (countRefs(namespace) + PAGE_SIZE - 1) / PAGE_SIZE);
+        var tasks = new ArrayList<Callable<GitHubHttpClient.Response>>();
+        for (int page = 2; page <= pages; page++) {
+            var url = pageUrl(namespace, page);
+            tasks.add(() -> get(url));
+        }
+        for (Future<GitHubHttpClient.Response> future : invokeAll(tasks)) {
+            response = await(future);
+            addRefs(response.body(), ref -> true, refs);
+        }
+
+        // Follow the pages added since the count.
+        while (response.nextUrl() != null) {
+            response = get(response.nextUrl());
+            addRefs(response.body(), ref -> true, refs);
+        }
+        return new ArrayList<>(refs.values());
+    }
+
+    /**
+     * Finds the refs equal to the given ref, regardless of the case.<br>
+     * Only the shards which are a prefix of one of the case variants of the ref are listed.
+     * @param ref the ref to look for, e.g. <code>refs/heads/main</code>.
+     * @return the matching refs, in ref order.
+     * @throws IOException if an error occurs.
+     */
+    List<RefEntry> findIgnoreCase(@NonNull String ref) throws IOException {
+        var path = ref.replaceFirst("^refs/", "");
+        var namespaceIndex = path.indexOf('/');
+        if (namespaceIndex <= 0) {
+            throw new IllegalArgumentException(String.format("invalid ref: %s", ref));
+        }
+
+        var namespace = path.substring(0, namespaceIndex + 1);
+        var target = path.toLowerCase(Locale.ROOT);
+        return enumerate(
+                namespace,
+                prefix -> caseVariants(path, prefix.length()),
+                entry -> entry.ref().replaceFirst("^refs/", "").toLowerCase(Locale.ROOT).equals(target));
+    }
+
+    /**
+     * Gets the number of requests sent.
+     * @return the number of requests sent.
+     */
+    synchronized int getRequests() {
+        return requests;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    // ------------------------------------------ Utility methods.
+
+    /**
+     * Enumerates the refs from the root shard, subdividing oversized shards level by level.
+     * @param root the root prefix.
+     * @param children the function giving the characters to append to an oversized shard prefix.
+     * @param filter the filter of the refs to keep.
+     * @return the refs kept, in ref order.
+     * @throws IOException if an error occurs.
+     */
+    private List<RefEntry> enumerate(
+            String root, Function<String, List<String>> children, Predicate<RefEntry> filter) throws IOException {
+        Map<String, RefEntry> refs = new ConcurrentSkipListMap<>();
+
+        var level = List.of(root);
+        while (!level.isEmpty()) {
+            var tasks = new ArrayList<Callable<Boolean>>();
+            for (String prefix : level) {
+                tasks.add(() -> listShard(prefix, prefix.length() - root.length() < MAX_DEPTH, filter, refs));
+            }
+
+            // Subdivide oversized shards.
+            var futures = invokeAll(tasks);
+            var nextLevel = new ArrayList<String>();
+            for (int i = 0; i < level.size(); i++) {
+                if (Boolean.TRUE.equals(await(futures.get(i)))) {
+                    var prefix = level.get(i);
+                    children.apply(prefix).forEach(c -> nextLevel.add(prefix + c));
+                }
+            }
+            level = nextLevel;
+        }
+
+        return new ArrayList<>(refs.values());
+    }
+
+    /**
+     * Lists the first page of a shard, or all the pages if the shard cannot be subdivided.
+     * @param prefix the shard prefix.
+     * @param subdivide <code>true</code> if the shard can be subdivided.
+     * @param filter the filter of the refs to keep.
+     * @param refs the refs kept.
+     * @return <code>true</code> if the shard needs to be subdivided, <code>false</code> if it has been fully listed.
+     * @throws IOException if an error occurs.
+     */
+    private boolean listShard(
+            String prefix, boolean subdivide, Predicate<RefEntry> filter, Map<String, RefEntry> refs)
+            throws IOException {
+        var response = get(pageUrl(prefix, 1));
+        addRefs(response.body(), filter, refs);
+
+        if (response.nextUrl() != null && subdivide) {
+            return true;
+        }
+
+        // Follow the pages.
+        while (response.nextUrl() != null) {
+            response = get(response.nextUrl());
+            addRefs(response.body(), filter, refs);
+        }
+        return false;
+    }
+
+    /**
+     * Gets the URL of a page of refs.
+     * @param prefix the prefix of the refs.
+     * @param page the page number, starting at 1.
+     * @return the URL of the page.
+     */
+    private String pageUrl(String prefix, int page) {
+        var url = String.format(
+                "/repos/%s/git/matching-refs/%s?per_page=%d",
+                repository, GitHubHttpClient.encodePath(prefix), PAGE_SIZE);
+        return page == 1 ? url : url + "&page=" + page;
+    }
+
+    /**
+     * Counts the refs of a namespace.
+     * @param namespace the namespace.
+     * @return the number of refs of the namespace.
+     * @throws IOException if an error occurs.
+     */
+    private int countRefs(String namespace) throws IOException {
+        var ownerAndName = repository.split("/", 2);
+        var data = httpClient.graphql(
+                COUNT_QUERY, Map.of("owner", ownerAndName[0], "name", ownerAndName[1], "prefix", "refs/" + namespace));
+        incrementRequests();
+        return data.path("repository").path("refs").path("totalCount").asInt(-1);
+    }
+
+    /**
+     * Gets a page of refs.
+     * @param pathOrUrl the path or the URL of the page.
+     * @return the response.
+     * @throws IOException if an error occurs.
+     */
+    private GitHubHttpClient.Response get(String pathOrUrl) throws IOException {
+        incrementRequests();
+        try {
+            return httpClient.get(pathOrUrl, null);
+        } catch (FileNotFoundException e) {
+            // No ref matching the prefix.
+            return new GitHubHttpClient.Response(GitHubHttpClient.HTTP_NOT_FOUND, null, null, null);
+        }
+    }
+
+    /**
+     * Adds the refs of a page.
+     * @param page the page.
+     * @param filter the filter of the refs to keep.
+     * @param refs the refs kept.
+     */
+    private static void addRefs(JsonNode page, Predicate<RefEntry> filter, Map<String, RefEntry> refs) {
+        if (page == null || !page.isArray()) {
+            return;
+        }
+        for (JsonNode node : page) {
+            var entry = new RefEntry(
+                    node.path("ref").asText(),
+                    node.path("object").path("sha").asText(),
+                    node.path("object").path("type").asText(null));
+            if (filter.test(entry)) {
+                refs.put(entry.ref(), entry);
+            }
+        }
+    }
+
+    /**
+     * Gets the case variants of the character at the given position.
+     * @param path the ref path.
+     * @param index the position.
+     * @return the case variants, empty if the position is beyond the path.
+     */
+    private static List<String> caseVariants(String path, int index) {
+        if (index >= path.length()) {
+            return List.of();
+        }
+        var codePoint = path.codePointAt(index);
+        var variants = new LinkedHashSet<String>();
+        variants.add(Character.toString(codePoint));
+        variants.add(Character.toString(Character.toLowerCase(codePoint)));
+        variants.add(Character.toString(Character.toUpperCase(codePoint)));
+        return new ArrayList<>(variants);
+    }
+
+    /**
+     * Invokes all the tasks.
+     * @param tasks the tasks.
+     * @return the futures.
+     * @throws IOException if interrupted.
+     */
+    private <T> List<Future<T>> invokeAll(List<Callable<T>> tasks) throws IOException {
+        try {
+            return executor.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while listing refs.");
+        }
+    }
+
+    /**
+     * Waits for the result of a task.
+     * @param future the future.
+     * @return the result.
+     * @throws IOException if the task failed.
+     */
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while listing refs.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Increments the number of requests sent.
+     */
+    private synchronized void incrementRequests() {
+        requests++;
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.kohsuke.github.GHAppInstallationToken;
+import org.mockito.Mockito;
+
+/**
+ * Test class for {@link AppInstallationTokenProvider} class. <br>
+ * @author Julb.
+ */
+class AppInstallationTokenProviderTest {
+
+    /**
+     * The length of the PKCS#8 header of a 2048-bit RSA private key.
+     */
+    private static final int PKCS8_HEADER_LENGTH = 26;
+
+    /**
+     * A RSA key pair.
+     */
+    private static KeyPair keyPair;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @BeforeAll
+    static void setUpBeforeAll() throws Exception {
+        var generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        keyPair = generator.generateKeyPair();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenPkcs8PrivateKey_thenCreated() throws Exception {
+        var pem = pem("PRIVATE KEY", keyPair.getPrivate().getEncoded());
+
+        assertThat(new AppInstallationTokenProvider("https://api.github.com", "12345", pem, "octocat/Hello-World"))
+                .isNotNull();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenPkcs1PrivateKey_thenThrowGeneralSecurityException() {
+        var pkcs8 = keyPair.getPrivate().getEncoded();
+        var pem = pem("RSA PRIVATE KEY", Arrays.copyOfRange(pkcs8, PKCS8_HEADER_LENGTH, pkcs8.length));
+
+        assertThrows(
+                GeneralSecurityException.class,
+                () -> new AppInstallationTokenProvider("https://api.github.com", "12345", pem, "octocat/Hello-World"));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenInvalidRepository_thenThrowIllegalArgumentException() {
+        var pem = pem("PRIVATE KEY", keyPair.getPrivate().getEncoded());
+
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new AppInstallationTokenProvider("https://api.github.com", "12345", pem, "Hello-World"));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new AppInstallationTokenProvider("https://api.github.com", () -> "Bearer jwt", "Hello-World"));
+        assertThrows(
+                NullPointerException.class,
+                () -> new AppInstallationTokenProvider("https://api.github.com", null, pem, "octocat/Hello-World"));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetEncodedAuthorization_thenRefreshFirstAndNearExpiry() throws Exception {
+        var now = Instant.parse("2022-01-01T00:00:00Z");
+        var clock = Mockito.mock(Clock.class);
+        var provider = spy(new AppInstallationTokenProvider(
+                "https://api.github.com", () -> "Bearer jwt", "octocat/Hello-World", clock));
+        var firstToken = mockToken("token-1", now.plus(Duration.ofHours(1)));
+        var secondToken = mockToken("token-2", now.plus(Duration.ofHours(2)));
+
+        when(clock.instant()).thenReturn(now.plus(Duration.ofMinutes(30)), now.plus(Duration.ofMinutes(56)));
+        doReturn(firstToken, secondToken).when(provider).createToken();
+
+        assertThat(provider.getEncodedAuthorization()).isEqualTo("token token-1");
+        assertThat(provider.getEncodedAuthorization()).isEqualTo("token token-1");
+        assertThat(provider.getEncodedAuthorization()).isEqualTo("token token-2");
+        verify(provider, times(2)).createToken();
+    }
+
+    /**
+     * Mocks an installation token.
+     * @param token the token.
+     * @param expiresAt the expiry of the token.
+     * @return the installation token.
+     * @throws Exception if an error occurs.
+     */
+    private static GHAppInstallationToken mockToken(String token, Instant expiresAt) throws Exception {
+        var installationToken = Mockito.mock(GHAppInstallationToken.class);
+        when(installationToken.getToken()).thenReturn(token);
+        when(installationToken.getExpiresAt()).thenReturn(Date.from(expiresAt));
+        return installationToken;
+    }
+
+    /**
+     * Encodes a key as PEM.
+     * @param type the PEM type.
+     * @param der the DER content.
+     * @return the PEM.
+     */
+    private static String pem(String type, byte[] der) {
+        return String.format(
+                "-----BEGIN %s-----%n%s%n-----END %s-----%n",
+                type, Base64.getMimeEncoder().encodeToString(der), type);
+    }
+}
@@ -0,0 +1,198 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Test class for {@link CommitGraph} class. <br>
+ * @author Julb.
+ */
+class CommitGraphTest {
+
+    /**
+     * The JSON mapper.
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenResolveCommitWithoutSteps_thenDoNotFetch() throws Exception {
+        var httpClient = new FakeHttpClient(Map.of());
+        var commitGraph = new CommitGraph(httpClient, "octocat/Hello-World");
+
+        assertThat(commitGraph.resolve("111111", "commit", List.of())).isEqualTo("111111");
+        assertThat(commitGraph.resolve("111111", null, List.of())).isEqualTo("111111");
+        assertThat(commitGraph.getRequests()).isZero();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenResolveAnnotatedTag_thenPeelToCommit() throws Exception {
+        var httpClient = new FakeHttpClient(Map.of("333333", """
+                {"__typename": "Tag", "oid": "333333",
+                  "target": {"__typename": "Commit", "oid": "444444", "parents": {"nodes": [{"oid": "555555"}]}}}
+                """));
+        var commitGraph = new CommitGraph(httpClient, "octocat/Hello-World");
+
+        assertThat(commitGraph.resolve("333333", "tag", List.of())).isEqualTo("444444");
+        assertThat(commitGraph.resolve("333333", "tag", RevisionExpression.parse("v1^{commit}").steps()))
+                .isEqualTo("444444");
+        assertThat(commitGraph.resolve("333333", "tag", RevisionExpression.parse("v1~1").steps()))
+                .isEqualTo("555555");
+        assertThat(commitGraph.getRequests()).isEqualTo(1);
+        assertThat(httpClient.variables.get(0))
+                .containsEntry("owner", "octocat")
+                .containsEntry("name", "Hello-World")
+                .containsEntry("expression", "333333");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenResolveAncestor_thenFetchGenerationsInSingleQuery() throws Exception {
+        var httpClient = new FakeHttpClient(Map.of("c0", """
+                {"__typename": "Commit", "oid": "c0", "parents": {"nodes": [{"oid": "c1"}, {"oid": "m1"}]},
+                  "firstParent": {"nodes": [{"oid": "c1", "parents": {"nodes": [{"oid": "c2"}]},
+                    "firstParent": {"nodes": [{"oid": "c2", "parents": {"nodes": [{"oid": "c3"}]}}]}}]}}
+                """));
+        var commitGraph = new CommitGraph(httpClient, "octocat/Hello-World");
+
+        assertThat(commitGraph.resolve("c0", null, RevisionExpression.parse("main~3").steps()))
+                .isEqualTo("c3");
+        assertThat(commitGraph.resolve("c0", null, RevisionExpression.parse("main^2").steps()))
+                .isEqualTo("m1");
+        assertThat(commitGraph.resolve("c0", null, RevisionExpression.parse("main^~1").steps()))
+                .isEqualTo("c2");
+        assertThat(commitGraph.getRequests()).isEqualTo(1);
+        assertThat(httpClient.queries.get(0)).contains("firstParent: parents(first: 1)");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenResolveMissingParent_thenThrowIllegalArgumentException() throws Exception {
+        var httpClient = new FakeHttpClient(Map.of("c0", """
+                {"__typename": "Commit", "oid": "c0", "parents": {"nodes": [{"oid": "c1"}]}}
+                """));
+        var commitGraph = new CommitGraph(httpClient, "octocat/Hello-World");
+
+        var steps = RevisionExpression.parse("main^2").steps();
+        assertThrows(IllegalArgumentException.class, () -> commitGraph.resolve("c0", null, steps));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenResolveTree_thenThrowIllegalArgumentException() throws Exception {
+        var httpClient = new FakeHttpClient(Map.of("333333", """
+                {"__typename": "Tag", "oid": "333333", "target": {"__typename": "Tree", "oid": "777777"}}
+                """, "777777", """
+                {"__typename": "Tree", "oid": "777777"}
+                """));
+        var commitGraph = new CommitGraph(httpClient, "octocat/Hello-World");
+
+        assertThrows(IllegalArgumentException.class, () -> commitGraph.resolve("333333", "tag", List.of()));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenResolveUnknownObject_thenThrowIOException() throws Exception {
+        var commitGraph = new CommitGraph(new FakeHttpClient(Map.of()), "octocat/Hello-World");
+
+        var steps = RevisionExpression.parse("main~1").steps();
+        assertThrows(IOException.class, () -> commitGraph.resolve("999999", null, steps));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenInvalidRepository_thenThrowIllegalArgumentException() throws Exception {
+        var httpClient = new FakeHttpClient(Map.of());
+
+        assertThrows(IllegalArgumentException.class, () -> new CommitGraph(httpClient, "unknown"));
+    }
+
+    /**
+     * A fake HTTP client answering GraphQL queries with the object matching the expression.
+     */
+    private static class FakeHttpClient extends GitHubHttpClient {
+
+        /**
+         * The objects answered, by expression.
+         */
+        private final Map<String, String> objects;
+
+        /**
+         * The queries received.
+         */
+        private final List<String> queries = new ArrayList<>();
+
+        /**
+         * The variables of the queries received.
+         */
+        private final List<Map<String, Object>> variables = new ArrayList<>();
+
+        /**
+         * Default constructor.
+         * @param objects the objects answered, by expression.
+         */
+        FakeHttpClient(Map<String, String> objects) {
+            super("https://api.github.com", () -> null);
+            this.objects = objects;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        JsonNode graphql(String query, Map<String, Object> queryVariables) throws IOException {
+            queries.add(query);
+            variables.add(queryVariables);
+            var object = objects.getOrDefault((String) queryVariables.get("expression"), "null");
+            return OBJECT_MAPPER.readTree(String.format("{\"repository\": {\"object\": %s}}", object));
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.kohsuke.github.GHRateLimit;
+import org.kohsuke.github.GitHub;
+import org.mockito.Mockito;
+
+/**
+ * Test class for {@link CredentialPool} class. <br>
+ * @author Julb.
+ */
+class CredentialPoolTest {
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenNextWithUnknownRateLimits_thenRoundRobin() {
+        var credential1 = credential("token-1", null, null);
+        var credential2 = credential("token-2", null, null);
+        var pool = new CredentialPool(List.of(credential1, credential2));
+
+        assertThat(pool.size()).isEqualTo(2);
+        assertThat(pool.next()).isSameAs(credential1);
+        assertThat(pool.next()).isSameAs(credential2);
+        assertThat(pool.next()).isSameAs(credential1);
+        assertThat(pool.summary()).contains("token-1: 2 operations", "token-2: 1 operations");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenNext_thenReturnMostRemaining() {
+        var credential1 = credential("token-1", 100, new Date(System.currentTimeMillis() + 60_000));
+        var credential2 = credential("token-2", 4000, new Date(System.currentTimeMillis() + 60_000));
+        var pool = new CredentialPool(List.of(credential1, credential2));
+
+        assertThat(pool.next()).isSameAs(credential2);
+        assertThat(pool.next()).isSameAs(credential2);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenNextWithUnknownRateLimit_thenProbeOnceThenPreferKnown() {
+        var credential1 = credential("token-1", 100, new Date(System.currentTimeMillis() + 60_000));
+        var credential2 = credential("token-2", null, null);
+        var pool = new CredentialPool(List.of(credential1, credential2));
+
+        assertThat(pool.next()).isSameAs(credential2);
+        assertThat(pool.next()).isSameAs(credential1);
+        assertThat(pool.next()).isSameAs(credential1);
+        assertThat(pool.summary()).contains("token-1: 2 operations", "token-2: 1 operations, unknown remaining");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenNextWithDefaultRateLimit_thenTreatAsUnknown() {
+        var credential1 = credential("token-1", 100, new Date(System.currentTimeMillis() + 60_000));
+        var credential2 = credential("token-2", null, null);
+        var rateLimit = Mockito.mock(GHRateLimit.class);
+        when(rateLimit.getCore()).thenReturn(Mockito.mock(GHRateLimit.UnknownLimitRecord.class));
+        when(credential2.ghApi().lastRateLimit()).thenReturn(rateLimit);
+        var pool = new CredentialPool(List.of(credential1, credential2));
+
+        assertThat(pool.next()).isSameAs(credential2);
+        assertThat(pool.next()).isSameAs(credential1);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenNextKnownExhaustedAndUnknownProbed_thenReturnUnknown() {
+        var credential1 = credential("token-1", 0, new Date(System.currentTimeMillis() + 60_000));
+        var credential2 = credential("token-2", null, null);
+        var pool = new CredentialPool(List.of(credential1, credential2));
+
+        assertThat(pool.next()).isSameAs(credential2);
+        assertThat(pool.next()).isSameAs(credential2);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenNextAllExhausted_thenReturnFirstReset() {
+        var credential1 = credential("token-1", 0, new Date(System.currentTimeMillis() + 120_000));
+        var credential2 = credential("token-2", 0, new Date(System.currentTimeMillis() + 60_000));
+        var pool = new CredentialPool(List.of(credential1, credential2));
+
+        assertThat(pool.next()).isSameAs(credential2);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenNextExhaustedAndReset_thenReturnIt() {
+        var credential1 = credential("token-1", 0, new Date(System.currentTimeMillis() - 1000));
+        var credential2 = credential("token-2", 0, new Date(System.currentTimeMillis() + 60_000));
+        var pool = new CredentialPool(List.of(credential1, credential2));
+
+        assertThat(pool.next()).isSameAs(credential1);
+        assertThat(pool.next()).isSameAs(credential1);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenNoCredential_thenThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> new CredentialPool(List.of()));
+        assertThrows(NullPointerException.class, () -> new CredentialPool(null));
+    }
+
+    /**
+     * Creates a credential.
+     * @param name the name.
+     * @param remaining the remaining requests, or <code>null</code> if not known.
+     * @param reset the reset date.
+     * @return the credential.
+     */
+    private static CredentialPool.Credential credential(String name, Integer remaining, Date reset) {
+        var ghApi = Mockito.mock(GitHub.class);
+        if (remaining != null) {
+            var rateLimit = Mockito.mock(GHRateLimit.class);
+            var record = Mockito.mock(GHRateLimit.Record.class);
+            Mockito.lenient().when(record.getRemaining()).thenReturn(remaining);
+            Mockito.lenient().when(record.getResetDate()).thenReturn(reset);
+            when(rateLimit.getCore()).thenReturn(record);
+            when(ghApi.lastRateLimit()).thenReturn(rateLimit);
+        }
+        return new CredentialPool.Credential(
+                name, ghApi, () -> "token " + name, Mockito.mock(GitHubHttpClient.class));
+    }
+}
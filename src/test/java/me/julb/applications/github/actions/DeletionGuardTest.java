@@ -0,0 +1,234 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Test class for {@link DeletionGuard} class. <br>
+ * @author Julb.
+ */
+class DeletionGuardTest {
+
+    /**
+     * The JSON mapper.
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenFindReason_thenKeepBranchesInUse() {
+        var deletionGuard = new DeletionGuard("main", Set.of("feature/open"), List.of("release/*"));
+
+        assertThat(deletionGuard.findReason("main")).contains("default branch");
+        assertThat(deletionGuard.findReason("feature/open")).contains("head of an open pull request");
+        assertThat(deletionGuard.findReason("release/1.0")).contains("protected by rule release/*");
+        assertThat(deletionGuard.findReason("release/1.0/hotfix")).isEmpty();
+        assertThat(deletionGuard.findReason("feature/merged")).isEmpty();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenFindReasonCharacterClassRule_thenKeepMatchingBranches() {
+        var deletionGuard = new DeletionGuard("main", Set.of(), List.of("release/[0-9]*"));
+
+        assertThat(deletionGuard.findReason("release/1.0")).contains("protected by rule release/[0-9]*");
+        assertThat(deletionGuard.findReason("release/next")).isEmpty();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenFindReasonUnparsableRule_thenKeepAllBranches() {
+        var deletionGuard = new DeletionGuard("main", Set.of(), List.of("release/*", "release/[0-9"));
+
+        assertThat(deletionGuard.findReason("release/1.0")).contains("protected by rule release/*");
+        assertThat(deletionGuard.findReason("feature/merged"))
+                .contains("protected by rule release/[0-9, which cannot be parsed");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenLoad_thenPageOnlyConnectionsWithMorePages() throws Exception {
+        var httpClient = new FakeHttpClient();
+        httpClient.respond("""
+                {"repository": {"nameWithOwner": "octocat/Hello-World", "defaultBranchRef": {"name": "main"},
+                  "pullRequests": {"pageInfo": {"hasNextPage": true, "endCursor": "PR_1"}, "nodes": [
+                    {"headRefName": "feature/a", "headRepository": {"nameWithOwner": "octocat/Hello-World"}},
+                    {"headRefName": "feature/fork", "headRepository": {"nameWithOwner": "someone/Hello-World"}},
+                    {"headRefName": "feature/deleted-fork", "headRepository": null}]},
+                  "branchProtectionRules": {"pageInfo": {"hasNextPage": false, "endCursor": "RULE_1"}, "nodes": [
+                    {"pattern": "release/**"}]}}}
+                """);
+        httpClient.respond("""
+                {"repository": {"nameWithOwner": "octocat/Hello-World", "defaultBranchRef": {"name": "main"},
+                  "pullRequests": {"pageInfo": {"hasNextPage": false, "endCursor": "PR_2"}, "nodes": [
+                    {"headRefName": "feature/b", "headRepository": {"nameWithOwner": "Octocat/Hello-World"}}]}}}
+                """);
+
+        var deletionGuard = DeletionGuard.load(httpClient, "octocat/Hello-World");
+
+        assertThat(httpClient.variables).hasSize(2);
+        assertThat(httpClient.variables.get(0))
+                .containsEntry("withPullRequests", true)
+                .containsEntry("withRules", true);
+        assertThat(httpClient.variables.get(1))
+                .containsEntry("pullRequestsCursor", "PR_1")
+                .containsEntry("withPullRequests", true)
+                .containsEntry("withRules", false);
+        assertThat(deletionGuard.findReason("main")).isPresent();
+        assertThat(deletionGuard.findReason("feature/a")).isPresent();
+        assertThat(deletionGuard.findReason("feature/b")).isPresent();
+        assertThat(deletionGuard.findReason("feature/fork")).isEmpty();
+        assertThat(deletionGuard.findReason("feature/deleted-fork")).isEmpty();
+        assertThat(deletionGuard.findReason("release/1.0/hotfix")).isPresent();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenLoadBranch_thenReadOnlyPullRequestsWithBranchHead() throws Exception {
+        var httpClient = new FakeHttpClient();
+        httpClient.respond("""
+                {"repository": {"nameWithOwner": "octocat/Hello-World", "defaultBranchRef": {"name": "main"},
+                  "ref": {"branchProtectionRule": null},
+                  "pullRequests": {"pageInfo": {"hasNextPage": true, "endCursor": "PR_1"}, "nodes": [
+                    {"headRepository": {"nameWithOwner": "someone/Hello-World"}}]}}}
+                """);
+        httpClient.respond("""
+                {"repository": {"nameWithOwner": "octocat/Hello-World", "defaultBranchRef": {"name": "main"},
+                  "ref": {"branchProtectionRule": null},
+                  "pullRequests": {"pageInfo": {"hasNextPage": true, "endCursor": "PR_2"}, "nodes": [
+                    {"headRepository": {"nameWithOwner": "Octocat/Hello-World"}}]}}}
+                """);
+
+        var deletionGuard = DeletionGuard.load(httpClient, "octocat/Hello-World", "feature/a");
+
+        assertThat(httpClient.variables).hasSize(2);
+        assertThat(httpClient.variables.get(0))
+                .containsEntry("branch", "feature/a")
+                .containsEntry("qualifiedName", "refs/heads/feature/a");
+        assertThat(httpClient.variables.get(1)).containsEntry("pullRequestsCursor", "PR_1");
+        assertThat(deletionGuard.findReason("feature/a")).contains("head of an open pull request");
+        assertThat(deletionGuard.findReason("main")).contains("default branch");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenLoadProtectedBranch_thenKeepBranch() throws Exception {
+        var httpClient = new FakeHttpClient();
+        httpClient.respond("""
+                {"repository": {"nameWithOwner": "octocat/Hello-World", "defaultBranchRef": {"name": "main"},
+                  "ref": {"branchProtectionRule": {"pattern": "release/**"}},
+                  "pullRequests": {"pageInfo": {"hasNextPage": false, "endCursor": null}, "nodes": []}}}
+                """);
+        httpClient.respond("""
+                {"repository": {"nameWithOwner": "octocat/Hello-World", "defaultBranchRef": {"name": "main"},
+                  "ref": null,
+                  "pullRequests": {"pageInfo": {"hasNextPage": false, "endCursor": null}, "nodes": []}}}
+                """);
+
+        assertThat(DeletionGuard.load(httpClient, "octocat/Hello-World", "release/1.0").findReason("release/1.0"))
+                .contains("protected by rule release/**");
+        assertThat(DeletionGuard.load(httpClient, "octocat/Hello-World", "feature/b").findReason("feature/b"))
+                .isEmpty();
+        assertThat(httpClient.variables).hasSize(2);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenLoadUnknownRepository_thenFail() throws Exception {
+        var httpClient = new FakeHttpClient();
+        httpClient.respond("{\"repository\": null}");
+
+        assertThrows(IOException.class, () -> DeletionGuard.load(httpClient, "octocat/unknown"));
+    }
+
+    /**
+     * A fake HTTP client answering GraphQL queries with scripted responses.
+     */
+    private static class FakeHttpClient extends GitHubHttpClient {
+
+        /**
+         * The scripted data.
+         */
+        private final Deque<String> data = new ArrayDeque<>();
+
+        /**
+         * The variables of the queries received.
+         */
+        private final List<Map<String, Object>> variables = new ArrayList<>();
+
+        /**
+         * Default constructor.
+         */
+        FakeHttpClient() {
+            super("https://api.github.com", () -> null);
+        }
+
+        /**
+         * Scripts the data of the next response.
+         * @param json the data.
+         */
+        void respond(String json) {
+            data.add(json);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        JsonNode graphql(String query, Map<String, Object> queryVariables) throws IOException {
+            variables.add(new HashMap<>(queryVariables));
+            return OBJECT_MAPPER.readTree(data.remove());
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test class for {@link EventPayloadRefs} class. <br>
+ * @author Julb.
+ */
+class EventPayloadRefsTest {
+
+    /**
+     * A temporary directory.
+     */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenReadPushEvent_thenResolvePushedRef() throws Exception {
+        var path = write("{\"ref\":\"refs/heads/main\",\"before\":\"111111\",\"after\":\"222222\","
+                + "\"commits\":[{\"id\":\"222222\",\"message\":\"ref: refs/heads/other\"}],"
+                + "\"repository\":{\"full_name\":\"octocat/Hello-World\",\"owner\":{\"login\":\"octocat\"}}}");
+
+        var refs = EventPayloadRefs.read(path);
+
+        assertThat(refs.resolveSha("octocat/hello-world", "main")).contains("222222");
+        assertThat(refs.resolveSha("octocat/Hello-World", "refs/heads/main")).contains("222222");
+        assertThat(refs.resolveSha("octocat/Hello-World", "222222")).contains("222222");
+        assertThat(refs.resolve("octocat/Hello-World", "main"))
+                .contains(new RefEntry("refs/heads/main", "222222", "commit"));
+        assertThat(refs.resolve("octocat/Hello-World", "222222")).contains(new RefEntry("222222", "222222", "commit"));
+        assertThat(refs.resolveSha("octocat/Hello-World", "111111")).isEmpty();
+        assertThat(refs.resolveSha("octocat/Hello-World", "other")).isEmpty();
+        assertThat(refs.resolveSha("octocat/Spoon-Knife", "main")).isEmpty();
+        assertThat(refs.findRef("octocat/Hello-World", "refs/heads/MAIN")).contains("refs/heads/main");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenReadTagPushEvent_thenDoNotShadowBranch() throws Exception {
+        var path = write("{\"ref\":\"refs/tags/1.0.0\",\"after\":\"333333\",\"base_ref\":\"refs/heads/main\","
+                + "\"repository\":{\"full_name\":\"octocat/Hello-World\"}}");
+
+        var refs = EventPayloadRefs.read(path);
+
+        // A branch 1.0.0 would be listed before the tag.
+        assertThat(refs.resolveSha("octocat/Hello-World", "1.0.0")).isEmpty();
+        assertThat(refs.resolveSha("octocat/Hello-World", "refs/tags/1.0.0")).isEmpty();
+        assertThat(refs.resolveSha("octocat/Hello-World", "333333")).contains("333333");
+        assertThat(refs.resolve("octocat/Hello-World", "333333")).contains(new RefEntry("333333", "333333", null));
+        assertThat(refs.findRef("octocat/Hello-World", "refs/heads/main")).isEmpty();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenReadDeleteEvent_thenRefUnknown() throws Exception {
+        var path = write("{\"ref\":\"refs/heads/feature\",\"after\":\"0000000000000000000000000000000000000000\","
+                + "\"repository\":{\"full_name\":\"octocat/Hello-World\"}}");
+
+        var refs = EventPayloadRefs.read(path);
+
+        assertThat(refs.resolveSha("octocat/Hello-World", "feature")).isEmpty();
+        assertThat(refs.findRef("octocat/Hello-World", "refs/heads/feature")).isEmpty();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenReadPullRequestEvent_thenResolveHeadRef() throws Exception {
+        var path = write("{\"action\":\"opened\",\"pull_request\":{\"number\":1,"
+                + "\"head\":{\"ref\":\"feature\",\"sha\":\"444444\",\"repo\":{\"full_name\":\"octocat/Hello-World\"}},"
+                + "\"base\":{\"ref\":\"main\",\"sha\":\"555555\",\"repo\":{\"full_name\":\"octocat/Hello-World\"}}},"
+                + "\"repository\":{\"full_name\":\"octocat/Hello-World\"}}");
+
+        var refs = EventPayloadRefs.read(path);
+
+        assertThat(refs.resolveSha("octocat/Hello-World", "feature")).contains("444444");
+        assertThat(refs.resolveSha("octocat/Hello-World", "main")).isEmpty();
+        assertThat(refs.findRef("octocat/Hello-World", "refs/heads/feature")).contains("refs/heads/feature");
+        assertThat(refs.findRef("octocat/Hello-World", "refs/heads/main")).contains("refs/heads/main");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenReadPullRequestEventFromFork_thenOnlyResolveHeadSha() throws Exception {
+        var path = write("{\"pull_request\":{"
+                + "\"head\":{\"ref\":\"feature\",\"sha\":\"444444\",\"repo\":{\"full_name\":\"fork/Hello-World\"}},"
+                + "\"base\":{\"ref\":\"main\",\"sha\":\"555555\"}},"
+                + "\"repository\":{\"full_name\":\"octocat/Hello-World\"}}");
+
+        var refs = EventPayloadRefs.read(path);
+
+        assertThat(refs.resolveSha("octocat/Hello-World", "feature")).isEmpty();
+        assertThat(refs.resolveSha("octocat/Hello-World", "444444")).contains("444444");
+        assertThat(refs.resolve("octocat/Hello-World", "444444")).contains(new RefEntry("444444", "444444", "commit"));
+        assertThat(refs.findRef("octocat/Hello-World", "refs/heads/feature")).isEmpty();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenEmpty_thenResolveNothing() {
+        var refs = EventPayloadRefs.empty();
+
+        assertThat(refs.resolveSha("octocat/Hello-World", "main")).isEmpty();
+        assertThat(refs.findRef("octocat/Hello-World", "refs/heads/main")).isEmpty();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenNull_thenThrowNullPointerException() {
+        var refs = EventPayloadRefs.empty();
+
+        assertThrows(NullPointerException.class, () -> EventPayloadRefs.read(null));
+        assertThrows(NullPointerException.class, () -> refs.resolveSha("octocat/Hello-World", null));
+        assertThrows(NullPointerException.class, () -> refs.findRef("octocat/Hello-World", null));
+    }
+
+    /**
+     * Writes the payload to a file.
+     * @param payload the payload.
+     * @return the path to the file.
+     * @throws Exception if an error occurs.
+     */
+    private Path write(String payload) throws Exception {
+        var path = tempDir.resolve("event.json");
+        Files.writeString(path, payload);
+        return path;
+    }
+}
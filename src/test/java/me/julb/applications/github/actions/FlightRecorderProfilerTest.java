@@ -0,0 +1,120 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test class for {@link FlightRecorderProfiler} class. <br>
+ * @author Julb.
+ */
+class FlightRecorderProfilerTest {
+
+    /**
+     * A temporary directory.
+     */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenStop_thenWriteRecordingAndReport() throws Exception {
+        try (var profiler = FlightRecorderProfiler.start()) {
+            var builder = new StringBuilder();
+            for (int i = 0; i < 100_000; i++) {
+                builder.append(i);
+            }
+            assertThat(builder).isNotEmpty();
+
+            var recordingPath = profiler.stop(tempDir);
+
+            assertThat(recordingPath).exists().hasExtension("jfr");
+            var report = Files.readString(FlightRecorderProfiler.reportPath(recordingPath));
+            assertThat(report)
+                    .contains("allocation sites (sampled bytes):")
+                    .contains("socket reads:")
+                    .contains("gc pauses:")
+                    .contains("classes loaded:")
+                    .contains("cpu samples (top frames):");
+        }
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenStartedAtLaunch_thenTakeOverRecording() throws Exception {
+        FlightRecorderProfiler.startAtLaunch(" true ");
+        Thread.sleep(50);
+        var startedAfterLaunch = Instant.now();
+
+        try (var profiler = FlightRecorderProfiler.start()) {
+            assertThat(profiler.getStartTime()).isBefore(startedAfterLaunch);
+        }
+        try (var profiler = FlightRecorderProfiler.start()) {
+            assertThat(profiler.getStartTime()).isAfterOrEqualTo(startedAfterLaunch);
+        }
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenNotRequestedAtLaunch_thenDoNotStart() throws Exception {
+        FlightRecorderProfiler.startAtLaunch(null);
+        FlightRecorderProfiler.startAtLaunch("false");
+        var startedAfterLaunch = Instant.now();
+
+        try (var profiler = FlightRecorderProfiler.start()) {
+            assertThat(profiler.getStartTime()).isAfterOrEqualTo(startedAfterLaunch);
+        }
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenReportPath_thenReplaceExtension() {
+        assertThat(FlightRecorderProfiler.reportPath(Path.of("/tmp/profile.jfr"))).isEqualTo(Path.of("/tmp/profile.txt"));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenNull_thenThrowNullPointerException() {
+        assertThrows(NullPointerException.class, () -> FlightRecorderProfiler.reportPath(null));
+        assertThrows(NullPointerException.class, () -> FlightRecorderProfiler.report(null));
+    }
+}
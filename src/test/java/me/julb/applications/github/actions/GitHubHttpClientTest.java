@@ -0,0 +1,201 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.kohsuke.github.HttpException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Test class for {@link GitHubHttpClient} class. <br>
+ * @author Julb.
+ */
+class GitHubHttpClientTest {
+
+    /**
+     * The responses to send, in order.
+     */
+    private final Deque<Reply> replies = new ConcurrentLinkedDeque<>();
+
+    /**
+     * The number of requests received.
+     */
+    private final AtomicInteger requests = new AtomicInteger();
+
+    /**
+     * The delays slept before retrying.
+     */
+    private final List<Duration> delays = new ArrayList<>();
+
+    /**
+     * The server.
+     */
+    private HttpServer server;
+
+    /**
+     * The client under test.
+     */
+    private GitHubHttpClient httpClient;
+
+    /**
+     * A response to send.
+     * @param status the HTTP status.
+     * @param headers the headers.
+     * @param body the body.
+     */
+    private record Reply(int status, Map<String, String> headers, String body) {}
+
+    /**
+     * Starts the server.
+     * @throws IOException if an error occurs.
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::reply);
+        server.start();
+
+        var apiUrl = String.format("http://127.0.0.1:%d", server.getAddress().getPort());
+        httpClient = new GitHubHttpClient(apiUrl, () -> "token 123") {
+            @Override
+            void sleep(Duration delay) {
+                delays.add(delay);
+            }
+        };
+    }
+
+    /**
+     * Stops the server.
+     */
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenSecondaryRateLimit_thenRetryAfterDelay() throws Exception {
+        replies.add(new Reply(429, Map.of("Retry-After", "7"), "{}"));
+        replies.add(new Reply(200, Map.of(), "{\"ref\":\"refs/heads/main\"}"));
+
+        var response = httpClient.get("/repos/octocat/Hello-World/git/ref/heads/main", null);
+
+        assertThat(response.body().path("ref").asText()).isEqualTo("refs/heads/main");
+        assertThat(requests.get()).isEqualTo(2);
+        assertThat(delays).containsExactly(Duration.ofSeconds(7));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenPrimaryRateLimitExhausted_thenRetryAfterReset() throws Exception {
+        replies.add(new Reply(
+                403,
+                Map.of("X-RateLimit-Remaining", "0", "X-RateLimit-Reset", "0", "X-RateLimit-Resource", "core"),
+                "{}"));
+        replies.add(new Reply(200, Map.of("X-RateLimit-Remaining", "4999", "X-RateLimit-Resource", "core"), "{}"));
+
+        httpClient.get("/repos/octocat/Hello-World", null);
+
+        assertThat(requests.get()).isEqualTo(2);
+        assertThat(delays).containsExactly(Duration.ZERO);
+        assertThat(httpClient.getRemainingRateLimit("core")).isEqualTo(4999);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenServerErrorOnRead_thenRetryBoundedTimes() {
+        for (int i = 0; i < GitHubHttpClient.MAX_ATTEMPTS; i++) {
+            replies.add(new Reply(502, Map.of(), ""));
+        }
+
+        assertThrows(HttpException.class, () -> httpClient.get("/repos/octocat/Hello-World", null));
+        assertThat(requests.get()).isEqualTo(GitHubHttpClient.MAX_ATTEMPTS);
+        assertThat(delays).containsExactly(Duration.ofSeconds(1), Duration.ofSeconds(2));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenServerErrorOnWrite_thenDoNotRetry() {
+        replies.add(new Reply(502, Map.of(), ""));
+
+        assertThrows(
+                HttpException.class,
+                () -> httpClient.send("POST", "/repos/octocat/Hello-World/git/refs", Map.of("ref", "refs/heads/a")));
+        assertThat(requests.get()).isEqualTo(1);
+        assertThat(delays).isEmpty();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGraphQLEmptyResponse_thenThrowIOException() {
+        replies.add(new Reply(200, Map.of(), ""));
+
+        var e = assertThrows(IOException.class, () -> httpClient.graphql("query { viewer { login } }", Map.of()));
+        assertThat(e.getMessage()).contains("empty response");
+    }
+
+    /**
+     * Sends the next response.
+     * @param exchange the exchange.
+     * @throws IOException if an error occurs.
+     */
+    private void reply(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        exchange.getRequestBody().readAllBytes();
+        var reply = replies.poll();
+        var body = reply.body().getBytes(StandardCharsets.UTF_8);
+        reply.headers().forEach((name, value) -> exchange.getResponseHeaders().add(name, value));
+        exchange.sendResponseHeaders(reply.status(), body.length == 0 ? -1 : body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+}
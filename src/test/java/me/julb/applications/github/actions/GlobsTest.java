@@ -0,0 +1,114 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link Globs} class. <br>
+ * @author Julb.
+ */
+class GlobsTest {
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenIsGlob_thenDetectWildcards() {
+        assertThat(Globs.isGlob("octocat/*")).isTrue();
+        assertThat(Globs.isGlob("octocat/repo-?")).isTrue();
+        assertThat(Globs.isGlob("octocat/repo-[12]")).isTrue();
+        assertThat(Globs.isGlob("octocat/Hello-World")).isFalse();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenToPatternSingleStar_thenDoNotCrossSlash() {
+        var pattern = Globs.toPattern("release/*", false);
+
+        assertThat(pattern.matcher("release/1.0").matches()).isTrue();
+        assertThat(pattern.matcher("release/1.0/hotfix").matches()).isFalse();
+        assertThat(pattern.matcher("Release/1.0").matches()).isFalse();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenToPatternDoubleStar_thenCrossSlash() {
+        var pattern = Globs.toPattern("release/**", false);
+
+        assertThat(pattern.matcher("release/1.0").matches()).isTrue();
+        assertThat(pattern.matcher("release/1.0/hotfix").matches()).isTrue();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenToPatternCaseInsensitive_thenIgnoreCase() {
+        var pattern = Globs.toPattern("octocat/hello-?orld.*", true);
+
+        assertThat(pattern.matcher("OctoCat/Hello-World.js").matches()).isTrue();
+        assertThat(pattern.matcher("octocat/hello-worldxjs").matches()).isFalse();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenToPatternCharacterClass_thenMatchMembersOnly() {
+        var pattern = Globs.toPattern("release/v[0-9].[!x]", false);
+
+        assertThat(pattern.matcher("release/v1.0").matches()).isTrue();
+        assertThat(pattern.matcher("release/vx.0").matches()).isFalse();
+        assertThat(pattern.matcher("release/v1.x").matches()).isFalse();
+        assertThat(pattern.matcher("release/v1./").matches()).isFalse();
+        assertThat(Globs.toPattern("[]a]", false).matcher("]").matches()).isTrue();
+        assertThat(Globs.toPattern("[^&]", false).matcher("&").matches()).isFalse();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenToPatternCharacterClassNotClosed_thenThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> Globs.toPattern("release/[0-9", false));
+        assertThrows(IllegalArgumentException.class, () -> Globs.toPattern("release/[z-a]", false));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGlobNull_thenThrowNullPointerException() {
+        assertThrows(NullPointerException.class, () -> Globs.isGlob(null));
+        assertThrows(NullPointerException.class, () -> Globs.toPattern(null, false));
+    }
+}
@@ -0,0 +1,296 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Test class for {@link GraphQLRefClient} class. <br>
+ * @author Julb.
+ */
+class GraphQLRefClientTest {
+
+    /**
+     * The JSON mapper.
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenReadBranchAndFromBranch_thenSingleQuery() throws Exception {
+        var httpClient = new FakeHttpClient("""
+                {"repository": {"id": "R_1", "nameWithOwner": "octocat/Hello-World",
+                  "branch": {"id": "REF_1", "prefix": "refs/heads/", "name": "feature",
+                    "target": {"__typename": "Commit", "oid": "111111"}},
+                  "fromBranch": {"id": "REF_2", "prefix": "refs/heads/", "name": "main",
+                    "target": {"__typename": "Commit", "oid": "222222"}},
+                  "fromTag": null, "fromRef": null, "fromObject": null}}
+                """);
+        var client = new GraphQLRefClient(httpClient);
+
+        var snapshot = client.read("octocat/Hello-World", "refs/heads/feature", "main");
+
+        assertThat(httpClient.variables).hasSize(1);
+        assertThat(httpClient.variables.get(0))
+                .containsEntry("owner", "octocat")
+                .containsEntry("name", "Hello-World")
+                .containsEntry("branch", "refs/heads/feature")
+                .containsEntry("fromBranch", "refs/heads/main")
+                .containsEntry("fromTag", "refs/tags/main");
+        assertThat(snapshot.repositoryId()).isEqualTo("R_1");
+        assertThat(snapshot.branchId()).isEqualTo("REF_1");
+        assertThat(snapshot.findBranch()).contains(new RefEntry("refs/heads/feature", "111111", "commit"));
+        assertThat(snapshot.findSource()).contains(new RefEntry("refs/heads/main", "222222", "commit"));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenReadNamesWithOtherCase_thenMatchFirstRefRegardlessOfCase() throws Exception {
+        var httpClient = new FakeHttpClient("""
+                {"repository": {"id": "R_1", "nameWithOwner": "octocat/Hello-World", "branch": null,
+                  "branchMatches": {"nodes": [
+                    {"id": "REF_0", "prefix": "refs/heads/", "name": "Feature-2",
+                      "target": {"__typename": "Commit", "oid": "000000"}},
+                    {"id": "REF_1", "prefix": "refs/heads/", "name": "Feature",
+                      "target": {"__typename": "Commit", "oid": "111111"}}]},
+                  "fromBranch": null, "fromBranchMatches": {"nodes": []},
+                  "fromTag": null, "fromTagMatches": {"nodes": [
+                    {"id": "REF_2", "prefix": "refs/tags/", "name": "V1.0.0",
+                      "target": {"__typename": "Commit", "oid": "222222"}}]},
+                  "fromRef": null, "fromObject": null}}
+                """);
+        var client = new GraphQLRefClient(httpClient);
+
+        var snapshot = client.read("octocat/Hello-World", "refs/heads/feature", "v1.0.0");
+
+        assertThat(httpClient.variables.get(0))
+                .containsEntry("branchName", "feature")
+                .containsEntry("from", "v1.0.0");
+        assertThat(snapshot.branchId()).isEqualTo("REF_1");
+        assertThat(snapshot.findBranch()).contains(new RefEntry("refs/heads/Feature", "111111", "commit"));
+        assertThat(snapshot.findSource()).contains(new RefEntry("refs/tags/V1.0.0", "222222", "commit"));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenReadBranchOnly_thenDoNotResolveSource() throws Exception {
+        var httpClient = new FakeHttpClient("""
+                {"repository": {"id": "R_1", "nameWithOwner": "octocat/Hello-World", "branch": null,
+                  "branchMatches": {"nodes": []}}}
+                """);
+        var client = new GraphQLRefClient(httpClient);
+
+        var snapshot = client.read("octocat/Hello-World", "refs/heads/feature", null);
+
+        assertThat(httpClient.queries.get(0)).doesNotContain("$from");
+        assertThat(httpClient.variables.get(0)).doesNotContainKey("from");
+        assertThat(snapshot.repositoryId()).isEqualTo("R_1");
+        assertThat(snapshot.findBranch()).isEmpty();
+        assertThat(snapshot.findSource()).isEmpty();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenReadFromAnnotatedTag_thenPeelToCommit() throws Exception {
+        var httpClient = new FakeHttpClient("""
+                {"repository": {"id": "R_1", "nameWithOwner": "octocat/Hello-World", "branch": null,
+                  "fromBranch": null,
+                  "fromTag": {"id": "REF_2", "prefix": "refs/tags/", "name": "v1.0.0",
+                    "target": {"__typename": "Tag", "oid": "333333",
+                      "target": {"__typename": "Commit", "oid": "444444"}}},
+                  "fromRef": null, "fromObject": null}}
+                """);
+        var client = new GraphQLRefClient(httpClient);
+
+        var snapshot = client.read("octocat/Hello-World", "refs/heads/feature", "v1.0.0");
+
+        assertThat(snapshot.findBranch()).isEmpty();
+        assertThat(snapshot.branchId()).isNull();
+        assertThat(snapshot.findSource()).contains(new RefEntry("refs/tags/v1.0.0", "444444", "commit"));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenReadFromSha_thenResolveObject() throws Exception {
+        var httpClient = new FakeHttpClient("""
+                {"repository": {"id": "R_1", "nameWithOwner": "octocat/Hello-World", "branch": null,
+                  "fromBranch": null, "fromTag": null, "fromRef": null,
+                  "fromObject": {"__typename": "Commit", "oid": "5555555555"}}}
+                """);
+        var client = new GraphQLRefClient(httpClient);
+
+        var snapshot = client.read("octocat/Hello-World", "refs/heads/feature", "55555");
+
+        assertThat(snapshot.findSource()).contains(new RefEntry("55555", "5555555555", "commit"));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenReadUnknownFrom_thenReturnEmpty() throws Exception {
+        var httpClient = new FakeHttpClient("""
+                {"repository": {"id": "R_1", "nameWithOwner": "octocat/Hello-World", "branch": null,
+                  "fromBranch": null, "fromTag": null, "fromRef": null, "fromObject": null}}
+                """);
+        var client = new GraphQLRefClient(httpClient);
+
+        var snapshot = client.read("octocat/Hello-World", "refs/heads/feature", "unknown");
+
+        assertThat(snapshot.findSource()).isEmpty();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenReadUnknownRepository_thenFail() throws Exception {
+        var client = new GraphQLRefClient(new FakeHttpClient("""
+                {"repository": null}
+                """));
+
+        assertThrows(IOException.class, () -> client.read("octocat/unknown", "refs/heads/feature", "main"));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenReadInvalidRepository_thenFail() throws Exception {
+        var client = new GraphQLRefClient(new FakeHttpClient("{}"));
+
+        assertThrows(IllegalArgumentException.class, () -> client.read("unknown", "refs/heads/feature", "main"));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenUpdateRef_thenReturnUpdatedRef() throws Exception {
+        var httpClient = new FakeHttpClient("""
+                {"updateRef": {"ref": {"id": "REF_1", "prefix": "refs/heads/", "name": "feature",
+                  "target": {"__typename": "Commit", "oid": "666666"}}}}
+                """);
+        var client = new GraphQLRefClient(httpClient);
+
+        var ref = client.updateRef("REF_1", "666666", false);
+
+        assertThat(ref).isEqualTo(new RefEntry("refs/heads/feature", "666666", "commit"));
+        assertThat(httpClient.variables.get(0))
+                .containsEntry("refId", "REF_1")
+                .containsEntry("oid", "666666")
+                .containsEntry("force", false);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenListRefs_thenListAllPages() throws Exception {
+        var httpClient = new FakeHttpClient(
+                """
+                {"repository": {"refs": {"pageInfo": {"hasNextPage": true, "endCursor": "C_1"}, "nodes": [
+                  {"id": "REF_1", "prefix": "refs/heads/", "name": "main",
+                    "target": {"__typename": "Commit", "oid": "111111"}}]}}}
+                """,
+                """
+                {"repository": {"refs": {"pageInfo": {"hasNextPage": false, "endCursor": "C_2"}, "nodes": [
+                  {"id": "REF_2", "prefix": "refs/heads/", "name": "release/1.0",
+                    "target": {"__typename": "Commit", "oid": "222222"}}]}}}
+                """);
+        var client = new GraphQLRefClient(httpClient);
+
+        var refs = client.listRefs("octocat/Hello-World", "refs/heads/");
+
+        assertThat(refs)
+                .containsExactly(
+                        new GraphQLRefClient.ListedRef("REF_1", new RefEntry("refs/heads/main", "111111", "commit")),
+                        new GraphQLRefClient.ListedRef(
+                                "REF_2", new RefEntry("refs/heads/release/1.0", "222222", "commit")));
+        assertThat(httpClient.variables).hasSize(2);
+        assertThat(httpClient.variables.get(0)).containsEntry("prefix", "refs/heads/").containsEntry("after", null);
+        assertThat(httpClient.variables.get(1)).containsEntry("after", "C_1");
+    }
+
+    /**
+     * A fake HTTP client answering GraphQL queries with fixed responses.
+     */
+    private static class FakeHttpClient extends GitHubHttpClient {
+
+        /**
+         * The data answered, in order, the last one being answered to the next queries.
+         */
+        private final String[] data;
+
+        /**
+         * The queries received.
+         */
+        private final List<String> queries = new ArrayList<>();
+
+        /**
+         * The variables of the queries received.
+         */
+        private final List<Map<String, Object>> variables = new ArrayList<>();
+
+        /**
+         * Default constructor.
+         * @param data the data answered, in order.
+         */
+        FakeHttpClient(String... data) {
+            super("https://api.github.com", () -> null);
+            this.data = data;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        JsonNode graphql(String query, Map<String, Object> queryVariables) throws IOException {
+            queries.add(query);
+            variables.add(queryVariables);
+            return OBJECT_MAPPER.readTree(data[Math.min(queries.size(), data.length) - 1]);
+        }
+    }
+}
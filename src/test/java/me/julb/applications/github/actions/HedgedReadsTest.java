@@ -0,0 +1,178 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link HedgedReads} class. <br>
+ * @author Julb.
+ */
+class HedgedReadsTest {
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenDisabled_thenCallOnce() throws Exception {
+        var calls = new AtomicInteger();
+        var hedgedReads = HedgedReads.disabled();
+
+        assertThat(hedgedReads.isEnabled()).isFalse();
+        assertThat(hedgedReads.call(HedgedReads.REF, 1, () -> calls.incrementAndGet())).isEqualTo(1);
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenReadFast_thenDoNotHedge() throws Exception {
+        var calls = new AtomicInteger();
+        var hedgedReads = new HedgedReads(true, 95, 5000, () -> 5000);
+
+        assertThat(hedgedReads.call(HedgedReads.REF, 1, () -> calls.incrementAndGet())).isEqualTo(1);
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(hedgedReads.summary()).contains("reads: 1, hedges: 0");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenReadSlow_thenHedgeWins() throws Exception {
+        var calls = new AtomicInteger();
+        var hedgedReads = new HedgedReads(true, 95, 10, () -> 5000);
+
+        var result = hedgedReads.call(HedgedReads.REF, 1, () -> {
+            if (calls.incrementAndGet() == 1) {
+                sleep(5000);
+                return "primary";
+            }
+            return "hedge";
+        });
+
+        assertThat(result).isEqualTo("hedge");
+        assertThat(calls.get()).isEqualTo(2);
+        assertThat(hedgedReads.summary()).contains("hedges: 1, hedge wins: 1");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenReadSlowAndRateLimitLow_thenDoNotHedge() throws Exception {
+        var calls = new AtomicInteger();
+        var hedgedReads = new HedgedReads(true, 95, 10, () -> HedgedReads.RATE_LIMIT_RESERVE);
+
+        var result = hedgedReads.call(HedgedReads.REF, 1, () -> {
+            calls.incrementAndGet();
+            sleep(100);
+            return "primary";
+        });
+
+        assertThat(result).isEqualTo("primary");
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(hedgedReads.summary()).contains("hedges skipped: 1");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenReadSlowAndHedgeTooCostly_thenDoNotHedge() throws Exception {
+        var calls = new AtomicInteger();
+        var hedgedReads = new HedgedReads(true, 95, 10, () -> HedgedReads.RATE_LIMIT_RESERVE + 2);
+
+        var result = hedgedReads.call(HedgedReads.REPOSITORY, 3, () -> {
+            calls.incrementAndGet();
+            sleep(100);
+            return "primary";
+        });
+
+        assertThat(result).isEqualTo("primary");
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(hedgedReads.summary()).contains("hedges skipped: 1");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenReadFails_thenThrowIOException() {
+        var hedgedReads = new HedgedReads(true, 95, 5000, () -> 5000);
+
+        assertThrows(IOException.class, () -> hedgedReads.call(HedgedReads.REF, 1, () -> {
+            throw new IOException("failure");
+        }));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenEnoughSamples_thenHedgeAfterPercentile() {
+        var hedgedReads = new HedgedReads(true, 90, 1, () -> 5000);
+
+        assertThat(hedgedReads.hedgeDelayNanos(HedgedReads.REF)).isEqualTo(TimeUnit.MILLISECONDS.toNanos(1));
+
+        for (int i = 1; i <= 100; i++) {
+            hedgedReads.recordLatency(HedgedReads.REF, TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        assertThat(hedgedReads.hedgeDelayNanos(HedgedReads.REF)).isEqualTo(TimeUnit.MILLISECONDS.toNanos(90));
+        assertThat(hedgedReads.hedgeDelayNanos(HedgedReads.REPOSITORY)).isEqualTo(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenInvalidParameters_thenThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> new HedgedReads(true, 0, 10, () -> 5000));
+        assertThrows(IllegalArgumentException.class, () -> new HedgedReads(true, 95, -1, () -> 5000));
+        assertThrows(NullPointerException.class, () -> new HedgedReads(true, 95, 10, null));
+        assertThrows(
+                IllegalArgumentException.class, () -> HedgedReads.disabled().call(HedgedReads.REF, 0, () -> "ref"));
+    }
+
+    /**
+     * Sleeps, ignoring interruptions.
+     * @param millis the duration in milliseconds.
+     */
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
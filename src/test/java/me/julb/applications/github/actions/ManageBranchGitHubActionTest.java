@@ -26,28 +26,45 @@ package me.julb.applications.github.actions;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.kohsuke.github.GHRef;
 import org.kohsuke.github.GHRef.GHObject;
 import org.kohsuke.github.GHRepository;
 import org.kohsuke.github.GitHub;
+import org.kohsuke.github.HttpException;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import me.julb.sdk.github.actions.kit.GitHubActionsKit;
 
 /**
@@ -80,6 +97,12 @@ class ManageBranchGitHubActionTest {
     @Mock
     private GHRepository ghRepositoryMock;
 
+    /**
+     * A temporary directory.
+     */
+    @TempDir
+    Path tempDir;
+
     /**
      * @throws java.lang.Exception
      */
@@ -113,6 +136,39 @@ class ManageBranchGitHubActionTest {
         verify(this.ghActionsKitMock).getRequiredInput("name");
     }
 
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputNameInvalid_thenFailBeforeConnecting() throws Exception {
+        var spy = spy(this.githubAction);
+        when(this.ghActionsKitMock.getRequiredInput("name")).thenReturn("feature/..bad");
+
+        assertThrows(CompletionException.class, () -> spy.execute());
+
+        verify(spy, times(0)).connectApi();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputNameNotNormalized_thenReturnNormalizedValue() throws Exception {
+        when(this.ghActionsKitMock.getRequiredInput("name")).thenReturn("/feature//foo");
+
+        assertThat(this.githubAction.getInputName()).isEqualTo("feature/foo");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputFromInvalid_thenFail() throws Exception {
+        when(this.ghActionsKitMock.getInput("from")).thenReturn(Optional.of("main.lock"));
+
+        assertThrows(IllegalArgumentException.class, () -> this.githubAction.getInputFrom());
+    }
+
     /**
      * Test method.
      */
@@ -165,6 +221,111 @@ class ManageBranchGitHubActionTest {
         verify(this.ghActionsKitMock).getGitHubSha();
     }
 
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputRepositoriesProvided_thenReturnValues() throws Exception {
+        when(this.ghActionsKitMock.getInput("repositories"))
+                .thenReturn(Optional.of("octocat/Hello-World,\n octocat/Spoon-Knife\n\noctocat/*"));
+
+        assertThat(this.githubAction.getInputRepositories())
+                .containsExactly("octocat/Hello-World", "octocat/Spoon-Knife", "octocat/*");
+
+        verify(this.ghActionsKitMock).getInput("repositories");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputRepositoriesNotProvided_thenReturnEmpty() throws Exception {
+        when(this.ghActionsKitMock.getInput("repositories")).thenReturn(Optional.empty());
+
+        assertThat(this.githubAction.getInputRepositories()).isEmpty();
+
+        verify(this.ghActionsKitMock).getInput("repositories");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputConcurrencyNotProvided_thenReturnDefaultValue() throws Exception {
+        when(this.ghActionsKitMock.getInput("concurrency")).thenReturn(Optional.empty());
+
+        assertThat(this.githubAction.getInputConcurrency()).isEqualTo(ManageBranchGitHubAction.DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputConcurrencyInvalid_thenFail() throws Exception {
+        when(this.ghActionsKitMock.getInput("concurrency")).thenReturn(Optional.of("0"));
+
+        assertThrows(IllegalArgumentException.class, () -> this.githubAction.getInputConcurrency());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenExecuteFanOut_thenBranchManagedInEachRepository() throws Exception {
+        var spy = spy(this.githubAction);
+
+        var shas = Map.of("octocat/repo-1", "123", "octocat/repo-2", "456");
+        var worker1 = mockWorker(shas);
+        var worker2 = mockWorker(shas);
+
+        doReturn("release/1.0").when(spy).getInputName();
+        doReturn(InputBranchState.PRESENT).when(spy).getInputState();
+        doReturn("main").when(spy).getInputFrom();
+        doReturn(List.of("octocat/repo-1", "octocat/repo-2", "octocat/repo-1")).when(spy).getInputRepositories();
+        doReturn(Optional.empty()).when(spy).getInputRepositoriesQuery();
+        doReturn(2).when(spy).getInputConcurrency();
+
+        doNothing().when(spy).connectApi();
+
+        doReturn(worker1, worker2).when(spy).newWorker(null);
+
+        spy.execute();
+
+        verify(spy, times(2)).newWorker(null);
+        manageBranch(verify(worker1), "release/1.0", InputBranchState.PRESENT, "main");
+        manageBranch(verify(worker2), "release/1.0", InputBranchState.PRESENT, "main");
+        verify(this.ghActionsKitMock)
+                .setOutput(
+                        OutputVars.RESULTS.key(),
+                        "[{\"repository\":\"octocat/repo-1\",\"name\":\"release/1.0\",\"state\":\"present\","
+                                + "\"ref\":\"refs/heads/release/1.0\",\"sha\":\"123\"},"
+                                + "{\"repository\":\"octocat/repo-2\",\"name\":\"release/1.0\",\"state\":\"present\","
+                                + "\"ref\":\"refs/heads/release/1.0\",\"sha\":\"456\"}]");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenExecuteFanOutWithFailure_thenFail() throws Exception {
+        var spy = spy(this.githubAction);
+
+        doReturn("release/1.0").when(spy).getInputName();
+        doReturn(InputBranchState.ABSENT).when(spy).getInputState();
+        doReturn("main").when(spy).getInputFrom();
+        doReturn(List.of("octocat/missing")).when(spy).getInputRepositories();
+        doReturn(Optional.empty()).when(spy).getInputRepositoriesQuery();
+        doReturn(1).when(spy).getInputConcurrency();
+
+        doNothing().when(spy).connectApi();
+
+        when(this.ghApiMock.getRepository("octocat/missing")).thenThrow(new FileNotFoundException("missing"));
+
+        assertThrows(CompletionException.class, () -> spy.execute());
+
+        verify(this.ghActionsKitMock).setOutput(Mockito.eq(OutputVars.RESULTS.key()), Mockito.contains("\"error\""));
+    }
+
     /**
      * Test method.
      */
@@ -188,7 +349,7 @@ class ManageBranchGitHubActionTest {
         when(this.ghApiMock.getRepository("octocat/Hello-World")).thenReturn(ghRepositoryMock);
         doReturn(Optional.empty()).when(spy).getBranchGHRef("new-branch");
         doReturn(Optional.empty()).when(spy).getAnyGHRef("123456");
-        doReturn(ghRefCreated).when(spy).createGHRef("refs/heads/new-branch", "123456", Optional.empty());
+        when(this.ghRepositoryMock.createRef("refs/heads/new-branch", "123456")).thenReturn(ghRefCreated);
 
         spy.execute();
 
@@ -200,7 +361,7 @@ class ManageBranchGitHubActionTest {
         verify(spy).connectApi();
         verify(spy).getBranchGHRef("new-branch");
         verify(spy).getAnyGHRef("123456");
-        verify(spy).createGHRef("refs/heads/new-branch", "123456", Optional.empty());
+        verify(this.ghRepositoryMock).createRef("refs/heads/new-branch", "123456");
 
         verify(this.ghApiMock).getRepository("octocat/Hello-World");
         verify(this.ghActionsKitMock).setOutput(OutputVars.REF.key(), "refs/heads/new-branch");
@@ -215,13 +376,7 @@ class ManageBranchGitHubActionTest {
     void whenExecuteCreateBranchAlreadyExists_thenBranchUpdated() throws Exception {
         var spy = spy(this.githubAction);
 
-        var ghRefCreated = Mockito.mock(GHRef.class);
-        when(ghRefCreated.getRef()).thenReturn("refs/heads/existing-branch");
-        var ghRefObject = Mockito.mock(GHObject.class);
-        when(ghRefObject.getSha()).thenReturn("123456");
-        when(ghRefCreated.getObject()).thenReturn(ghRefObject);
-
-        var ghRefExisting = Mockito.mock(GHRef.class);
+        var ghRefExisting = mockGHRef("refs/heads/existing-branch", "123456");
 
         when(this.ghActionsKitMock.getGitHubRepository()).thenReturn("octocat/Hello-World");
         doReturn("existing-branch").when(spy).getInputName();
@@ -233,9 +388,6 @@ class ManageBranchGitHubActionTest {
         when(this.ghApiMock.getRepository("octocat/Hello-World")).thenReturn(ghRepositoryMock);
         doReturn(Optional.of(ghRefExisting)).when(spy).getBranchGHRef("existing-branch");
         doReturn(Optional.empty()).when(spy).getAnyGHRef("789123");
-        doReturn(ghRefCreated)
-                .when(spy)
-                .createGHRef("refs/heads/existing-branch", "789123", Optional.of(ghRefExisting));
 
         spy.execute();
 
@@ -247,12 +399,12 @@ class ManageBranchGitHubActionTest {
         verify(spy).connectApi();
         verify(spy).getBranchGHRef("existing-branch");
         verify(spy).getAnyGHRef("789123");
-        verify(spy).createGHRef("refs/heads/existing-branch", "789123", Optional.of(ghRefExisting));
+        verify(ghRefExisting).updateTo("789123", true);
 
         verify(this.ghApiMock).getRepository("octocat/Hello-World");
         verify(this.ghActionsKitMock).setOutput(OutputVars.REF.key(), "refs/heads/existing-branch");
         verify(this.ghActionsKitMock).setOutput(OutputVars.NAME.key(), "existing-branch");
-        verify(this.ghActionsKitMock).setOutput(OutputVars.SHA.key(), "123456");
+        verify(this.ghActionsKitMock).setOutput(OutputVars.SHA.key(), "789123");
     }
 
     /**
@@ -262,7 +414,7 @@ class ManageBranchGitHubActionTest {
     void whenExecuteDeleteBranchAlreadyExists_thenBranchDeleted() throws Exception {
         var spy = spy(this.githubAction);
 
-        var ghRefExisting = Mockito.mock(GHRef.class);
+        var ghRefExisting = mockGHRef("refs/heads/existing-branch", "123456");
 
         when(this.ghActionsKitMock.getGitHubRepository()).thenReturn("octocat/Hello-World");
         doReturn("existing-branch").when(spy).getInputName();
@@ -273,7 +425,6 @@ class ManageBranchGitHubActionTest {
 
         when(this.ghApiMock.getRepository("octocat/Hello-World")).thenReturn(ghRepositoryMock);
         doReturn(Optional.of(ghRefExisting)).when(spy).getBranchGHRef("existing-branch");
-        doNothing().when(spy).deleteGHRef(Optional.of(ghRefExisting));
 
         spy.execute();
 
@@ -284,7 +435,7 @@ class ManageBranchGitHubActionTest {
         verify(spy).getInputFrom();
         verify(spy).connectApi();
         verify(spy).getBranchGHRef("existing-branch");
-        verify(spy).deleteGHRef(Optional.of(ghRefExisting));
+        verify(ghRefExisting).delete();
 
         verify(this.ghApiMock).getRepository("octocat/Hello-World");
         verify(this.ghActionsKitMock).setEmptyOutput(OutputVars.REF.key());
@@ -308,7 +459,6 @@ class ManageBranchGitHubActionTest {
 
         when(this.ghApiMock.getRepository("octocat/Hello-World")).thenReturn(ghRepositoryMock);
         doReturn(Optional.empty()).when(spy).getBranchGHRef("existing-branch");
-        doNothing().when(spy).deleteGHRef(Optional.empty());
 
         spy.execute();
 
@@ -319,7 +469,7 @@ class ManageBranchGitHubActionTest {
         verify(spy).getInputFrom();
         verify(spy).connectApi();
         verify(spy).getBranchGHRef("existing-branch");
-        verify(spy).deleteGHRef(Optional.empty());
+        verify(this.ghActionsKitMock).notice("skipping branch deletion as it does not exist.");
 
         verify(this.ghApiMock).getRepository("octocat/Hello-World");
         verify(this.ghActionsKitMock).setEmptyOutput(OutputVars.REF.key());
@@ -331,209 +481,1289 @@ class ManageBranchGitHubActionTest {
      * Test method.
      */
     @Test
-    void whenConnectApi_thenVerifyOK() throws Exception {
-        when(ghActionsKitMock.getRequiredEnv("GITHUB_TOKEN")).thenReturn("token");
-        when(ghActionsKitMock.getGitHubApiUrl()).thenReturn("https://api.github.com");
+    void whenManageBranchFromKnownInEventPayload_thenDoNotListRefs() throws Exception {
+        var spy = spy(this.githubAction);
 
-        this.githubAction.connectApi();
+        var ghRefCreated = mockGHRef("refs/heads/new-branch", "222222");
+        var eventPayloadRefs = Mockito.mock(EventPayloadRefs.class);
+        spy.setEventPayloadRefs(eventPayloadRefs);
 
-        verify(ghActionsKitMock).getRequiredEnv("GITHUB_TOKEN");
-        verify(ghActionsKitMock).getGitHubApiUrl();
-        verify(ghActionsKitMock, times(2)).debug(Mockito.anyString());
-        verify(ghApiMock).checkApiUrlValidity();
+        when(this.ghRepositoryMock.getFullName()).thenReturn("octocat/Hello-World");
+        when(eventPayloadRefs.resolve("octocat/Hello-World", "main"))
+                .thenReturn(Optional.of(new RefEntry("refs/heads/main", "222222", "commit")));
+        doReturn(Optional.empty()).when(spy).getBranchGHRef("new-branch");
+        when(this.ghRepositoryMock.createRef("refs/heads/new-branch", "222222")).thenReturn(ghRefCreated);
+
+        var result = spy.manageBranch(openRestSession(spy), "new-branch", InputBranchState.PRESENT, "main");
+
+        assertThat(result.sha()).isEqualTo("222222");
+        verify(spy, times(0)).getAnyGHRef(Mockito.anyString());
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenGetBranchGHRefExist_thenReturnRef() throws Exception {
-        var ghRef1 = Mockito.mock(GHRef.class);
-        when(ghRef1.getRef()).thenReturn("refs/heads/main");
+    void whenManageBranchFromPayloadShaOfUnknownType_thenPeelToCommit() throws Exception {
+        var spy = spy(this.githubAction);
+        var commitGraph = Mockito.mock(CommitGraph.class);
+        var eventPayloadRefs = new EventPayloadRefs(
+                Map.of("ref", "refs/tags/v1.0.0", "after", "333333", "repository.full_name", "octocat/Hello-World"));
+        spy.setEventPayloadRefs(eventPayloadRefs);
 
-        var ghRef2 = Mockito.mock(GHRef.class);
-        when(ghRef2.getRef()).thenReturn("refs/heads/BRANCH-name");
+        var ghRefCreated = mockGHRef("refs/heads/new-branch", "444444");
 
-        when(ghRepositoryMock.getRefs("heads")).thenReturn(new GHRef[] {ghRef1, ghRef2});
+        when(this.ghRepositoryMock.getFullName()).thenReturn("octocat/Hello-World");
+        doReturn(Optional.empty()).when(spy).getBranchGHRef("new-branch");
+        doReturn(commitGraph).when(spy).newCommitGraph("octocat/Hello-World");
+        when(commitGraph.resolve("333333", "tag", List.of())).thenReturn("444444");
+        when(this.ghRepositoryMock.createRef("refs/heads/new-branch", "444444")).thenReturn(ghRefCreated);
 
-        assertThat(this.githubAction.getBranchGHRef("branch-name")).isPresent().contains(ghRef2);
+        var result = spy.manageBranch(openRestSession(spy), "new-branch", InputBranchState.PRESENT, "333333");
 
-        verify(ghRepositoryMock).getRefs("heads");
-        verify(ghRef1).getRef();
-        verify(ghRef2).getRef();
+        assertThat(result.sha()).isEqualTo("444444");
+        verify(spy, times(0)).getAnyGHRef(Mockito.anyString());
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenGetBranchGHRefDoesNotExist_thenReturnEmpty() throws Exception {
-        when(ghRepositoryMock.getRefs("heads")).thenReturn(new GHRef[] {});
+    void whenManageBranchFromAnnotatedTag_thenPeelToCommit() throws Exception {
+        var spy = spy(this.githubAction);
+        var commitGraph = Mockito.mock(CommitGraph.class);
+        spy.setEventPayloadRefs(EventPayloadRefs.empty());
 
-        assertThat(this.githubAction.getBranchGHRef("branch-name")).isEmpty();
+        var tagGHRef = mockGHRef("refs/tags/v1.0.0", "333333");
+        when(tagGHRef.getObject().getType()).thenReturn("tag");
+        var ghRefCreated = mockGHRef("refs/heads/new-branch", "444444");
 
-        verify(ghRepositoryMock).getRefs("heads");
+        when(this.ghRepositoryMock.getFullName()).thenReturn("octocat/Hello-World");
+        doReturn(Optional.empty()).when(spy).getBranchGHRef("new-branch");
+        doReturn(Optional.of(tagGHRef)).when(spy).getAnyGHRef("v1.0.0");
+        doReturn(commitGraph).when(spy).newCommitGraph("octocat/Hello-World");
+        when(commitGraph.resolve("333333", "tag", List.of())).thenReturn("444444");
+        when(this.ghRepositoryMock.createRef("refs/heads/new-branch", "444444")).thenReturn(ghRefCreated);
+
+        var result = spy.manageBranch(openRestSession(spy), "new-branch", InputBranchState.PRESENT, "v1.0.0");
+
+        assertThat(result.sha()).isEqualTo("444444");
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenGetBranchGHRefNull_thenThrowNullPointerException() throws Exception {
-        assertThrows(NullPointerException.class, () -> this.githubAction.getBranchGHRef(null));
+    void whenManageBranchFromRevision_thenResolveFromBase() throws Exception {
+        var spy = spy(this.githubAction);
+        var commitGraph = Mockito.mock(CommitGraph.class);
+        spy.setEventPayloadRefs(EventPayloadRefs.empty());
+
+        var ghRefCreated = mockGHRef("refs/heads/new-branch", "000000");
+
+        when(this.ghRepositoryMock.getFullName()).thenReturn("octocat/Hello-World");
+        doReturn(Optional.empty()).when(spy).getBranchGHRef("new-branch");
+        doReturn(Optional.of(mockGHRef("refs/heads/main", "222222"))).when(spy).getAnyGHRef("main");
+        doReturn(commitGraph).when(spy).newCommitGraph("octocat/Hello-World");
+        when(commitGraph.resolve("222222", null, List.of(new RevisionExpression.Step('~', 2))))
+                .thenReturn("000000");
+        when(this.ghRepositoryMock.createRef("refs/heads/new-branch", "000000")).thenReturn(ghRefCreated);
+
+        var result = spy.manageBranch(openRestSession(spy), "new-branch", InputBranchState.PRESENT, "main~2");
+
+        assertThat(result.sha()).isEqualTo("000000");
+        verify(spy, times(0)).getAnyGHRef("main~2");
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenGetAnyGHRefExist_thenReturnRef() throws Exception {
-        var ghRef1 = Mockito.mock(GHRef.class);
-        when(ghRef1.getRef()).thenReturn("refs/heads/main");
+    void whenManageBranchGraphQLFromRevision_thenResolveFromBase() throws Exception {
+        var spy = spy(this.githubAction);
+        var graphQLRefClient = Mockito.mock(GraphQLRefClient.class);
+        var commitGraph = Mockito.mock(CommitGraph.class);
+        spy.setEventPayloadRefs(EventPayloadRefs.empty());
+        doReturn(graphQLRefClient).when(spy).newGraphQLRefClient();
+        doReturn(commitGraph).when(spy).newCommitGraph("octocat/Hello-World");
+
+        var source = new RefEntry("refs/heads/release/1.0", "222222", "commit");
+        var snapshot = new GraphQLRefClient.BranchSnapshot("R_1", "octocat/Hello-World", null, null, source);
+        when(graphQLRefClient.read("octocat/Hello-World", "refs/heads/new-branch", "release/1.0"))
+                .thenReturn(snapshot);
+        when(commitGraph.resolve("222222", "commit", List.of(new RevisionExpression.Step('^', 2))))
+                .thenReturn("111111");
+        when(graphQLRefClient.createRef("R_1", "refs/heads/new-branch", "111111"))
+                .thenReturn(new RefEntry("refs/heads/new-branch", "111111", "commit"));
+
+        var result = spy.manageBranch(
+                openGraphQLSession(spy), "new-branch", InputBranchState.PRESENT, "release/1.0^2");
+
+        assertThat(result.sha()).isEqualTo("111111");
+    }
 
-        var ghRef2 = Mockito.mock(GHRef.class);
-        when(ghRef2.getRef()).thenReturn("refs/heads/BRANCH-name");
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputApiProvided_thenReturnValue() throws Exception {
+        when(this.ghActionsKitMock.getInput("api")).thenReturn(Optional.of("graphql"));
 
-        var ghRef3 = Mockito.mock(GHRef.class);
-        when(ghRef3.getRef()).thenReturn("refs/tags/1.0.0");
+        assertThat(this.githubAction.getInputApi()).isEqualTo(InputApi.GRAPHQL);
+    }
 
-        when(ghRepositoryMock.getRefs()).thenReturn(new GHRef[] {ghRef1, ghRef2, ghRef3});
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputApiNotProvided_thenReturnDefaultValue() throws Exception {
+        when(this.ghActionsKitMock.getInput("api")).thenReturn(Optional.empty());
 
-        assertThat(this.githubAction.getAnyGHRef("refs/heads/main")).isPresent().contains(ghRef1);
-        assertThat(this.githubAction.getAnyGHRef("branch-name")).isPresent().contains(ghRef2);
-        assertThat(this.githubAction.getAnyGHRef("1.0.0")).isPresent().contains(ghRef3);
-        assertThat(this.githubAction.getAnyGHRef("refs/tags/1.0.0")).isPresent().contains(ghRef3);
+        assertThat(this.githubAction.getInputApi()).isEqualTo(InputApi.REST);
+    }
 
-        verify(ghRepositoryMock, times(4)).getRefs();
-        verify(ghRef1, times(4)).getRef();
-        verify(ghRef2, times(3)).getRef();
-        verify(ghRef3, times(2)).getRef();
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputApiAuto_thenReturnAuto() throws Exception {
+        when(this.ghActionsKitMock.getInput("api")).thenReturn(Optional.of(" Auto "));
+
+        assertThat(this.githubAction.getInputApi()).isEqualTo(InputApi.AUTO);
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenGetAnyGHRefDoesNotExist_thenReturnEmpty() throws Exception {
-        when(ghRepositoryMock.getRefs()).thenReturn(new GHRef[] {});
+    void whenLoadRefStores_thenDiscoverRestAndGraphQL() {
+        assertThat(this.githubAction.loadRefStores())
+                .extracting(RefStore::name)
+                .containsExactly("rest", "graphql");
+        assertThat(this.githubAction.findRefStore("graphql")).isInstanceOf(GraphQLRefStore.class);
+        assertThrows(IllegalArgumentException.class, () -> this.githubAction.findRefStore("unknown"));
+    }
 
-        assertThat(this.githubAction.getAnyGHRef("branch-name")).isEmpty();
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetRefStorePlannerWithNames_thenPlanAmongNamedStores() {
+        this.githubAction.setApi(InputApi.AUTO);
+        this.githubAction.setRefStoreNames(List.of("rest"));
 
-        verify(ghRepositoryMock).getRefs();
+        assertThat(this.githubAction.planRefStore(InputBranchState.PRESENT, false))
+                .isInstanceOf(RestRefStore.class);
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenGetAnyGHRefNull_thenThrowNullPointerException() throws Exception {
-        assertThrows(NullPointerException.class, () -> this.githubAction.getAnyGHRef(null));
+    void whenFanOutAutoApi_thenApplyPlannedStore() throws Exception {
+        var spy = spy(this.githubAction);
+        var refStorePlanner = Mockito.mock(RefStorePlanner.class);
+        var worker = Mockito.mock(ManageBranchGitHubAction.class);
+        var graphQLRefStore = new GraphQLRefStore();
+        spy.setApi(InputApi.AUTO);
+        spy.setRefStorePlanner(refStorePlanner);
+
+        var result = BranchResult.present("octocat/repo-1", "release/1.0", "refs/heads/release/1.0", "123");
+        when(refStorePlanner.plan(InputBranchState.PRESENT, false)).thenReturn(graphQLRefStore);
+        doReturn(worker).when(spy).newWorker(null);
+        when(manageBranch(worker, "release/1.0", InputBranchState.PRESENT, "main")).thenReturn(result);
+
+        var results = spy.fanOut(
+                List.of("octocat/repo-1"), Optional.empty(), "release/1.0", InputBranchState.PRESENT, "main");
+
+        assertThat(results).containsExactly(result);
+        verify(this.ghApiMock, times(0)).getRepository(Mockito.anyString());
+        verify(refStorePlanner).record(Mockito.eq(graphQLRefStore), Mockito.eq(2), Mockito.anyLong());
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenCreateGHRefPresentExistingBranch_thenUpdateExistingBranch() throws Exception {
-        var ghRef = Mockito.mock(GHRef.class);
+    void whenApplyRefStore_thenEstimateBeforeFetchingRepository() throws Exception {
+        var spy = spy(this.githubAction);
+        var refStorePlanner = Mockito.mock(RefStorePlanner.class);
+        var restRefStore = new RestRefStore();
+        spy.setRefStorePlanner(refStorePlanner);
+        spy.setGhRepository(null);
+
+        var result = BranchResult.absent("octocat/repo-1", "feature/x");
+        doNothing().when(spy).useRepository("octocat/repo-1");
+        doReturn(result).when(spy).manageBranch(Mockito.any(), Mockito.eq("feature/x"), Mockito.any(), Mockito.any());
+
+        assertThat(spy.applyRefStore(restRefStore, spy, "octocat/repo-1", "feature/x", InputBranchState.ABSENT, "main"))
+                .isEqualTo(result);
+        verify(spy).useRepository("octocat/repo-1");
+        verify(refStorePlanner).record(Mockito.eq(restRefStore), Mockito.eq(3), Mockito.anyLong());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenRestSessionReReadRef_thenFetchSingleRef() throws Exception {
+        var spy = spy(this.githubAction);
+        var branch = mockGHRef("refs/heads/Feature", "111111");
+        var reRead = mockGHRef("refs/heads/Feature", "222222");
 
-        this.githubAction.createGHRef("new-branch", "123456", Optional.of(ghRef));
+        when(this.ghRepositoryMock.getFullName()).thenReturn("octocat/Hello-World");
+        doReturn(Optional.of(branch)).when(spy).getBranchGHRef("feature");
+        when(this.ghRepositoryMock.getRef("heads/Feature")).thenReturn(reRead);
 
-        verify(ghActionsKitMock).notice(Mockito.anyString());
-        verify(ghRef).updateTo("123456", true);
+        var session = openRestSession(spy);
+
+        assertThat(session.read("refs/heads/feature")).contains(new RefEntry("refs/heads/Feature", "111111", null));
+        assertThat(session.read("refs/heads/Feature")).contains(new RefEntry("refs/heads/Feature", "222222", null));
+        session.delete(new RefEntry("refs/heads/Feature", "222222", null));
+        verify(spy, times(1)).getBranchGHRef(Mockito.anyString());
+        verify(reRead).delete();
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenCreateGHRefEmptyExistingBranch_thenCreateBranch() throws Exception {
+    void whenFanOutWait_thenPollWithoutFetchingRepository() throws Exception {
+        var spy = spy(this.githubAction);
+        var worker = Mockito.mock(ManageBranchGitHubAction.class);
 
-        this.githubAction.createGHRef("refs/heads/new-branch", "123456", Optional.empty());
+        var result = BranchResult.waited("octocat/repo-1", "release/1.0", "refs/heads/release/1.0", "123");
+        doReturn(worker).when(spy).newWorker(null);
+        when(worker.waitBranch("octocat/repo-1", "release/1.0")).thenReturn(result);
 
-        verify(ghActionsKitMock).notice(Mockito.anyString());
-        verify(ghRepositoryMock).createRef("refs/heads/new-branch", "123456");
+        var results = spy.fanOut(
+                List.of("octocat/repo-1"), Optional.empty(), "release/1.0", InputBranchState.WAIT, "main");
+
+        assertThat(results).containsExactly(result);
+        verify(this.ghApiMock, times(0)).getRepository(Mockito.anyString());
+        verify(spy, times(0)).planRefStore(Mockito.any(InputBranchState.class), Mockito.anyBoolean());
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenCreateGHRefNull_thenThrowNullPointerException() throws Exception {
-        var emptyOptional = Optional.<GHRef>empty();
-        assertThrows(NullPointerException.class, () -> this.githubAction.createGHRef(null, "123456", emptyOptional));
-        assertThrows(
-                NullPointerException.class,
-                () -> this.githubAction.createGHRef("refs/heads/branch-name", null, emptyOptional));
+    void whenGetRemainingRateLimitByResource_thenReturnLastReported() throws Exception {
+        var httpClient = Mockito.mock(GitHubHttpClient.class);
+        this.githubAction.setHttpClient(httpClient);
+
+        when(httpClient.getRemainingRateLimit("graphql")).thenReturn(42);
+        when(httpClient.getRemainingRateLimit("core")).thenReturn(100);
+
+        assertThat(this.githubAction.getRemainingRateLimit("graphql")).isEqualTo(42);
+        assertThat(this.githubAction.getRemainingRateLimit("core")).isEqualTo(100);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenManageBranchGraphQLNotExists_thenBranchCreatedWithoutListingRefs() throws Exception {
+        var spy = spy(this.githubAction);
+        var graphQLRefClient = Mockito.mock(GraphQLRefClient.class);
+        spy.setEventPayloadRefs(EventPayloadRefs.empty());
+        doReturn(graphQLRefClient).when(spy).newGraphQLRefClient();
+
+        var source = new RefEntry("refs/heads/main", "222222", "commit");
+        var snapshot = new GraphQLRefClient.BranchSnapshot("R_1", "octocat/Hello-World", null, null, source);
+        when(graphQLRefClient.read("octocat/Hello-World", "refs/heads/new-branch", "main"))
+                .thenReturn(snapshot);
+        when(graphQLRefClient.createRef("R_1", "refs/heads/new-branch", "222222"))
+                .thenReturn(new RefEntry("refs/heads/new-branch", "222222", "commit"));
+
+        var result = spy.manageBranch(openGraphQLSession(spy), "new-branch", InputBranchState.PRESENT, "main");
+
+        assertThat(result).isEqualTo(BranchResult.present(
+                "octocat/Hello-World", "new-branch", "refs/heads/new-branch", "222222"));
+        verify(spy, times(0)).getBranchGHRef(Mockito.anyString());
+        verify(spy, times(0)).getAnyGHRef(Mockito.anyString());
+        verify(this.ghApiMock, times(0)).getRepository(Mockito.anyString());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenManageBranchGraphQLExists_thenBranchUpdated() throws Exception {
+        var spy = spy(this.githubAction);
+        var graphQLRefClient = Mockito.mock(GraphQLRefClient.class);
+        spy.setEventPayloadRefs(EventPayloadRefs.empty());
+        spy.setUpdateMode(InputUpdateMode.FAST_FORWARD);
+        doReturn(graphQLRefClient).when(spy).newGraphQLRefClient();
+
+        var branch = new RefEntry("refs/heads/branch", "111111", "commit");
+        var source = new RefEntry("refs/heads/main", "222222", "commit");
+        var snapshot = new GraphQLRefClient.BranchSnapshot("R_1", "octocat/Hello-World", "REF_1", branch, source);
+        when(graphQLRefClient.read("octocat/Hello-World", "refs/heads/branch", "main"))
+                .thenReturn(snapshot);
+        when(graphQLRefClient.updateRef("REF_1", "222222", false))
+                .thenReturn(new RefEntry("refs/heads/branch", "222222", "commit"));
+
+        var result = spy.manageBranch(openGraphQLSession(spy), "branch", InputBranchState.PRESENT, "main");
+
+        assertThat(result.sha()).isEqualTo("222222");
+        verify(graphQLRefClient).updateRef("REF_1", "222222", false);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenManageBranchGraphQLFastForwardConflict_thenSkipNewerSha() throws Exception {
+        var spy = spy(this.githubAction);
+        var graphQLRefClient = Mockito.mock(GraphQLRefClient.class);
+        spy.setEventPayloadRefs(EventPayloadRefs.empty());
+        spy.setUpdateMode(InputUpdateMode.FAST_FORWARD);
+        doReturn(graphQLRefClient).when(spy).newGraphQLRefClient();
+
+        var branch = new RefEntry("refs/heads/branch", "111111", "commit");
+        var moved = new RefEntry("refs/heads/branch", "333333", "commit");
+        var source = new RefEntry("refs/heads/main", "222222", "commit");
+        var errors = new ObjectMapper()
+                .readTree("[{\"type\":\"UNPROCESSABLE\",\"message\":\"Update is not a fast forward\"}]");
+        when(graphQLRefClient.read("octocat/Hello-World", "refs/heads/branch", "main"))
+                .thenReturn(new GraphQLRefClient.BranchSnapshot("R_1", "octocat/Hello-World", "REF_1", branch, source));
+        when(graphQLRefClient.updateRef("REF_1", "222222", false))
+                .thenThrow(new GitHubHttpClient.GraphQLException(errors));
+        when(graphQLRefClient.read("octocat/Hello-World", "refs/heads/branch", null))
+                .thenReturn(new GraphQLRefClient.BranchSnapshot("R_1", "octocat/Hello-World", "REF_1", moved, null));
+        doReturn(true).when(spy).isAncestor("octocat/Hello-World", "222222", "333333");
+
+        var result = spy.manageBranch(openGraphQLSession(spy), "branch", InputBranchState.PRESENT, "main");
+
+        assertThat(result.sha()).isEqualTo("333333");
+        verify(graphQLRefClient).updateRef("REF_1", "222222", false);
+        verify(this.ghActionsKitMock).notice("ref already moved to newer SHA 333333, skipping.");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenManageBranchGraphQLExpectedShaMismatch_thenFail() throws Exception {
+        var spy = spy(this.githubAction);
+        var graphQLRefClient = Mockito.mock(GraphQLRefClient.class);
+        spy.setEventPayloadRefs(EventPayloadRefs.empty());
+        spy.setExpectedSha("000000");
+        doReturn(graphQLRefClient).when(spy).newGraphQLRefClient();
+        doReturn(false).when(spy).isAncestor("octocat/Hello-World", "222222", "111111");
+
+        var branch = new RefEntry("refs/heads/branch", "111111", "commit");
+        var source = new RefEntry("refs/heads/main", "222222", "commit");
+        var snapshot = new GraphQLRefClient.BranchSnapshot("R_1", "octocat/Hello-World", "REF_1", branch, source);
+        when(graphQLRefClient.read("octocat/Hello-World", "refs/heads/branch", "main"))
+                .thenReturn(snapshot);
+
         assertThrows(
-                NullPointerException.class,
-                () -> this.githubAction.createGHRef("refs/heads/branch-name", "123456", null));
+                IllegalStateException.class,
+                () -> spy.manageBranch(openGraphQLSession(spy), "branch", InputBranchState.PRESENT, "main"));
+        verify(graphQLRefClient, times(0)).updateRef(Mockito.anyString(), Mockito.anyString(), Mockito.anyBoolean());
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenDeleteGHRefPresent_thenDeleteGhRef() throws Exception {
-        var ghRef = Mockito.mock(GHRef.class);
+    void whenManageBranchGraphQLAbsent_thenBranchDeleted() throws Exception {
+        var spy = spy(this.githubAction);
+        var graphQLRefClient = Mockito.mock(GraphQLRefClient.class);
+        doReturn(graphQLRefClient).when(spy).newGraphQLRefClient();
 
-        assertDoesNotThrow(() -> {
-            this.githubAction.deleteGHRef(Optional.of(ghRef));
-        });
+        var branch = new RefEntry("refs/heads/branch", "111111", "commit");
+        var snapshot = new GraphQLRefClient.BranchSnapshot("R_1", "octocat/Hello-World", "REF_1", branch, null);
+        when(graphQLRefClient.read("octocat/Hello-World", "refs/heads/branch", null)).thenReturn(snapshot);
 
-        verify(ghActionsKitMock).notice(Mockito.anyString());
-        verify(ghRef).delete();
+        var result = spy.manageBranch(openGraphQLSession(spy), "branch", InputBranchState.ABSENT, "main");
+
+        assertThat(result).isEqualTo(BranchResult.absent("octocat/Hello-World", "branch"));
+        verify(graphQLRefClient).deleteRef("REF_1");
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenDeleteGHRefEmpty_thenLogMessage() {
-        assertDoesNotThrow(() -> {
-            this.githubAction.deleteGHRef(Optional.empty());
-        });
+    void whenGetInputWaitTimeoutNotProvided_thenReturnDefaultValue() throws Exception {
+        when(this.ghActionsKitMock.getInput("wait-timeout")).thenReturn(Optional.empty());
 
-        verify(ghActionsKitMock).notice(Mockito.anyString());
+        assertThat(this.githubAction.getInputWaitTimeout())
+                .isEqualTo(Duration.ofSeconds(ManageBranchGitHubAction.DEFAULT_WAIT_TIMEOUT_SECONDS));
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenDeleteGHRefNull_thenThrowNullPointerException() throws Exception {
-        assertThrows(NullPointerException.class, () -> this.githubAction.deleteGHRef(null));
+    void whenGetInputWaitTimeoutInvalid_thenFail() throws Exception {
+        when(this.ghActionsKitMock.getInput("wait-timeout")).thenReturn(Optional.of("-1"));
+
+        assertThrows(IllegalArgumentException.class, () -> this.githubAction.getInputWaitTimeout());
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenBranchRefNamePresent_thenReturnRefValue() {
-        assertThat(this.githubAction.branchRef("branch-name")).isEqualTo("refs/heads/branch-name");
+    void whenExecuteWaitBranch_thenPollSingleRefAndSetOutputs() throws Exception {
+        var spy = spy(this.githubAction);
+        var refPoller = Mockito.mock(RefPoller.class);
+
+        when(this.ghActionsKitMock.getGitHubRepository()).thenReturn("octocat/Hello-World");
+        doReturn(Optional.of("222222")).when(spy).getInputWaitSha();
+        doReturn("new-branch").when(spy).getInputName();
+        doReturn(InputBranchState.WAIT).when(spy).getInputState();
+        doReturn("123456").when(spy).getInputFrom();
+        doNothing().when(spy).connectApi();
+        doReturn(refPoller).when(spy).newRefPoller("octocat/Hello-World");
+        when(refPoller.await(
+                        "refs/heads/new-branch",
+                        "222222",
+                        Duration.ofSeconds(ManageBranchGitHubAction.DEFAULT_WAIT_TIMEOUT_SECONDS)))
+                .thenReturn(new RefEntry("refs/heads/new-branch", "222222", "commit"));
+
+        spy.execute();
+
+        verify(this.ghApiMock, times(0)).getRepository(Mockito.anyString());
+        verify(spy, times(0)).getBranchGHRef(Mockito.anyString());
+        verify(this.ghActionsKitMock).setOutput(OutputVars.REF.key(), "refs/heads/new-branch");
+        verify(this.ghActionsKitMock).setOutput(OutputVars.NAME.key(), "new-branch");
+        verify(this.ghActionsKitMock).setOutput(OutputVars.SHA.key(), "222222");
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenBranchRefNameNull_thenThrowNullPointerException() throws Exception {
-        assertThrows(NullPointerException.class, () -> this.githubAction.branchRef(null));
+    void whenExecuteWaitBranchTimeout_thenFail() throws Exception {
+        var spy = spy(this.githubAction);
+        var refPoller = Mockito.mock(RefPoller.class);
+
+        when(this.ghActionsKitMock.getGitHubRepository()).thenReturn("octocat/Hello-World");
+        doReturn("new-branch").when(spy).getInputName();
+        doReturn(InputBranchState.WAIT).when(spy).getInputState();
+        doReturn("123456").when(spy).getInputFrom();
+        doNothing().when(spy).connectApi();
+        doReturn(refPoller).when(spy).newRefPoller("octocat/Hello-World");
+        when(refPoller.await(Mockito.anyString(), Mockito.isNull(), Mockito.any(Duration.class)))
+                .thenThrow(new TimeoutException("timeout"));
+
+        assertThrows(CompletionException.class, () -> spy.execute());
+
+        verify(this.ghActionsKitMock, times(0)).setOutput(Mockito.anyString(), Mockito.anyString());
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenTagRefNamePresent_thenReturnRefValue() {
-        assertThat(this.githubAction.tagRef("1.0.0")).isEqualTo("refs/tags/1.0.0");
+    void whenGetInputMirrorBranchesNotProvided_thenReturnAllBranches() throws Exception {
+        when(this.ghActionsKitMock.getInput("mirror-branches")).thenReturn(Optional.empty());
+
+        assertThat(this.githubAction.getInputMirrorBranches()).containsExactly("**");
     }
 
     /**
      * Test method.
      */
     @Test
-    void whenTagRefNameNull_thenThrowNullPointerException() throws Exception {
+    void whenExecuteMirror_thenWriteChangedBranchesOnly() throws Exception {
+        var spy = spy(this.githubAction);
+
+        var sourceRepository = Mockito.mock(GHRepository.class);
+        var targetRepository = Mockito.mock(GHRepository.class);
+        var targetMain = mockGHRef("refs/heads/main", "000");
+        var targetRelease09 = mockGHRef("refs/heads/release/0.9", "999");
+        var targetRelease10 = mockGHRef("refs/heads/release/1.0", "222");
+        var createdRelease20 = mockGHRef("refs/heads/release/2.0", "333");
+
+        doReturn(Optional.of("octocat/upstream")).when(spy).getInputMirrorFrom();
+        doReturn(List.of("main", "release/*")).when(spy).getInputMirrorBranches();
+        doReturn(true).when(spy).getInputMirrorPrune();
+        doReturn(List.of("octocat/fork")).when(spy).getInputRepositories();
+        doNothing().when(spy).connectApi();
+
+        when(this.ghApiMock.getRepository("octocat/upstream")).thenReturn(sourceRepository);
+        when(this.ghApiMock.getRepository("octocat/fork")).thenReturn(targetRepository);
+        when(sourceRepository.getRefs("heads")).thenReturn(new GHRef[] {
+            mockGHRef("refs/heads/main", "111"),
+            mockGHRef("refs/heads/release/1.0", "222"),
+            mockGHRef("refs/heads/release/2.0", "333"),
+            mockGHRef("refs/heads/feature/x", "444")
+        });
+        when(targetRepository.getRefs("heads"))
+                .thenReturn(new GHRef[] {targetMain, targetRelease09, targetRelease10});
+        when(targetRepository.createRef("refs/heads/release/2.0", "333")).thenReturn(createdRelease20);
+
+        spy.execute();
+
+        verify(spy, times(0)).getInputName();
+        verify(targetRepository).createRef("refs/heads/release/2.0", "333");
+        verify(targetMain).updateTo("111", true);
+        verify(targetRelease09).delete();
+        verify(targetRelease10, times(0)).updateTo(Mockito.anyString(), Mockito.anyBoolean());
+        verify(this.ghActionsKitMock)
+                .setOutput(
+                        Mockito.eq(OutputVars.RESULTS.key()),
+                        Mockito.contains(
+                                "{\"repository\":\"octocat/fork\",\"name\":\"release/0.9\",\"state\":\"absent\"}"));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenMirrorUpdate_thenReportNewSha() throws Exception {
+        var sourceRepository = Mockito.mock(GHRepository.class);
+        var targetRepository = Mockito.mock(GHRepository.class);
+        var targetMain = mockGHRef("refs/heads/main", "000");
+
+        when(this.ghApiMock.getRepository("octocat/upstream")).thenReturn(sourceRepository);
+        when(this.ghApiMock.getRepository("octocat/fork")).thenReturn(targetRepository);
+        when(sourceRepository.getRefs("heads")).thenReturn(new GHRef[] {mockGHRef("refs/heads/main", "111")});
+        when(targetRepository.getRefs("heads")).thenReturn(new GHRef[] {targetMain});
+
+        var results = this.githubAction.mirror(
+                "octocat/upstream", List.of("main"), false, List.of("octocat/fork"), Optional.empty());
+
+        verify(targetMain).updateTo("111", true);
+        assertThat(results).containsExactly(BranchResult.present("octocat/fork", "main", "refs/heads/main", "111"));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenExecuteInvalidProfileInput_thenThrowCompletionException() {
+        var spy = spy(this.githubAction);
+
+        doThrow(new IllegalArgumentException("invalid profile")).when(spy).getInputProfile();
+
+        assertThrows(CompletionException.class, spy::execute);
+        verify(spy, times(0)).getInputName();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenListBranchesSharded_thenListByShards() throws Exception {
+        var spy = spy(this.githubAction);
+        var enumerator = Mockito.mock(ShardedRefEnumerator.class);
+        spy.setShardedListing(true);
+
+        when(this.ghRepositoryMock.getFullName()).thenReturn("octocat/Hello-World");
+        doReturn(enumerator).when(spy).newShardedRefEnumerator();
+        when(enumerator.list("heads/"))
+                .thenReturn(List.of(
+                        new RefEntry("refs/heads/feature/x", "444", "commit"),
+                        new RefEntry("refs/heads/main", "111", "commit"),
+                        new RefEntry("refs/heads/release/1.0", "222", "commit")));
+
+        assertThat(spy.toShas(spy.listBranches(openRestSession(spy), List.of("main", "release/*"))))
+                .containsExactly(Map.entry("main", "111"), Map.entry("release/1.0", "222"));
+        verify(this.ghRepositoryMock, times(0)).getRefs("heads");
+        verify(enumerator).close();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenRestSessionWriteRefListedByShards_thenFetchSingleRef() throws Exception {
+        var spy = spy(this.githubAction);
+        var enumerator = Mockito.mock(ShardedRefEnumerator.class);
+        var fetched = mockGHRef("refs/heads/release/1.0", "222");
+        spy.setShardedListing(true);
+
+        when(this.ghRepositoryMock.getFullName()).thenReturn("octocat/Hello-World");
+        doReturn(enumerator).when(spy).newShardedRefEnumerator();
+        when(enumerator.list("heads/")).thenReturn(List.of(new RefEntry("refs/heads/release/1.0", "222", "commit")));
+        when(this.ghRepositoryMock.getRef("heads/release/1.0")).thenReturn(fetched);
+
+        var session = openRestSession(spy);
+        var listed = session.list("refs/heads/");
+
+        assertThat(session.update(listed.get(0), "333", true))
+                .isEqualTo(new RefEntry("refs/heads/release/1.0", "333", "commit"));
+        verify(fetched).updateTo("333", true);
+        verify(this.ghRepositoryMock, times(1)).getRef("heads/release/1.0");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenFanOutJournaled_thenSkipVerifiedOperations() throws Exception {
+        var spy = spy(this.githubAction);
+        var journal = Mockito.mock(ProgressJournal.class);
+        var httpClient = Mockito.mock(GitHubHttpClient.class);
+        var worker2 = Mockito.mock(ManageBranchGitHubAction.class);
+        spy.setJournal(journal);
+        spy.setHttpClient(httpClient);
+
+        var journaled = BranchResult.present("octocat/repo-1", "release/1.0", "refs/heads/release/1.0", "123");
+        var result2 = BranchResult.present("octocat/repo-2", "release/1.0", "refs/heads/release/1.0", "456");
+        var refBody = new ObjectMapper().readTree("{\"ref\":\"refs/heads/release/1.0\",\"object\":{\"sha\":\"123\"}}");
+        var commitBody = new ObjectMapper().readTree("{\"sha\":\"123\"}");
+
+        when(journal.find("octocat/repo-1", "release/1.0", InputBranchState.PRESENT))
+                .thenReturn(Optional.of(new ProgressJournal.Entry(journaled, "123")));
+        when(journal.find("octocat/repo-2", "release/1.0", InputBranchState.PRESENT))
+                .thenReturn(Optional.empty());
+        when(httpClient.get("/repos/octocat/repo-1/commits/main", null))
+                .thenReturn(new GitHubHttpClient.Response(200, commitBody, null, null));
+        when(httpClient.get("/repos/octocat/repo-1/git/ref/heads/release/1.0", null))
+                .thenReturn(new GitHubHttpClient.Response(200, refBody, null, null));
+        doReturn(worker2).when(spy).newWorker(null);
+        when(manageBranch(worker2, "release/1.0", InputBranchState.PRESENT, "main")).thenReturn(result2);
+        when(worker2.getResolvedFromSha()).thenReturn("456");
+
+        var results = spy.fanOut(
+                List.of("octocat/repo-1", "octocat/repo-2"),
+                Optional.empty(),
+                "release/1.0",
+                InputBranchState.PRESENT,
+                "main");
+
+        assertThat(results).containsExactly(journaled, result2);
+        verify(this.ghApiMock, times(0)).getRepository("octocat/repo-1");
+        verify(journal).record(result2, "456");
+        verify(journal, times(0)).record(Mockito.eq(journaled), Mockito.any());
+        verify(httpClient, times(0)).get("/repos/octocat/repo-2/commits/main", null);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenFindJournaledBranchMoved_thenRedoOperation() throws Exception {
+        var journal = Mockito.mock(ProgressJournal.class);
+        var httpClient = Mockito.mock(GitHubHttpClient.class);
+        this.githubAction.setJournal(journal);
+        this.githubAction.setHttpClient(httpClient);
+
+        when(journal.find("octocat/repo-1", "release/1.0", InputBranchState.ABSENT))
+                .thenReturn(Optional.of(
+                        new ProgressJournal.Entry(BranchResult.absent("octocat/repo-1", "release/1.0"), null)));
+        var refBody = new ObjectMapper().readTree("{\"ref\":\"refs/heads/release/1.0\",\"object\":{\"sha\":\"123\"}}");
+        when(httpClient.get("/repos/octocat/repo-1/git/ref/heads/release/1.0", null))
+                .thenReturn(new GitHubHttpClient.Response(200, refBody, null, null));
+
+        assertThat(this.githubAction.findJournaled("octocat/repo-1", "release/1.0", InputBranchState.ABSENT, "main"))
+                .isEmpty();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenFindJournaledSourceMoved_thenRedoOperation() throws Exception {
+        var journal = Mockito.mock(ProgressJournal.class);
+        var httpClient = Mockito.mock(GitHubHttpClient.class);
+        this.githubAction.setJournal(journal);
+        this.githubAction.setHttpClient(httpClient);
+
+        var journaled = BranchResult.present("octocat/repo-1", "release/1.0", "refs/heads/release/1.0", "123");
+        var fullSha = "0123456789abcdef0123456789abcdef01234567";
+        var commitBody = new ObjectMapper().readTree("{\"sha\":\"456\"}");
+        when(journal.find("octocat/repo-1", "release/1.0", InputBranchState.PRESENT))
+                .thenReturn(Optional.of(new ProgressJournal.Entry(journaled, "123")));
+        when(httpClient.get("/repos/octocat/repo-1/commits/main", null))
+                .thenReturn(new GitHubHttpClient.Response(200, commitBody, null, null));
+
+        assertThat(this.githubAction.findJournaled("octocat/repo-1", "release/1.0", InputBranchState.PRESENT, fullSha))
+                .isEmpty();
+        assertThat(this.githubAction.findJournaled("octocat/repo-1", "release/1.0", InputBranchState.PRESENT, "main"))
+                .isEmpty();
+        verify(httpClient, times(1)).get(Mockito.anyString(), Mockito.any());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenFindJournaledNotJournaled_thenDoNotResolveSource() throws Exception {
+        var journal = Mockito.mock(ProgressJournal.class);
+        var httpClient = Mockito.mock(GitHubHttpClient.class);
+        this.githubAction.setJournal(journal);
+        this.githubAction.setHttpClient(httpClient);
+
+        when(journal.find("octocat/repo-1", "release/1.0", InputBranchState.PRESENT))
+                .thenReturn(Optional.empty());
+
+        assertThat(this.githubAction.findJournaled("octocat/repo-1", "release/1.0", InputBranchState.PRESENT, "main"))
+                .isEmpty();
+        verify(httpClient, times(0)).get(Mockito.anyString(), Mockito.any());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenOperationsSource_thenKeyOnAbsolutePath() {
+        assertThat(ManageBranchGitHubAction.operationsSource(ManageBranchGitHubAction.STANDARD_STREAM))
+                .isEqualTo(ManageBranchGitHubAction.STANDARD_STREAM);
+        assertThat(ManageBranchGitHubAction.operationsSource("ops/../operations.ndjson"))
+                .isEqualTo(Path.of("operations.ndjson").toAbsolutePath().toString());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenResolveJournalFrom_thenResolveRefsOnly() throws Exception {
+        var journal = Mockito.mock(ProgressJournal.class);
+        var httpClient = Mockito.mock(GitHubHttpClient.class);
+        this.githubAction.setJournal(journal);
+        this.githubAction.setHttpClient(httpClient);
+
+        var fullSha = "0123456789ABCDEF0123456789abcdef01234567";
+        var commitBody = new ObjectMapper().readTree("{\"sha\":\"456\"}");
+        when(httpClient.get("/repos/octocat/repo-1/commits/heads/main", null))
+                .thenReturn(new GitHubHttpClient.Response(200, commitBody, null, null));
+
+        assertThat(this.githubAction.resolveJournalFrom("octocat/repo-1", InputBranchState.PRESENT, fullSha))
+                .isEqualTo(fullSha.toLowerCase(Locale.ROOT));
+        assertThat(this.githubAction.resolveJournalFrom("octocat/repo-1", InputBranchState.PRESENT, "refs/heads/main"))
+                .isEqualTo("456");
+        assertThat(this.githubAction.resolveJournalFrom("octocat/repo-1", InputBranchState.ABSENT, "main"))
+                .isNull();
+        verify(httpClient, times(1)).get(Mockito.anyString(), Mockito.any());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenManageBranchSafeDeleteInUse_thenKeepBranch() throws Exception {
+        var spy = spy(this.githubAction);
+        var existingGHRef = mockGHRef("refs/heads/feature/open", "111111");
+        spy.setSafeDelete(true);
+
+        when(this.ghRepositoryMock.getFullName()).thenReturn("octocat/Hello-World");
+        doReturn(Optional.of(existingGHRef)).when(spy).getBranchGHRef("feature/open");
+        doReturn(new DeletionGuard("main", Set.of("feature/open"), List.of()))
+                .when(spy)
+                .newDeletionGuard("octocat/Hello-World", "feature/open");
+
+        var result = spy.manageBranch(openRestSession(spy), "feature/open", InputBranchState.ABSENT, "main");
+
+        assertThat(result.skipped()).isEqualTo("head of an open pull request");
+        assertThat(result.isFailed()).isFalse();
+        verify(existingGHRef, times(0)).delete();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenManageBranchSafeDeleteNotInUse_thenDeleteBranch() throws Exception {
+        var spy = spy(this.githubAction);
+        var existingGHRef = mockGHRef("refs/heads/feature/merged", "111111");
+        spy.setSafeDelete(true);
+
+        when(this.ghRepositoryMock.getFullName()).thenReturn("octocat/Hello-World");
+        doReturn(Optional.of(existingGHRef)).when(spy).getBranchGHRef("feature/merged");
+        doReturn(new DeletionGuard("main", Set.of(), List.of()))
+                .when(spy)
+                .newDeletionGuard("octocat/Hello-World", "feature/merged");
+
+        var result = spy.manageBranch(openRestSession(spy), "feature/merged", InputBranchState.ABSENT, "main");
+
+        assertThat(result).isEqualTo(BranchResult.absent("octocat/Hello-World", "feature/merged"));
+        verify(existingGHRef).delete();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenExecuteOperations_thenRunPipeline() throws Exception {
+        var spy = spy(this.githubAction);
+
+        doReturn(Optional.of("operations.ndjson")).when(spy).getInputOperations();
+        doReturn("results.ndjson").when(spy).getInputOperationsOutput();
+        doNothing().when(spy).connectApi();
+        doNothing().when(spy).runOperations(Mockito.anyString(), Mockito.anyString());
+
+        spy.execute();
+
+        verify(spy, times(0)).getInputName();
+        verify(spy).runOperations("operations.ndjson", "results.ndjson");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputOperationsOutputNotProvided_thenReturnRunnerTempFile() throws Exception {
+        when(this.ghActionsKitMock.getInput("operations-output")).thenReturn(Optional.empty());
+        when(this.ghActionsKitMock.getEnv("RUNNER_TEMP")).thenReturn(Optional.of("runner-temp"));
+
+        assertThat(this.githubAction.getInputOperationsOutput())
+                .isEqualTo(Path.of("runner-temp", "branch-operations.ndjson").toString());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputOperationsOutputStandardOutput_thenFail() throws Exception {
+        when(this.ghActionsKitMock.getInput("operations-output")).thenReturn(Optional.of(" - "));
+
+        assertThrows(IllegalArgumentException.class, () -> this.githubAction.getInputOperationsOutput());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenRunOperations_thenStreamResults() throws Exception {
+        var spy = spy(this.githubAction);
+        var operations = tempDir.resolve("operations.ndjson");
+        var output = tempDir.resolve("results.ndjson");
+        Files.writeString(operations, "{\"name\":\"a\"}\n\n{\"name\":\"b\"}\n");
+
+        when(this.ghActionsKitMock.getGitHubRepository()).thenReturn("octocat/Hello-World");
+        when(this.ghActionsKitMock.getGitHubSha()).thenReturn("123");
+        doReturn(BranchResult.absent("octocat/Hello-World", "a"))
+                .when(spy)
+                .handleOperation(
+                        Mockito.eq("{\"name\":\"a\"}"),
+                        Mockito.eq("octocat/Hello-World"),
+                        Mockito.eq("123"),
+                        Mockito.any());
+        doReturn(BranchResult.failed(
+                        "octocat/Hello-World", "b", InputBranchState.PRESENT, new IllegalStateException("boom")))
+                .when(spy)
+                .handleOperation(
+                        Mockito.eq("{\"name\":\"b\"}"),
+                        Mockito.eq("octocat/Hello-World"),
+                        Mockito.eq("123"),
+                        Mockito.any());
+
+        var e = assertThrows(
+                IllegalStateException.class, () -> spy.runOperations(operations.toString(), output.toString()));
+
+        assertThat(e.getMessage()).isEqualTo("1 of 2 operations failed.");
+        assertThat(Files.readAllLines(output))
+                .containsExactlyInAnyOrder(
+                        "{\"repository\":\"octocat/Hello-World\",\"name\":\"a\",\"state\":\"absent\"}",
+                        "{\"repository\":\"octocat/Hello-World\",\"name\":\"b\",\"state\":\"present\","
+                                + "\"error\":\"IllegalStateException: boom\"}");
+        verify(this.ghActionsKitMock).setOutput(OutputVars.OPERATIONS_RESULTS.key(), output.toString());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenHandleOperation_thenManageBranchInCachedRepository() throws Exception {
+        var spy = spy(this.githubAction);
+        var ghRepository2 = Mockito.mock(GHRepository.class);
+        var worker = Mockito.mock(ManageBranchGitHubAction.class);
+        var repositories = ManageBranchGitHubAction.newRepositoryCache();
+
+        var present = BranchResult.present("octocat/repo-2", "release/1.0", "refs/heads/release/1.0", "456");
+        var absent = BranchResult.absent("octocat/repo-2", "feature/x");
+        when(this.ghApiMock.getRepository("octocat/repo-2")).thenReturn(ghRepository2);
+        doReturn(worker).when(spy).newWorker(ghRepository2);
+        when(manageBranch(worker, "release/1.0", InputBranchState.PRESENT, "main")).thenReturn(present);
+        when(manageBranch(worker, "feature/x", InputBranchState.ABSENT, "123")).thenReturn(absent);
+
+        assertThat(spy.handleOperation(
+                        "{\"repository\":\"octocat/repo-2\",\"name\":\"/release//1.0\",\"from\":\"main\"}",
+                        "octocat/Hello-World",
+                        "123",
+                        repositories))
+                .isEqualTo(present);
+        assertThat(spy.handleOperation(
+                        "{\"repository\":\"Octocat/Repo-2\",\"name\":\"feature/x\",\"state\":\" absent\"}",
+                        "octocat/Hello-World",
+                        "123",
+                        repositories))
+                .isEqualTo(absent);
+        verify(this.ghApiMock, times(1)).getRepository(Mockito.anyString());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenHandleOperationInvalid_thenReturnFailedResult() throws Exception {
+        var repositories = ManageBranchGitHubAction.newRepositoryCache();
+
+        var notJson = this.githubAction.handleOperation("not json", "octocat/Hello-World", "123", repositories);
+        var invalidName = this.githubAction.handleOperation(
+                "{\"name\":\"bad..name\"}", "octocat/Hello-World", "123", repositories);
+        var invalidState = this.githubAction.handleOperation(
+                "{\"name\":\"feature/x\",\"state\":\"unknown\"}", "octocat/Hello-World", "123", repositories);
+
+        assertThat(notJson.isFailed()).isTrue();
+        assertThat(notJson.name()).isEqualTo("not json");
+        assertThat(invalidName.isFailed()).isTrue();
+        assertThat(invalidName.repository()).isEqualTo("octocat/Hello-World");
+        assertThat(invalidState.isFailed()).isTrue();
+        assertThat(invalidState.name()).isEqualTo("feature/x");
+        verify(this.ghApiMock, times(0)).getRepository(Mockito.anyString());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetBranchGHRefKnownInEventPayload_thenGetSingleRef() throws Exception {
+        var ghRef = Mockito.mock(GHRef.class);
+        var eventPayloadRefs = Mockito.mock(EventPayloadRefs.class);
+        this.githubAction.setEventPayloadRefs(eventPayloadRefs);
+
+        when(this.ghRepositoryMock.getFullName()).thenReturn("octocat/Hello-World");
+        when(eventPayloadRefs.findRef("octocat/Hello-World", "refs/heads/branch-name"))
+                .thenReturn(Optional.of("refs/heads/branch-name"));
+        when(ghRepositoryMock.getRef("heads/branch-name")).thenReturn(ghRef);
+
+        assertThat(this.githubAction.getBranchGHRef("branch-name")).isPresent().contains(ghRef);
+
+        verify(ghRepositoryMock, times(0)).getRefs("heads");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenConnectApi_thenVerifyOK() throws Exception {
+        when(ghActionsKitMock.getRequiredEnv("GITHUB_TOKEN")).thenReturn("token");
+        when(ghActionsKitMock.getGitHubApiUrl()).thenReturn("https://api.github.com");
+
+        this.githubAction.connectApi();
+
+        verify(ghActionsKitMock).getRequiredEnv("GITHUB_TOKEN");
+        verify(ghActionsKitMock).getGitHubApiUrl();
+        verify(ghActionsKitMock, times(2)).debug(Mockito.anyString());
+        verify(ghApiMock).checkApiUrlValidity();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetBranchGHRefExist_thenReturnRef() throws Exception {
+        var ghRef1 = Mockito.mock(GHRef.class);
+        when(ghRef1.getRef()).thenReturn("refs/heads/main");
+
+        var ghRef2 = Mockito.mock(GHRef.class);
+        when(ghRef2.getRef()).thenReturn("refs/heads/BRANCH-name");
+
+        when(ghRepositoryMock.getRefs("heads")).thenReturn(new GHRef[] {ghRef1, ghRef2});
+
+        assertThat(this.githubAction.getBranchGHRef("branch-name")).isPresent().contains(ghRef2);
+
+        verify(ghRepositoryMock).getRefs("heads");
+        verify(ghRef1).getRef();
+        verify(ghRef2).getRef();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetBranchGHRefDoesNotExist_thenReturnEmpty() throws Exception {
+        when(ghRepositoryMock.getRefs("heads")).thenReturn(new GHRef[] {});
+
+        assertThat(this.githubAction.getBranchGHRef("branch-name")).isEmpty();
+
+        verify(ghRepositoryMock).getRefs("heads");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetBranchGHRefNull_thenThrowNullPointerException() throws Exception {
+        assertThrows(NullPointerException.class, () -> this.githubAction.getBranchGHRef(null));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetAnyGHRefExist_thenReturnRef() throws Exception {
+        var ghRef1 = Mockito.mock(GHRef.class);
+        when(ghRef1.getRef()).thenReturn("refs/heads/main");
+
+        var ghRef2 = Mockito.mock(GHRef.class);
+        when(ghRef2.getRef()).thenReturn("refs/heads/BRANCH-name");
+
+        var ghRef3 = Mockito.mock(GHRef.class);
+        when(ghRef3.getRef()).thenReturn("refs/tags/1.0.0");
+
+        when(ghRepositoryMock.getRefs()).thenReturn(new GHRef[] {ghRef1, ghRef2, ghRef3});
+
+        assertThat(this.githubAction.getAnyGHRef("refs/heads/main")).isPresent().contains(ghRef1);
+        assertThat(this.githubAction.getAnyGHRef("branch-name")).isPresent().contains(ghRef2);
+        assertThat(this.githubAction.getAnyGHRef("1.0.0")).isPresent().contains(ghRef3);
+        assertThat(this.githubAction.getAnyGHRef("refs/tags/1.0.0")).isPresent().contains(ghRef3);
+
+        verify(ghRepositoryMock, times(4)).getRefs();
+        verify(ghRef1, times(4)).getRef();
+        verify(ghRef2, times(3)).getRef();
+        verify(ghRef3, times(2)).getRef();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetAnyGHRefDoesNotExist_thenReturnEmpty() throws Exception {
+        when(ghRepositoryMock.getRefs()).thenReturn(new GHRef[] {});
+
+        assertThat(this.githubAction.getAnyGHRef("branch-name")).isEmpty();
+
+        verify(ghRepositoryMock).getRefs();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetAnyGHRefNull_thenThrowNullPointerException() throws Exception {
+        assertThrows(NullPointerException.class, () -> this.githubAction.getAnyGHRef(null));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputUpdateModeProvided_thenReturnValue() throws Exception {
+        when(this.ghActionsKitMock.getInput("update-mode")).thenReturn(Optional.of("fast-forward"));
+
+        assertThat(this.githubAction.getInputUpdateMode()).isEqualTo(InputUpdateMode.FAST_FORWARD);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenGetInputUpdateModeNotProvided_thenReturnDefaultValue() throws Exception {
+        when(this.ghActionsKitMock.getInput("update-mode")).thenReturn(Optional.empty());
+
+        assertThat(this.githubAction.getInputUpdateMode()).isEqualTo(InputUpdateMode.FORCE);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenUpdateRefExpectedShaMatches_thenUpdate() throws Exception {
+        var session = Mockito.mock(RefStore.Session.class);
+        var branch = new RefEntry("refs/heads/deploy/staging", "111111", "commit");
+        var updated = new RefEntry("refs/heads/deploy/staging", "222222", "commit");
+        this.githubAction.setExpectedSha("111111");
+        when(session.update(branch, "222222", true)).thenReturn(updated);
+
+        assertThat(this.githubAction.updateRef(session, branch, "222222")).isEqualTo(updated);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenUpdateRefExpectedShaMismatch_thenFail() throws Exception {
+        var spy = spy(this.githubAction);
+        var session = Mockito.mock(RefStore.Session.class);
+        var branch = new RefEntry("refs/heads/deploy/staging", "333333", "commit");
+        spy.setExpectedSha("111111");
+        when(session.repository()).thenReturn("octocat/Hello-World");
+        doReturn(false).when(spy).isAncestor("octocat/Hello-World", "222222", "333333");
+
+        assertThrows(IllegalStateException.class, () -> spy.updateRef(session, branch, "222222"));
+
+        verify(session, times(0)).update(Mockito.any(), Mockito.anyString(), Mockito.anyBoolean());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenUpdateRefExpectedShaMismatchButNewerSha_thenSkip() throws Exception {
+        var spy = spy(this.githubAction);
+        var session = Mockito.mock(RefStore.Session.class);
+        var branch = new RefEntry("refs/heads/deploy/staging", "333333", "commit");
+        spy.setExpectedSha("111111");
+        when(session.repository()).thenReturn("octocat/Hello-World");
+        doReturn(true).when(spy).isAncestor("octocat/Hello-World", "222222", "333333");
+
+        assertThat(spy.updateRef(session, branch, "222222")).isEqualTo(branch);
+
+        verify(session, times(0)).update(Mockito.any(), Mockito.anyString(), Mockito.anyBoolean());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenUpdateRefFastForwardConflict_thenRetryOnReReadRef() throws Exception {
+        var spy = spy(this.githubAction);
+        var session = Mockito.mock(RefStore.Session.class);
+        var branch = new RefEntry("refs/heads/deploy/staging", "111111", "commit");
+        var reRead = new RefEntry("refs/heads/deploy/staging", "333333", "commit");
+        var updated = new RefEntry("refs/heads/deploy/staging", "222222", "commit");
+        spy.setUpdateMode(InputUpdateMode.FAST_FORWARD);
+        var conflict = Mockito.mock(HttpException.class);
+        when(conflict.getResponseCode()).thenReturn(422);
+
+        when(session.repository()).thenReturn("octocat/Hello-World");
+        when(session.update(branch, "222222", false)).thenThrow(conflict);
+        when(session.read("refs/heads/deploy/staging")).thenReturn(Optional.of(reRead));
+        doReturn(false).when(spy).isAncestor("octocat/Hello-World", "222222", "333333");
+        when(session.update(reRead, "222222", false)).thenReturn(updated);
+
+        assertThat(spy.updateRef(session, branch, "222222")).isEqualTo(updated);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenUpdateRefForceWithoutPrecondition_thenUpdateBlindly() throws Exception {
+        var session = Mockito.mock(RefStore.Session.class);
+        var branch = new RefEntry("refs/heads/main", "111111", "commit");
+        var updated = new RefEntry("refs/heads/main", "222222", "commit");
+        when(session.update(branch, "222222", true)).thenReturn(updated);
+
+        assertThat(this.githubAction.updateRef(session, branch, "222222")).isEqualTo(updated);
+        verify(session, times(0)).read(Mockito.anyString());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenUpdateRefFastForwardConflictNewerSha_thenSkip() throws Exception {
+        var spy = spy(this.githubAction);
+        var session = Mockito.mock(RefStore.Session.class);
+        var branch = new RefEntry("refs/heads/deploy/staging", "111111", "commit");
+        var reRead = new RefEntry("refs/heads/deploy/staging", "333333", "commit");
+        spy.setUpdateMode(InputUpdateMode.FAST_FORWARD);
+        var conflict = Mockito.mock(HttpException.class);
+        when(conflict.getResponseCode()).thenReturn(422);
+
+        when(session.repository()).thenReturn("octocat/Hello-World");
+        when(session.update(branch, "222222", false)).thenThrow(conflict);
+        when(session.read("refs/heads/deploy/staging")).thenReturn(Optional.of(reRead));
+        doReturn(true).when(spy).isAncestor("octocat/Hello-World", "222222", "333333");
+
+        assertThat(spy.updateRef(session, branch, "222222")).isEqualTo(reRead);
+
+        verify(session, times(1)).update(Mockito.any(), Mockito.anyString(), Mockito.anyBoolean());
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenBranchRefNamePresent_thenReturnRefValue() {
+        assertThat(this.githubAction.branchRef("branch-name")).isEqualTo("refs/heads/branch-name");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenBranchRefNameNull_thenThrowNullPointerException() throws Exception {
+        assertThrows(NullPointerException.class, () -> this.githubAction.branchRef(null));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenTagRefNamePresent_thenReturnRefValue() {
+        assertThat(this.githubAction.tagRef("1.0.0")).isEqualTo("refs/tags/1.0.0");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenTagRefNameNull_thenThrowNullPointerException() throws Exception {
         assertThrows(NullPointerException.class, () -> this.githubAction.tagRef(null));
     }
+
+    /**
+     * Opens a session of the REST store on the repository under test.
+     * @param action the action.
+     * @return the session.
+     * @throws IOException if an error occurs.
+     */
+    private RefStore.Session openRestSession(ManageBranchGitHubAction action) throws IOException {
+        return new RestRefStore().open(action, "octocat/Hello-World");
+    }
+
+    /**
+     * Opens a session of the GraphQL store on the repository under test.
+     * @param action the action.
+     * @return the session.
+     */
+    private RefStore.Session openGraphQLSession(ManageBranchGitHubAction action) {
+        return new GraphQLRefStore().open(action, "octocat/Hello-World");
+    }
+
+    /**
+     * Manages a branch with any session, to stub or verify a worker.
+     * @param worker the worker, or the result of {@link Mockito#verify(Object)}.
+     * @param branchName the branch name.
+     * @param branchState the expected state of the branch.
+     * @param from the ref or SHA from which to create the branch.
+     * @return the result of the operation.
+     * @throws IOException if an error occurs.
+     */
+    private static BranchResult manageBranch(
+            ManageBranchGitHubAction worker, String branchName, InputBranchState branchState, String from)
+            throws IOException {
+        return worker.manageBranch(
+                Mockito.any(), Mockito.eq(branchName), Mockito.eq(branchState), Mockito.eq(from));
+    }
+
+    /**
+     * Creates a mock worker creating the <code>release/1.0</code> branch from <code>main</code> in the repository it
+     * uses.
+     * @param shas the SHA of the branch, by repository.
+     * @return the mock.
+     * @throws IOException if an error occurs.
+     */
+    private ManageBranchGitHubAction mockWorker(Map<String, String> shas) throws IOException {
+        var worker = Mockito.mock(ManageBranchGitHubAction.class);
+        var repositoryName = new AtomicReference<String>();
+        doAnswer(invocation -> {
+                    repositoryName.set(invocation.getArgument(0));
+                    return null;
+                })
+                .when(worker)
+                .useRepository(Mockito.anyString());
+        when(manageBranch(worker, "release/1.0", InputBranchState.PRESENT, "main"))
+                .thenAnswer(invocation -> BranchResult.present(
+                        repositoryName.get(), "release/1.0", "refs/heads/release/1.0", shas.get(repositoryName.get())));
+        return worker;
+    }
+
+    /**
+     * Creates a mock {@link GHRef}.
+     * @param ref the ref.
+     * @param sha the SHA.
+     * @return the mock.
+     */
+    private GHRef mockGHRef(String ref, String sha) {
+        var ghRef = Mockito.mock(GHRef.class);
+        var ghRefObject = Mockito.mock(GHObject.class);
+        Mockito.lenient().when(ghRef.getRef()).thenReturn(ref);
+        Mockito.lenient().when(ghRefObject.getSha()).thenReturn(sha);
+        Mockito.lenient().when(ghRef.getObject()).thenReturn(ghRefObject);
+        return ghRef;
+    }
 }
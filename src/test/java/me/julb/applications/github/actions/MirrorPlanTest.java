@@ -0,0 +1,79 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link MirrorPlan} class. <br>
+ * @author Julb.
+ */
+class MirrorPlanTest {
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenTargetInSync_thenPlanEmpty() {
+        var branches = Map.of("main", "111", "develop", "222");
+
+        var plan = MirrorPlan.of(branches, branches, true);
+
+        assertThat(plan.isEmpty()).isTrue();
+        assertThat(plan.unchanged()).isEqualTo(2);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenTargetDiffers_thenPlanMinimalChanges() {
+        var plan = MirrorPlan.of(
+                Map.of("main", "111", "release/1.0", "222", "release/2.0", "333"),
+                Map.of("main", "000", "release/1.0", "222", "release/0.9", "999"),
+                false);
+
+        assertThat(plan.creates()).containsExactly("release/2.0");
+        assertThat(plan.updates()).containsExactly("main");
+        assertThat(plan.deletes()).isEmpty();
+        assertThat(plan.unchanged()).isEqualTo(1);
+        assertThat(plan.summary()).isEqualTo("1 to create, 1 to update, 0 to delete, 1 unchanged");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenPrune_thenDeleteBranchesMissingInSource() {
+        var plan = MirrorPlan.of(Map.of("main", "111"), Map.of("main", "111", "b", "2", "a", "1"), true);
+
+        assertThat(plan.deletes()).containsExactly("a", "b");
+        assertThat(plan.creates()).isEmpty();
+        assertThat(plan.updates()).isEmpty();
+    }
+}
@@ -0,0 +1,204 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link NdjsonPipeline} class. <br>
+ * @author Julb.
+ */
+class NdjsonPipelineTest {
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenRun_thenWriteOneResultPerOperation() throws Exception {
+        var input = new StringReader("{\"name\":\"a\"}\n\n{\"name\":\"b\"}\n  \n{\"name\":\"c\"}");
+        var output = new StringWriter();
+
+        var summary = new NdjsonPipeline(2, 4).run(input, output, line -> line.contains("\"b\"")
+                ? BranchResult.failed("octocat/repo", "b", InputBranchState.PRESENT, new IllegalStateException("boom"))
+                : BranchResult.absent("octocat/repo", line.substring(9, 10)));
+
+        assertThat(summary).isEqualTo(new NdjsonPipeline.Summary(3, 1));
+        assertThat(output.toString().split("\n"))
+                .containsExactlyInAnyOrder(
+                        "{\"repository\":\"octocat/repo\",\"name\":\"a\",\"state\":\"absent\"}",
+                        "{\"repository\":\"octocat/repo\",\"name\":\"b\",\"state\":\"present\","
+                                + "\"error\":\"IllegalStateException: boom\"}",
+                        "{\"repository\":\"octocat/repo\",\"name\":\"c\",\"state\":\"absent\"}");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenHandlerThrows_thenWriteFailedResult() throws Exception {
+        var output = new StringWriter();
+
+        var summary = new NdjsonPipeline(1, 1).run(new StringReader("{}"), output, line -> {
+            throw new IllegalStateException("boom");
+        });
+
+        assertThat(summary).isEqualTo(new NdjsonPipeline.Summary(1, 1));
+        assertThat(output.toString())
+                .isEqualTo("{\"name\":\"{}\",\"state\":\"present\",\"error\":\"IllegalStateException: boom\"}\n");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenWorkersSlow_thenReaderBlocked() throws Exception {
+        var total = 1000;
+        var input = new LineByLineReader(total);
+        var output = new StringWriter();
+        var release = new CountDownLatch(1);
+        var started = new CountDownLatch(1);
+
+        var executor = Executors.newSingleThreadExecutor();
+        try {
+            var run = executor.submit(() -> new NdjsonPipeline(1, 1).run(input, output, line -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return BranchResult.absent("octocat/repo", "a");
+            }));
+
+            assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+            Thread.sleep(200);
+            // One line in the worker, one in the queue, one pending, one read ahead.
+            assertThat(input.getLinesRead()).isLessThanOrEqualTo(4);
+
+            release.countDown();
+            assertThat(run.get(10, TimeUnit.SECONDS)).isEqualTo(new NdjsonPipeline.Summary(total, 0));
+            assertThat(input.getLinesRead()).isEqualTo(total);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenWorkerDies_thenFailWithoutBlockingReader() throws Exception {
+        var input = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            input.append("{\"name\":\"a\"}\n");
+        }
+        var pipeline = new NdjsonPipeline(2, 1);
+
+        var error = assertThrows(
+                AssertionError.class,
+                () -> pipeline.run(new StringReader(input.toString()), new StringWriter(), line -> {
+                    throw new AssertionError("dead");
+                }));
+
+        assertThat(error).hasMessage("dead");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenConcurrencyInvalid_thenThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> new NdjsonPipeline(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new NdjsonPipeline(1, 0));
+    }
+
+    /**
+     * A reader handing out a single line per read.
+     */
+    private static class LineByLineReader extends Reader {
+
+        /**
+         * The line handed out.
+         */
+        private static final String LINE = "{\"name\":\"a\"}\n";
+
+        /**
+         * The number of lines to hand out.
+         */
+        private final int total;
+
+        /**
+         * The number of lines handed out.
+         */
+        private final AtomicInteger linesRead = new AtomicInteger();
+
+        /**
+         * Default constructor.
+         * @param total the number of lines to hand out.
+         */
+        LineByLineReader(int total) {
+            this.total = total;
+        }
+
+        /**
+         * Gets the number of lines handed out.
+         * @return the number of lines handed out.
+         */
+        int getLinesRead() {
+            return linesRead.get();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (linesRead.get() == total) {
+                return -1;
+            }
+            linesRead.incrementAndGet();
+            LINE.getChars(0, LINE.length(), buffer, offset);
+            return LINE.length();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() {
+            // Nothing to close.
+        }
+    }
+}
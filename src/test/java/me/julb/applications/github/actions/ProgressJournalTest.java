@@ -0,0 +1,142 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test class for {@link ProgressJournal} class. <br>
+ * @author Julb.
+ */
+class ProgressJournalTest {
+
+    /**
+     * A temporary directory.
+     */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenReopen_thenFindCompletedOperations() throws Exception {
+        try (var journal = ProgressJournal.open(tempDir, "run")) {
+            journal.record(
+                    BranchResult.present("octocat/repo-1", "release/1.0", "refs/heads/release/1.0", "111"), "000");
+            journal.record(BranchResult.absent("octocat/repo-2", "release/1.0"), null);
+            journal.record(
+                    BranchResult.failed(
+                            "octocat/repo-3",
+                            "release/1.0",
+                            InputBranchState.PRESENT,
+                            new IllegalStateException("boom")),
+                    "000");
+        }
+
+        try (var journal = ProgressJournal.open(tempDir, "run")) {
+            assertThat(journal.size()).isEqualTo(2);
+            assertThat(journal.find("Octocat/Repo-1", "release/1.0", InputBranchState.PRESENT))
+                    .contains(new ProgressJournal.Entry(
+                            BranchResult.present("octocat/repo-1", "release/1.0", "refs/heads/release/1.0", "111"),
+                            "000"));
+            assertThat(journal.find("octocat/repo-2", "release/1.0", InputBranchState.ABSENT))
+                    .contains(new ProgressJournal.Entry(BranchResult.absent("octocat/repo-2", "release/1.0"), null));
+            assertThat(journal.find("octocat/repo-2", "release/1.0", InputBranchState.PRESENT)).isEmpty();
+            assertThat(journal.find("octocat/repo-3", "release/1.0", InputBranchState.PRESENT)).isEmpty();
+        }
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenRecordedTwice_thenFindLastState() throws Exception {
+        var first = BranchResult.present("octocat/repo-1", "caf\u00e9", "refs/heads/caf\u00e9", "111");
+        var last = BranchResult.present("octocat/repo-1", "caf\u00e9", "refs/heads/caf\u00e9", "222");
+        try (var journal = ProgressJournal.open(tempDir, "run")) {
+            journal.record(first, "000");
+            journal.record(BranchResult.absent("octocat/repo-2", "main"), null);
+            journal.record(last, "001");
+
+            assertThat(journal.find("octocat/repo-1", "caf\u00e9", InputBranchState.PRESENT))
+                    .contains(new ProgressJournal.Entry(last, "001"));
+        }
+
+        try (var journal = ProgressJournal.open(tempDir, "run")) {
+            assertThat(journal.size()).isEqualTo(2);
+            assertThat(journal.find("octocat/repo-1", "caf\u00e9", InputBranchState.PRESENT))
+                    .contains(new ProgressJournal.Entry(last, "001"));
+            assertThat(journal.find("octocat/repo-2", "main", InputBranchState.ABSENT))
+                    .contains(new ProgressJournal.Entry(BranchResult.absent("octocat/repo-2", "main"), null));
+        }
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenLastLineTruncated_thenDropIt() throws Exception {
+        var file = tempDir.resolve("run.journal");
+        Files.writeString(
+                file,
+                "{\"repository\":\"octocat/repo-1\",\"name\":\"main\",\"state\":\"absent\"}\n"
+                        + "{\"repository\":\"oct");
+
+        try (var journal = ProgressJournal.open(tempDir, "run")) {
+            assertThat(journal.size()).isEqualTo(1);
+            journal.record(BranchResult.present("octocat/repo-2", "main", "refs/heads/main", "111"), "000");
+        }
+
+        assertThat(Files.readAllLines(file))
+                .containsExactly(
+                        "{\"repository\":\"octocat/repo-1\",\"name\":\"main\",\"state\":\"absent\"}",
+                        "{\"repository\":\"octocat/repo-2\",\"name\":\"main\",\"state\":\"present\","
+                                + "\"ref\":\"refs/heads/main\",\"sha\":\"111\",\"from\":\"000\"}");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenRecordBatch_thenSyncOncePerBatch() throws Exception {
+        var file = tempDir.resolve("run.journal");
+        try (var journal = new ProgressJournal(file, () -> 0L)) {
+            for (int i = 0; i < ProgressJournal.SYNC_BATCH_SIZE * 2 + 1; i++) {
+                journal.record(BranchResult.absent(String.format("octocat/repo-%d", i), "main"), null);
+            }
+            assertThat(journal.getSyncs()).isEqualTo(2);
+            journal.close();
+            assertThat(journal.getSyncs()).isEqualTo(3);
+        }
+
+        assertThat(Files.readAllLines(file)).hasSize(ProgressJournal.SYNC_BATCH_SIZE * 2 + 1);
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link RefNames} class. <br>
+ * @author Julb.
+ */
+class RefNamesTest {
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenNormalize_thenRemoveLeadingAndDuplicateSlashes() {
+        assertThat(RefNames.normalize("/feature//foo")).isEqualTo("feature/foo");
+        assertThat(RefNames.normalize("//feature/foo")).isEqualTo("feature/foo");
+        assertThat(RefNames.normalize("feature/foo")).isEqualTo("feature/foo");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenIsValidName_thenReturnTrue() {
+        assertThat(RefNames.isValid("main")).isTrue();
+        assertThat(RefNames.isValid("feature/foo-bar_1.2")).isTrue();
+        assertThat(RefNames.isValid("refs/tags/v1.0.0")).isTrue();
+        assertThat(RefNames.isValid("feature/caf\u00e9")).isTrue();
+        assertThat(RefNames.isValid("foo@bar")).isTrue();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenIsValidInvalidName_thenReturnFalse() {
+        assertThat(RefNames.isValid("")).isFalse();
+        assertThat(RefNames.isValid("@")).isFalse();
+        assertThat(RefNames.isValid("feature/..bad")).isFalse();
+        assertThat(RefNames.isValid("feature/.hidden")).isFalse();
+        assertThat(RefNames.isValid("foo.lock")).isFalse();
+        assertThat(RefNames.isValid("feature/foo.lock/bar")).isFalse();
+        assertThat(RefNames.isValid("feature/")).isFalse();
+        assertThat(RefNames.isValid("feature.")).isFalse();
+        assertThat(RefNames.isValid("foo@{1}")).isFalse();
+        assertThat(RefNames.isValid("foo\u0001bar")).isFalse();
+        assertThat(RefNames.isValid("foo\u007fbar")).isFalse();
+        assertThat(RefNames.isValid("foo bar")).isFalse();
+        assertThat(RefNames.isValid("foo~1")).isFalse();
+        assertThat(RefNames.isValid("foo^")).isFalse();
+        assertThat(RefNames.isValid("foo:bar")).isFalse();
+        assertThat(RefNames.isValid("foo?")).isFalse();
+        assertThat(RefNames.isValid("foo*")).isFalse();
+        assertThat(RefNames.isValid("foo[bar")).isFalse();
+        assertThat(RefNames.isValid("foo\\bar")).isFalse();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenCheckBranchName_thenReturnNormalizedName() {
+        assertThat(RefNames.checkBranchName("/feature//foo")).isEqualTo("feature/foo");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenCheckBranchNameInvalid_thenFail() {
+        assertThrows(IllegalArgumentException.class, () -> RefNames.checkBranchName("-feature"));
+        assertThrows(IllegalArgumentException.class, () -> RefNames.checkBranchName("HEAD"));
+        assertThrows(IllegalArgumentException.class, () -> RefNames.checkBranchName("feature/..bad"));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenCheckSourceSha_thenReturnSha() {
+        assertThat(RefNames.checkSource("a94a8fe5ccb19ba61c4c0873d391e987982fbbd3"))
+                .isEqualTo("a94a8fe5ccb19ba61c4c0873d391e987982fbbd3");
+        assertThat(RefNames.checkSource("/refs//heads/main")).isEqualTo("refs/heads/main");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenCheckSourceInvalid_thenFail() {
+        assertThrows(IllegalArgumentException.class, () -> RefNames.checkSource("main.lock"));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenCheckSourceRevision_thenReturnNormalizedRevision() {
+        assertThat(RefNames.checkSource("/release//1.0^2")).isEqualTo("release/1.0^2");
+        assertThat(RefNames.checkSource("v2.1^{commit}")).isEqualTo("v2.1^{commit}");
+        assertThat(RefNames.checkSource("a94a8fe5~3")).isEqualTo("a94a8fe5~3");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenCheckSourceRevisionInvalid_thenFail() {
+        assertThrows(IllegalArgumentException.class, () -> RefNames.checkSource("main.lock~1"));
+        assertThrows(IllegalArgumentException.class, () -> RefNames.checkSource("main^{tree}"));
+    }
+}
@@ -0,0 +1,317 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+
+/**
+ * Test class for {@link RefPoller} class. <br>
+ * @author Julb.
+ */
+class RefPollerTest {
+
+    /**
+     * The JSON mapper.
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * The current time of the fake clock, in nanoseconds.
+     */
+    private long nanoTime;
+
+    /**
+     * The sleeps requested, in nanoseconds.
+     */
+    private final List<Long> sleeps = new ArrayList<>();
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenRefCreatedLater_thenReturnRefAndSendConditionalRequests() throws Exception {
+        var httpClient = new FakeHttpClient();
+        httpClient.empty("\"etag-0\"");
+        httpClient.notModified();
+        httpClient.ref("111111", "\"etag-1\"");
+        httpClient.ref("222222", "\"etag-2\"");
+
+        var refPoller = newRefPoller(httpClient);
+        var ref = refPoller.await("refs/heads/feature", "222222", Duration.ofMinutes(1));
+
+        assertThat(ref).isEqualTo(new RefEntry("refs/heads/feature", "222222", "commit"));
+        assertThat(httpClient.paths)
+                .containsOnly("/repos/octocat/Hello-World/git/matching-refs/heads/feature?per_page=100");
+        assertThat(httpClient.etags).containsExactly(null, "\"etag-0\"", "\"etag-0\"", "\"etag-1\"");
+        assertThat(refPoller.getPolls()).isEqualTo(4);
+        assertThat(refPoller.getNotModifiedPolls()).isEqualTo(1);
+        assertThat(sleeps).containsExactly(1_000L, 2_000L, 4_000L);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenRefExistsWithoutSha_thenReturnImmediately() throws Exception {
+        var httpClient = new FakeHttpClient();
+        httpClient.ref("111111", "\"etag-1\"");
+
+        var ref = newRefPoller(httpClient).await("refs/heads/feature", null, Duration.ofMinutes(1));
+
+        assertThat(ref.sha()).isEqualTo("111111");
+        assertThat(sleeps).isEmpty();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenOnlyPrefixedRefExists_thenRefDoesNotExist() throws Exception {
+        var httpClient = new FakeHttpClient();
+        httpClient.prefixed("111111", "\"etag-1\"");
+        httpClient.notModified();
+
+        var refPoller = newRefPoller(httpClient);
+        var e = assertThrows(
+                TimeoutException.class,
+                () -> refPoller.await("refs/heads/feature", null, Duration.ofNanos(1_000)));
+
+        assertThat(e.getMessage()).isEqualTo("ref refs/heads/feature does not exist after 2 polls.");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenRefListedWithOtherCase_thenMatchRegardlessOfCase() throws Exception {
+        var httpClient = new FakeHttpClient();
+        httpClient.caseVariants(false, "\"etag-1\"");
+        httpClient.caseVariants(true, "\"etag-2\"");
+
+        assertThat(newRefPoller(httpClient).await("refs/heads/feature", null, Duration.ofMinutes(1)))
+                .isEqualTo(new RefEntry("refs/heads/FEATURE", "444444", "commit"));
+        assertThat(newRefPoller(httpClient).await("refs/heads/feature", null, Duration.ofMinutes(1)))
+                .isEqualTo(new RefEntry("refs/heads/feature", "111111", "commit"));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenRepositoryNotFound_thenThrowFileNotFoundException() throws Exception {
+        var httpClient = new FakeHttpClient();
+        httpClient.notFound();
+
+        var refPoller = newRefPoller(httpClient);
+
+        assertThrows(
+                FileNotFoundException.class,
+                () -> refPoller.await("refs/heads/feature", null, Duration.ofMinutes(1)));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenConditionNeverHolds_thenTimeout() throws Exception {
+        var httpClient = new FakeHttpClient();
+        for (int i = 0; i < 10; i++) {
+            httpClient.empty("\"etag-0\"");
+        }
+
+        var refPoller = newRefPoller(httpClient);
+
+        assertThrows(
+                TimeoutException.class,
+                () -> refPoller.await("refs/heads/feature", null, Duration.ofNanos(10_000)));
+        assertThat(sleeps).containsExactly(1_000L, 2_000L, 4_000L, 3_000L);
+        assertThat(refPoller.getPolls()).isEqualTo(5);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenBackoff_thenCappedAndJittered() throws Exception {
+        var refPoller = new RefPoller(
+                new FakeHttpClient(),
+                "octocat/Hello-World",
+                Duration.ofNanos(1_000),
+                Duration.ofNanos(8_000),
+                sleeps::add,
+                () -> nanoTime,
+                () -> 0.5);
+
+        assertThat(refPoller.backoffNanos(0)).isEqualTo(750);
+        assertThat(refPoller.backoffNanos(3)).isEqualTo(6_000);
+        assertThat(refPoller.backoffNanos(50)).isEqualTo(6_000);
+    }
+
+    /**
+     * Creates a poller with a fake clock advanced by the sleeps, and no jitter.
+     * @param httpClient the HTTP client.
+     * @return the poller.
+     */
+    private RefPoller newRefPoller(GitHubHttpClient httpClient) {
+        return new RefPoller(
+                httpClient,
+                "octocat/Hello-World",
+                Duration.ofNanos(1_000),
+                Duration.ofNanos(8_000),
+                nanos -> {
+                    sleeps.add(nanos);
+                    nanoTime += nanos;
+                },
+                () -> nanoTime,
+                () -> 1.0);
+    }
+
+    /**
+     * A fake HTTP client answering the polls with scripted responses.
+     */
+    private static class FakeHttpClient extends GitHubHttpClient {
+
+        /**
+         * The scripted responses.
+         */
+        private final Deque<GitHubHttpClient.Response> responses = new ArrayDeque<>();
+
+        /**
+         * The paths requested.
+         */
+        private final List<String> paths = new ArrayList<>();
+
+        /**
+         * The <code>ETag</code> sent with each request.
+         */
+        private final List<String> etags = new ArrayList<>();
+
+        /**
+         * Default constructor.
+         */
+        FakeHttpClient() {
+            super("https://api.github.com", () -> null);
+        }
+
+        /**
+         * Scripts a missing repository.
+         */
+        void notFound() {
+            responses.add(new GitHubHttpClient.Response(HTTP_NOT_FOUND, null, null, null));
+        }
+
+        /**
+         * Scripts an unchanged ref.
+         */
+        void notModified() {
+            responses.add(new GitHubHttpClient.Response(HTTP_NOT_MODIFIED, null, null, null));
+        }
+
+        /**
+         * Scripts a missing ref.
+         * @param etag the <code>ETag</code> of the response.
+         */
+        void empty(String etag) {
+            responses.add(new GitHubHttpClient.Response(200, OBJECT_MAPPER.createArrayNode(), etag, null));
+        }
+
+        /**
+         * Scripts a ref, listed with a ref it prefixes.
+         * @param sha the SHA of the ref.
+         * @param etag the <code>ETag</code> of the response.
+         */
+        void ref(String sha, String etag) {
+            var body = OBJECT_MAPPER.createArrayNode();
+            addRef(body, "refs/heads/feature", sha);
+            addRef(body, "refs/heads/feature-2", "999999");
+            responses.add(new GitHubHttpClient.Response(200, body, etag, null));
+        }
+
+        /**
+         * Scripts only a ref prefixed by the ref.
+         * @param sha the SHA of the prefixed ref.
+         * @param etag the <code>ETag</code> of the response.
+         */
+        void prefixed(String sha, String etag) {
+            var body = OBJECT_MAPPER.createArrayNode();
+            addRef(body, "refs/heads/feature-2", sha);
+            responses.add(new GitHubHttpClient.Response(200, body, etag, null));
+        }
+
+        /**
+         * Scripts refs equal to the ref regardless of the case.
+         * @param withExactRef <code>true</code> to list the ref itself too.
+         * @param etag the <code>ETag</code> of the response.
+         */
+        void caseVariants(boolean withExactRef, String etag) {
+            var body = OBJECT_MAPPER.createArrayNode();
+            addRef(body, "refs/heads/FEATURE", "444444");
+            addRef(body, "refs/heads/Feature", "333333");
+            if (withExactRef) {
+                addRef(body, "refs/heads/feature", "111111");
+            }
+            responses.add(new GitHubHttpClient.Response(200, body, etag, null));
+        }
+
+        /**
+         * Adds a ref to a listing.
+         * @param body the listing.
+         * @param ref the ref.
+         * @param sha the SHA of the ref.
+         */
+        private static void addRef(ArrayNode body, String ref, String sha) {
+            var entry = body.addObject().put("ref", ref);
+            entry.putObject("object").put("sha", sha).put("type", "commit");
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        Response get(String pathOrUrl, String etag) throws IOException {
+            paths.add(pathOrUrl);
+            etags.add(etag);
+            var response = responses.remove();
+            if (response.status() == HTTP_NOT_FOUND) {
+                throw new FileNotFoundException(pathOrUrl);
+            }
+            return response;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link RefStorePlanner} class. <br>
+ * @author Julb.
+ */
+class RefStorePlannerTest {
+
+    /**
+     * The REST store.
+     */
+    private final RefStore rest = new RestRefStore();
+
+    /**
+     * The GraphQL store.
+     */
+    private final RefStore graphql = new GraphQLRefStore();
+
+    /**
+     * The remaining rate limit, by resource.
+     */
+    private final Map<String, Integer> remaining = new HashMap<>(Map.of("core", 5000, "graphql", 5000));
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenPlanWithoutMeasure_thenPickFewestRequests() {
+        var planner = newPlanner();
+
+        assertThat(planner.plan(InputBranchState.PRESENT, false)).isSameAs(graphql);
+        assertThat(planner.plan(InputBranchState.ABSENT, false)).isSameAs(graphql);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenPlanEqualCost_thenPickFirstStore() {
+        var planner = newPlanner();
+
+        assertThat(planner.plan(InputBranchState.ABSENT, true)).isSameAs(rest);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenStoreSlower_thenPickOtherStore() {
+        var planner = newPlanner();
+
+        for (int i = 0; i < 10; i++) {
+            planner.record(graphql, 2, 4_000_000_000L);
+            planner.record(rest, 4, 400_000_000L);
+        }
+
+        assertThat(planner.latency(graphql)).isGreaterThan(planner.latency(rest));
+        assertThat(planner.plan(InputBranchState.PRESENT, false)).isSameAs(rest);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenRateLimitLow_thenPickOtherStore() {
+        var planner = newPlanner();
+        remaining.put("graphql", RefStorePlanner.RATE_LIMIT_RESERVE);
+
+        assertThat(planner.plan(InputBranchState.PRESENT, false)).isSameAs(rest);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenNoStoreAffordable_thenPickLeastLimited() {
+        var planner = newPlanner();
+        remaining.put("core", 10);
+        remaining.put("graphql", 3);
+
+        assertThat(planner.plan(InputBranchState.PRESENT, false)).isSameAs(rest);
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenSummary_thenReportPlansByStore() {
+        var planner = newPlanner();
+        planner.plan(InputBranchState.PRESENT, false);
+
+        assertThat(planner.summary())
+                .isEqualTo("ref stores: [rest: 0 operations, 250 ms per request,"
+                        + " graphql: 1 operations, 250 ms per request]");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenNoStore_thenThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> new RefStorePlanner(List.of(), resource -> 0));
+    }
+
+    /**
+     * Creates a planner of the REST and GraphQL stores.
+     * @return the planner.
+     */
+    private RefStorePlanner newPlanner() {
+        return new RefStorePlanner(List.of(rest, graphql), resource -> remaining.getOrDefault(resource, 0));
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link RevisionExpression} class. <br>
+ * @author Julb.
+ */
+class RevisionExpressionTest {
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenParseWithoutSuffix_thenReturnBaseOnly() {
+        var revision = RevisionExpression.parse("refs/heads/main");
+
+        assertThat(revision.base()).isEqualTo("refs/heads/main");
+        assertThat(revision.steps()).isEmpty();
+        assertThat(revision.hasSteps()).isFalse();
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenParseSuffixes_thenReturnSteps() {
+        assertThat(RevisionExpression.parse("main~3").steps()).containsExactly(new RevisionExpression.Step('~', 3));
+        assertThat(RevisionExpression.parse("main~").steps()).containsExactly(new RevisionExpression.Step('~', 1));
+        assertThat(RevisionExpression.parse("release/1.0^2").steps())
+                .containsExactly(new RevisionExpression.Step('^', 2));
+        assertThat(RevisionExpression.parse("main^").steps()).containsExactly(new RevisionExpression.Step('^', 1));
+        assertThat(RevisionExpression.parse("main^2~1").steps())
+                .containsExactly(new RevisionExpression.Step('^', 2), new RevisionExpression.Step('~', 1));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenParsePeel_thenReturnPeelStep() {
+        var peel = List.of(new RevisionExpression.Step('^', 0));
+
+        assertThat(RevisionExpression.parse("v2.1^{commit}").steps()).isEqualTo(peel);
+        assertThat(RevisionExpression.parse("v2.1^{}").steps()).isEqualTo(peel);
+        assertThat(RevisionExpression.parse("v2.1^0").steps()).isEqualTo(peel);
+        assertThat(RevisionExpression.parse("v2.1^{commit}").base()).isEqualTo("v2.1");
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenParseUnsupportedSuffix_thenThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> RevisionExpression.parse("main^{tree}"));
+        assertThrows(IllegalArgumentException.class, () -> RevisionExpression.parse("main^{commit"));
+        assertThrows(IllegalArgumentException.class, () -> RevisionExpression.parse("main~x"));
+        assertThrows(IllegalArgumentException.class, () -> RevisionExpression.parse("main~99999999999"));
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenParseNull_thenThrowNullPointerException() {
+        assertThrows(NullPointerException.class, () -> RevisionExpression.parse(null));
+    }
+}
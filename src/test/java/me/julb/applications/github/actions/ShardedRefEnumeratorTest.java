@@ -0,0 +1,209 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017-2022 Julb
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package me.julb.applications.github.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+
+/**
+ * Test class for {@link ShardedRefEnumerator} class. <br>
+ * @author Julb.
+ */
+class ShardedRefEnumeratorTest {
+
+    /**
+     * The JSON mapper.
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenListSmallNamespace_thenListSingleShard() throws Exception {
+        var httpClient = new FakeHttpClient(3);
+        httpClient.page("heads/", null, "refs/heads/main", "refs/heads/develop");
+
+        try (var enumerator = new ShardedRefEnumerator(httpClient, "octocat/Hello-World", 4)) {
+            var refs = enumerator.list("heads/");
+
+            assertThat(refs).extracting(RefEntry::ref).containsExactly("refs/heads/develop", "refs/heads/main");
+            assertThat(httpClient.requested).containsOnlyKeys("heads/");
+        }
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenListOversizedNamespace_thenFetchCountedPagesConcurrently() throws Exception {
+        var httpClient = new FakeHttpClient(250);
+        httpClient.page("heads/", "https://next", "refs/heads/a1", "refs/heads/a2");
+        httpClient.page("heads/ page 2", "https://next", "refs/heads/b1");
+        httpClient.page("heads/ page 3", null, "refs/heads/\u00e9t\u00e9", "refs/heads/a2");
+
+        try (var enumerator = new ShardedRefEnumerator(httpClient, "octocat/Hello-World", 4)) {
+            var refs = enumerator.list("heads/");
+
+            assertThat(refs)
+                    .extracting(RefEntry::ref)
+                    .containsExactly("refs/heads/a1", "refs/heads/a2", "refs/heads/b1", "refs/heads/\u00e9t\u00e9");
+            assertThat(httpClient.requested).containsOnlyKeys("heads/", "heads/ page 2", "heads/ page 3");
+            assertThat(enumerator.getRequests()).isEqualTo(4);
+        }
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenListPagesAddedSinceCount_thenFollowPages() throws Exception {
+        var httpClient = new FakeHttpClient(101);
+        httpClient.page("heads/", "https://next", "refs/heads/a1");
+        httpClient.page("heads/ page 2", "https://next/3", "refs/heads/b1");
+        httpClient.page("https://next/3", null, "refs/heads/c1");
+
+        try (var enumerator = new ShardedRefEnumerator(httpClient, "octocat/Hello-World", 4)) {
+            var refs = enumerator.list("heads/");
+
+            assertThat(refs)
+                    .extracting(RefEntry::ref)
+                    .containsExactly("refs/heads/a1", "refs/heads/b1", "refs/heads/c1");
+            assertThat(httpClient.requested).containsOnlyKeys("heads/", "heads/ page 2", "https://next/3");
+        }
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenFindIgnoreCase_thenListCaseVariantShardsOnly() throws Exception {
+        var httpClient = new FakeHttpClient(0);
+        httpClient.page("heads/", "https://next", "refs/heads/a");
+        httpClient.page("heads/f", "https://next", "refs/heads/fa");
+        httpClient.page("heads/F", null, "refs/heads/FIX", "refs/heads/Fix-1");
+        httpClient.page("heads/fi", null, "refs/heads/fix/1");
+
+        try (var enumerator = new ShardedRefEnumerator(httpClient, "octocat/Hello-World", 4)) {
+            var refs = enumerator.findIgnoreCase("refs/heads/fix");
+
+            assertThat(refs).extracting(RefEntry::ref).containsExactly("refs/heads/FIX");
+            assertThat(httpClient.requested).containsOnlyKeys("heads/", "heads/f", "heads/F", "heads/fi", "heads/fI");
+        }
+    }
+
+    /**
+     * Test method.
+     */
+    @Test
+    void whenInvalidNamespaceOrRef_thenThrowIllegalArgumentException() {
+        try (var enumerator = new ShardedRefEnumerator(new FakeHttpClient(0), "octocat/Hello-World", 1)) {
+            assertThrows(IllegalArgumentException.class, () -> enumerator.list("heads"));
+            assertThrows(IllegalArgumentException.class, () -> enumerator.findIgnoreCase("main"));
+            assertThrows(NullPointerException.class, () -> enumerator.list(null));
+        }
+    }
+
+    /**
+     * A fake HTTP client serving pages of refs by prefix.
+     */
+    private static class FakeHttpClient extends GitHubHttpClient {
+
+        /**
+         * The pages by prefix, prefix and page number, or URL.
+         */
+        private final Map<String, GitHubHttpClient.Response> pages = new ConcurrentHashMap<>();
+
+        /**
+         * The number of requests by prefix or URL.
+         */
+        private final Map<String, Integer> requested = new ConcurrentHashMap<>();
+
+        /**
+         * The total count of refs.
+         */
+        private final int totalCount;
+
+        /**
+         * Default constructor.
+         * @param totalCount the total count of refs.
+         */
+        FakeHttpClient(int totalCount) {
+            super("https://api.github.com", () -> null);
+            this.totalCount = totalCount;
+        }
+
+        /**
+         * Registers a page.
+         * @param prefixOrUrl the prefix, the prefix followed by <code> page N</code>, or the URL.
+         * @param nextUrl the URL of the next page.
+         * @param refs the refs of the page.
+         */
+        void page(String prefixOrUrl, String nextUrl, String... refs) {
+            ArrayNode body = OBJECT_MAPPER.createArrayNode();
+            for (String ref : refs) {
+                body.addObject().put("ref", ref).putObject("object").put("sha", "123456").put("type", "commit");
+            }
+            pages.put(prefixOrUrl, new GitHubHttpClient.Response(200, body, null, nextUrl));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        GitHubHttpClient.Response get(String pathOrUrl, String etag) {
+            var key = pathOrUrl.startsWith("https://")
+                    ? pathOrUrl
+                    : URLDecoder.decode(
+                            pathOrUrl.replaceFirst("^/repos/octocat/Hello-World/git/matching-refs/", "")
+                                    .replaceFirst("\\?per_page=\\d+&page=(\\d+)$", " page $1")
+                                    .replaceFirst("\\?per_page=\\d+$", ""),
+                            StandardCharsets.UTF_8);
+            requested.merge(key, 1, Integer::sum);
+            return pages.getOrDefault(
+                    key, new GitHubHttpClient.Response(200, OBJECT_MAPPER.createArrayNode(), null, null));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        JsonNode graphql(String query, Map<String, Object> variables) {
+            var data = OBJECT_MAPPER.createObjectNode();
+            data.putObject("repository").putObject("refs").put("totalCount", totalCount);
+            return data;
+        }
+    }
+}